@@ -0,0 +1,157 @@
+package org.reactome;
+
+import java.util.Arrays;
+
+/**
+ * Index of reference molecule DB_IDs by numeric ChEBI identifier, held in primitive arrays.  The identifiers are kept
+ * in an open-addressing hash table; the DB_IDs of all identifiers share one long[], each linked to the DB_ID added
+ * before it for the same identifier through a parallel int[], and the table holds the last DB_ID added for each
+ * identifier.  Adding a DB_ID therefore copies nothing but the occasional growth of the shared arrays, and indexing
+ * every ChEBI reference molecule costs little more than its identifier and DB_ID, with no boxed keys, values, entry
+ * objects or per-identifier arrays.
+ */
+class ChEBIIdIndex {
+    private static final int NO_IDENTIFIER = -1;
+    private static final int NO_ENTRY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    // Hash table of identifiers, with the last entry added and the number of entries for each
+    private int[] chEBIIds;
+    private int[] lastEntries;
+    private int[] entryCounts;
+    private int size;
+
+    // Entries shared by all identifiers: a DB_ID and the entry added before it for the same identifier
+    private long[] entryDbIds;
+    private int[] previousEntries;
+    private int entryCount;
+
+    ChEBIIdIndex() {
+        this.chEBIIds = new int[MIN_CAPACITY];
+        this.lastEntries = new int[MIN_CAPACITY];
+        this.entryCounts = new int[MIN_CAPACITY];
+        this.entryDbIds = new long[MIN_CAPACITY];
+        this.previousEntries = new int[MIN_CAPACITY];
+        Arrays.fill(chEBIIds, NO_IDENTIFIER);
+    }
+
+    /**
+     * @param chEBIId Numeric ChEBI identifier (not negative)
+     * @param dbId DB_ID of a reference molecule with the identifier; added only once
+     */
+    void add(int chEBIId, long dbId) {
+        if (chEBIId < 0) {
+            throw new IllegalArgumentException("ChEBI identifier must not be negative: " + chEBIId);
+        }
+
+        int slot = getSlot(chEBIId);
+        if (chEBIIds[slot] == NO_IDENTIFIER) {
+            if ((size + 1) * 2 > chEBIIds.length) {
+                resize();
+                slot = getSlot(chEBIId);
+            }
+            chEBIIds[slot] = chEBIId;
+            lastEntries[slot] = NO_ENTRY;
+            size++;
+        } else {
+            for (int entry = lastEntries[slot]; entry != NO_ENTRY; entry = previousEntries[entry]) {
+                if (entryDbIds[entry] == dbId) {
+                    return;
+                }
+            }
+        }
+
+        if (entryCount == entryDbIds.length) {
+            entryDbIds = Arrays.copyOf(entryDbIds, entryCount * 2);
+            previousEntries = Arrays.copyOf(previousEntries, entryCount * 2);
+        }
+        entryDbIds[entryCount] = dbId;
+        previousEntries[entryCount] = lastEntries[slot];
+        lastEntries[slot] = entryCount;
+        entryCounts[slot]++;
+        entryCount++;
+    }
+
+    /**
+     * @return DB_IDs indexed under the identifier, in the order they were added
+     */
+    long[] get(int chEBIId) {
+        if (chEBIId < 0) {
+            return new long[0];
+        }
+
+        int slot = getSlot(chEBIId);
+        if (chEBIIds[slot] == NO_IDENTIFIER) {
+            return new long[0];
+        }
+
+        // Entries are linked from the last added, so the array is filled from its end
+        long[] dbIds = new long[entryCounts[slot]];
+        int index = dbIds.length;
+        for (int entry = lastEntries[slot]; entry != NO_ENTRY; entry = previousEntries[entry]) {
+            dbIds[--index] = entryDbIds[entry];
+        }
+        return dbIds;
+    }
+
+    /**
+     * @return Each identifier indexed for two or more DB_IDs, in ascending order; their DB_IDs are had through get
+     */
+    int[] getDuplicates() {
+        int duplicateCount = 0;
+        for (int slot = 0; slot < chEBIIds.length; slot++) {
+            if (chEBIIds[slot] != NO_IDENTIFIER && entryCounts[slot] > 1) {
+                duplicateCount++;
+            }
+        }
+
+        int[] duplicateChEBIIds = new int[duplicateCount];
+        int index = 0;
+        for (int slot = 0; slot < chEBIIds.length; slot++) {
+            if (chEBIIds[slot] != NO_IDENTIFIER && entryCounts[slot] > 1) {
+                duplicateChEBIIds[index++] = chEBIIds[slot];
+            }
+        }
+        Arrays.sort(duplicateChEBIIds);
+        return duplicateChEBIIds;
+    }
+
+    /**
+     * @return Number of identifiers indexed
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Slot holding the identifier, or the empty slot where it would be added (linear probing)
+     */
+    private int getSlot(int chEBIId) {
+        int mask = chEBIIds.length - 1;
+        int hash = chEBIId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (chEBIIds[slot] != NO_IDENTIFIER && chEBIIds[slot] != chEBIId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldChEBIIds = chEBIIds;
+        int[] oldLastEntries = lastEntries;
+        int[] oldEntryCounts = entryCounts;
+
+        chEBIIds = new int[oldChEBIIds.length * 2];
+        lastEntries = new int[oldLastEntries.length * 2];
+        entryCounts = new int[oldEntryCounts.length * 2];
+        Arrays.fill(chEBIIds, NO_IDENTIFIER);
+        for (int oldSlot = 0; oldSlot < oldChEBIIds.length; oldSlot++) {
+            if (oldChEBIIds[oldSlot] != NO_IDENTIFIER) {
+                int slot = getSlot(oldChEBIIds[oldSlot]);
+                chEBIIds[slot] = oldChEBIIds[oldSlot];
+                lastEntries[slot] = oldLastEntries[oldSlot];
+                entryCounts[slot] = oldEntryCounts[oldSlot];
+            }
+        }
+    }
+}
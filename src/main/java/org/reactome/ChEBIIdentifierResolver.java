@@ -0,0 +1,211 @@
+package org.reactome;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gk.model.GKInstance;
+import org.reactome.database.DBReader;
+import org.reactome.model.ChEBIEntity;
+
+import java.util.*;
+
+/**
+ * Resolves the replacement identifiers ChEBI returns for obsolete (secondary) identifiers, once for the whole run
+ * rather than once per reference molecule.
+ *
+ * ChEBI answers a request for an obsolete identifier with the compound that replaced it, so the entity's identifier
+ * differs from the one requested.  All such replacement identifiers are collected and looked up in ChEBI in bulk,
+ * repeatedly, until ChEBI confirms each one as current; the resulting obsolete to current mapping is memoised so
+ * that chains of replacements (A replaced by B, B later replaced by C) collapse to their final identifier.  The
+ * reference molecules in the database which already carry the current identifiers are then fetched in bulk into the
+ * database reader's identifier index, so reporting identifier changes needs no further database or ChEBI round-trips.
+ */
+public class ChEBIIdentifierResolver {
+    private static final Logger logger = LogManager.getLogger(ChEBIIdentifierResolver.class);
+
+    private static final int MAX_REPLACEMENT_CHAIN_LENGTH = 10;
+
+    /**
+     * Bulk lookup of ChEBI entities by identifier, e.g. through the web service or the offline flat files.
+     */
+    @FunctionalInterface
+    public interface ChEBIEntityLookup {
+        Map<String, Optional<ChEBIEntity>> getChEBIEntities(Set<String> chEBIIdentifiers) throws Exception;
+    }
+
+    private final ChEBIEntityLookup chEBIEntityLookup;
+    private final DBReader dbReader;
+
+    private final Map<String, String> chEBIIdentifierToReplacement;
+    private final Set<String> confirmedChEBIIdentifiers;
+    private final Map<String, ChEBIEntity> chEBIIdentifierToCurrentChEBIEntity;
+    private final Map<String, String> obsoleteToCurrentChEBIIdentifier;
+
+    public ChEBIIdentifierResolver(ChEBIEntityLookup chEBIEntityLookup, DBReader dbReader) {
+        this.chEBIEntityLookup = chEBIEntityLookup;
+        this.dbReader = dbReader;
+
+        this.chEBIIdentifierToReplacement = new HashMap<>();
+        this.confirmedChEBIIdentifiers = new HashSet<>();
+        this.chEBIIdentifierToCurrentChEBIEntity = new HashMap<>();
+        this.obsoleteToCurrentChEBIIdentifier = new HashMap<>();
+    }
+
+    /**
+     * Resolves every replacement identifier in the ChEBI entities looked up for the reference molecules and
+     * prefetches the reference molecules carrying the resulting current identifiers.
+     *
+     * @param referenceMoleculeToPotentialChEBIEntity ChEBI entity looked up for each reference molecule
+     * @return Map of each reference molecule to the entity for its current ChEBI identifier, which differs from the
+     * one given only when the replacement has itself been replaced
+     * @throws Exception Thrown if unable to look up the replacement identifiers in ChEBI or the database
+     */
+    public Map<GKInstance, Optional<ChEBIEntity>> resolve(
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity) throws Exception {
+
+        Set<String> replacementChEBIIdentifiers = new LinkedHashSet<>();
+        referenceMoleculeToPotentialChEBIEntity.forEach((referenceMolecule, potentialChEBIEntity) ->
+            potentialChEBIEntity.ifPresent(chEBIEntity -> {
+                String requestedChEBIIdentifier = Utils.getReferenceMoleculeIdentifier(referenceMolecule);
+                if (addChEBIEntity(requestedChEBIIdentifier, chEBIEntity)) {
+                    replacementChEBIIdentifiers.add(chEBIEntity.getChEBIId());
+                }
+            })
+        );
+
+        resolveReplacementChains(replacementChEBIIdentifiers);
+        prefetchReferenceMolecules(referenceMoleculeToPotentialChEBIEntity.keySet());
+
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToCurrentChEBIEntity = new LinkedHashMap<>();
+        referenceMoleculeToPotentialChEBIEntity.forEach((referenceMolecule, potentialChEBIEntity) ->
+            referenceMoleculeToCurrentChEBIEntity.put(
+                referenceMolecule, potentialChEBIEntity.map(this::getCurrentChEBIEntity)
+            )
+        );
+        return referenceMoleculeToCurrentChEBIEntity;
+    }
+
+    /**
+     * @param chEBIIdentifier ChEBI identifier, obsolete or current
+     * @return Final identifier in the chain of replacements starting from chEBIIdentifier, or chEBIIdentifier itself
+     * if it has not been replaced
+     */
+    public String getCurrentChEBIIdentifier(String chEBIIdentifier) {
+        List<String> replacedChEBIIdentifiers = new ArrayList<>();
+        Set<String> visitedChEBIIdentifiers = new HashSet<>();
+        String currentChEBIIdentifier = chEBIIdentifier;
+        while (true) {
+            String memoisedChEBIIdentifier = obsoleteToCurrentChEBIIdentifier.get(currentChEBIIdentifier);
+            if (memoisedChEBIIdentifier != null) {
+                currentChEBIIdentifier = memoisedChEBIIdentifier;
+                break;
+            }
+
+            String replacementChEBIIdentifier = chEBIIdentifierToReplacement.get(currentChEBIIdentifier);
+            if (replacementChEBIIdentifier == null) {
+                break;
+            }
+            if (!visitedChEBIIdentifiers.add(currentChEBIIdentifier)) {
+                logger.warn("Cyclic ChEBI replacements starting from {} - using {}",
+                    chEBIIdentifier, currentChEBIIdentifier);
+                break;
+            }
+            replacedChEBIIdentifiers.add(currentChEBIIdentifier);
+            currentChEBIIdentifier = replacementChEBIIdentifier;
+        }
+
+        // Path compression: every identifier on the chain now maps straight to the end of it
+        for (String replacedChEBIIdentifier : replacedChEBIIdentifiers) {
+            if (!replacedChEBIIdentifier.equals(currentChEBIIdentifier)) {
+                obsoleteToCurrentChEBIIdentifier.put(replacedChEBIIdentifier, currentChEBIIdentifier);
+            }
+        }
+        return currentChEBIIdentifier;
+    }
+
+    /**
+     * @return Map of every obsolete ChEBI identifier seen to its current identifier
+     */
+    public Map<String, String> getObsoleteToCurrentChEBIIdentifiers() {
+        for (String obsoleteChEBIIdentifier : new ArrayList<>(chEBIIdentifierToReplacement.keySet())) {
+            getCurrentChEBIIdentifier(obsoleteChEBIIdentifier);
+        }
+        return Collections.unmodifiableMap(obsoleteToCurrentChEBIIdentifier);
+    }
+
+    /**
+     * Looks up the unconfirmed replacement identifiers in ChEBI, then any further replacements returned for them,
+     * until ChEBI returns each identifier unchanged (or no longer knows it).
+     */
+    private void resolveReplacementChains(Set<String> replacementChEBIIdentifiers) throws Exception {
+        Set<String> unconfirmedChEBIIdentifiers = new LinkedHashSet<>(replacementChEBIIdentifiers);
+        unconfirmedChEBIIdentifiers.removeIf(this::isResolved);
+        for (int chainLength = 0; !unconfirmedChEBIIdentifiers.isEmpty(); chainLength++) {
+            if (chainLength == MAX_REPLACEMENT_CHAIN_LENGTH) {
+                logger.warn("Stopped resolving ChEBI replacements after {} steps - {} identifiers left unconfirmed",
+                    MAX_REPLACEMENT_CHAIN_LENGTH, unconfirmedChEBIIdentifiers.size());
+                return;
+            }
+
+            logger.info("Looking up {} replacement ChEBI identifiers", unconfirmedChEBIIdentifiers.size());
+            Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity =
+                chEBIEntityLookup.getChEBIEntities(unconfirmedChEBIIdentifiers);
+
+            Set<String> nextUnconfirmedChEBIIdentifiers = new LinkedHashSet<>();
+            chEBIIdentifierToChEBIEntity.forEach((chEBIIdentifier, potentialChEBIEntity) ->
+                potentialChEBIEntity.ifPresent(chEBIEntity -> {
+                    if (addChEBIEntity(chEBIIdentifier, chEBIEntity) && !isResolved(chEBIEntity.getChEBIId())) {
+                        nextUnconfirmedChEBIIdentifiers.add(chEBIEntity.getChEBIId());
+                    }
+                })
+            );
+            unconfirmedChEBIIdentifiers = nextUnconfirmedChEBIIdentifiers;
+        }
+    }
+
+    /**
+     * @return true if the entity is a replacement for the requested identifier
+     */
+    private boolean addChEBIEntity(String requestedChEBIIdentifier, ChEBIEntity chEBIEntity) {
+        chEBIIdentifierToCurrentChEBIEntity.put(chEBIEntity.getChEBIId(), chEBIEntity);
+        if (chEBIEntity.getChEBIId().equals(requestedChEBIIdentifier)) {
+            confirmedChEBIIdentifiers.add(requestedChEBIIdentifier);
+            return false;
+        }
+
+        chEBIIdentifierToReplacement.put(requestedChEBIIdentifier, chEBIEntity.getChEBIId());
+        return true;
+    }
+
+    /**
+     * @return true if ChEBI has already been asked about the identifier, either confirming it as current or
+     * returning its replacement
+     */
+    private boolean isResolved(String chEBIIdentifier) {
+        return confirmedChEBIIdentifiers.contains(chEBIIdentifier) ||
+            chEBIIdentifierToReplacement.containsKey(chEBIIdentifier);
+    }
+
+    private ChEBIEntity getCurrentChEBIEntity(ChEBIEntity chEBIEntity) {
+        return chEBIIdentifierToCurrentChEBIEntity.getOrDefault(
+            getCurrentChEBIIdentifier(chEBIEntity.getChEBIId()), chEBIEntity
+        );
+    }
+
+    private void prefetchReferenceMolecules(Collection<GKInstance> referenceMolecules) throws Exception {
+        Set<String> currentChEBIIdentifiers = new LinkedHashSet<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            String chEBIIdentifier = Utils.getReferenceMoleculeIdentifier(referenceMolecule);
+            String currentChEBIIdentifier = getCurrentChEBIIdentifier(chEBIIdentifier);
+            if (!currentChEBIIdentifier.equals(chEBIIdentifier)) {
+                currentChEBIIdentifiers.add(currentChEBIIdentifier);
+            }
+        }
+        if (currentChEBIIdentifiers.isEmpty()) {
+            return;
+        }
+
+        logger.info("Prefetching reference molecules for {} replacement ChEBI identifiers",
+            currentChEBIIdentifiers.size());
+        dbReader.getReferenceMoleculesWithChEBIIdentifiers(currentChEBIIdentifiers);
+    }
+}
@@ -0,0 +1,153 @@
+package org.reactome;
+
+import com.google.common.collect.Lists;
+import org.gk.model.GKInstance;
+import org.reactome.model.ChEBIEntity;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Looks up successive chunks of reference molecules in ChEBI on a background thread while the caller updates the
+ * chunks already looked up, so that the ChEBI requests for one chunk overlap with the database work for the chunk
+ * before it.
+ *
+ * Looked up chunks are handed over through a bounded queue in the order the chunks were given.  Once the queue is
+ * full the lookup thread waits for the caller to take a chunk, so lookups never run more than queueCapacity chunks
+ * ahead of the updates.  Only the lookups run on the background thread: everything reading or writing the database
+ * stays on the caller's thread, so all writes still go through the one database connection and transaction.
+ */
+public class ChEBILookupPipeline implements AutoCloseable {
+    // Marks the end of the chunks, whether all were looked up or a lookup failed
+    private static final Map<GKInstance, Optional<ChEBIEntity>> END_OF_CHUNKS = new LinkedHashMap<>();
+
+    /**
+     * Lookup of the ChEBI entities for one chunk of reference molecules, e.g. through the web service or the offline
+     * flat files.  It must not read the database, since it runs alongside the caller's database work.
+     */
+    @FunctionalInterface
+    public interface ChunkLookup {
+        Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(List<GKInstance> referenceMolecules) throws Exception;
+    }
+
+    private final List<List<GKInstance>> referenceMoleculeChunks;
+    private final ChunkLookup chunkLookup;
+    private final BlockingQueue<Map<GKInstance, Optional<ChEBIEntity>>> lookedUpChunks;
+    private final ExecutorService lookupExecutor;
+
+    private volatile Throwable lookupFailure;
+    private boolean finished;
+    private int takenChunkCount;
+    private long waitingNanos;
+
+    /**
+     * @param referenceMolecules Reference molecules to look up, in the order they are to be updated
+     * @param chunkSize Number of reference molecules per chunk
+     * @param queueCapacity Maximum number of looked up chunks waiting to be taken
+     * @param chunkLookup Lookup run for each chunk on the background thread
+     */
+    public ChEBILookupPipeline(
+        List<GKInstance> referenceMolecules, int chunkSize, int queueCapacity, ChunkLookup chunkLookup) {
+
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+
+        // Read here, on the caller's thread, so that no identifier still to be loaded is read through the database
+        // connection from the lookup thread
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            Utils.getReferenceMoleculeIdentifier(referenceMolecule);
+        }
+
+        this.referenceMoleculeChunks = Lists.partition(referenceMolecules, chunkSize);
+        this.chunkLookup = chunkLookup;
+        this.lookedUpChunks = new ArrayBlockingQueue<>(queueCapacity);
+        this.lookupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chebi-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts looking up the chunks on the background thread.
+     */
+    public void start() {
+        lookupExecutor.execute(this::lookUpChunks);
+    }
+
+    /**
+     * Waits for the next chunk to be looked up.
+     *
+     * @return ChEBI entity looked up for each reference molecule of the next chunk, in the order given, or null once
+     * every chunk has been taken
+     * @throws Exception Thrown, as it was thrown by the lookup, if the lookup of the next chunk failed
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    public Map<GKInstance, Optional<ChEBIEntity>> take() throws Exception {
+        if (finished) {
+            return null;
+        }
+
+        long waitStart = System.nanoTime();
+        Map<GKInstance, Optional<ChEBIEntity>> lookedUpChunk = lookedUpChunks.take();
+        waitingNanos += System.nanoTime() - waitStart;
+
+        if (lookedUpChunk == END_OF_CHUNKS) {
+            finished = true;
+            if (lookupFailure instanceof Exception) {
+                throw (Exception) lookupFailure;
+            }
+            if (lookupFailure instanceof Error) {
+                throw (Error) lookupFailure;
+            }
+            return null;
+        }
+        takenChunkCount++;
+        return lookedUpChunk;
+    }
+
+    /**
+     * Stops the lookup thread, abandoning any chunks not yet looked up.
+     */
+    @Override
+    public void close() {
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Number of chunks taken and the time spent waiting for them to be looked up, i.e. the time the caller
+     * had no chunk to update
+     */
+    @Override
+    public String toString() {
+        return String.format("Chunks taken: %d of %d, time waiting for lookups: %.1fs",
+            takenChunkCount, referenceMoleculeChunks.size(), waitingNanos / 1e9);
+    }
+
+    private void lookUpChunks() {
+        try {
+            try {
+                for (List<GKInstance> referenceMoleculeChunk : referenceMoleculeChunks) {
+                    lookedUpChunks.put(chunkLookup.getChEBIEntities(referenceMoleculeChunk));
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable e) {
+                lookupFailure = e;
+            }
+            lookedUpChunks.put(END_OF_CHUNKS);
+        } catch (InterruptedException e) {
+            // Closed before every chunk was taken, so nothing is waiting for the rest
+        }
+    }
+}
@@ -1,42 +1,95 @@
 package org.reactome;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gk.model.GKInstance;
 import org.gk.model.ReactomeJavaConstants;
+import org.reactome.database.DBReader;
+import org.reactome.reports.CreatorCache;
 import org.reactome.reports.DuplicateReferenceMoleculeReporter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
-import static org.reactome.reports.Utils.getCreator;
-import static org.reactome.reports.Utils.getCreatorName;
 
+/**
+ * Finds reference molecules sharing an identifier.  Molecules are added as they are loaded, so the duplicates among
+ * the molecules added so far can be had at any point in the run without going over the molecules again.  The update
+ * never rewrites identifiers, so the identifiers the molecules are added with are also those they end the run with.
+ *
+ * Only identifiers and DB_IDs are kept, numeric ChEBI identifiers in a primitive index keyed by the identifier as an
+ * int, so the molecules themselves need not be held until the end of the run; duplicates are fetched again when they
+ * are reported.
+ */
 public class DuplicateChecker {
     private static Logger logger = LogManager.getLogger(DuplicateChecker.class);
 
-    private List<GKInstance> referenceMolecules;
+    // Longest identifier parsed as an int, so that no ChEBI identifier overflows
+    private static final int MAX_NUMERIC_IDENTIFIER_LENGTH = 9;
+
+    private DBReader dbReader;
+    private CreatorCache creatorCache;
+    private ChEBIIdIndex chEBIIdToReferenceMoleculeDbIds;
+    private ListMultimap<String, Long> otherIdentifierToReferenceMoleculeDbIds;
     private DuplicateReferenceMoleculeReporter duplicateReferenceMoleculeReporter;
 
-    public DuplicateChecker(List<GKInstance> referenceMolecules) {
-        this.referenceMolecules = referenceMolecules;
+    public DuplicateChecker(DBReader dbReader, CreatorCache creatorCache) {
+        this.dbReader = dbReader;
+        this.creatorCache = creatorCache;
+        this.chEBIIdToReferenceMoleculeDbIds = new ChEBIIdIndex();
+        this.otherIdentifierToReferenceMoleculeDbIds = ArrayListMultimap.create();
         this.duplicateReferenceMoleculeReporter = new DuplicateReferenceMoleculeReporter();
     }
 
+    /**
+     * @param referenceMolecules Reference molecules just loaded, with their identifiers as read
+     */
+    public void add(Collection<GKInstance> referenceMolecules) {
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            String identifier = getIdentifier(referenceMolecule);
+            if (identifier != null) {
+                add(identifier, referenceMolecule.getDBID());
+            }
+        }
+    }
+
+    /**
+     * @return DB_IDs of the reference molecules added so far sharing each identifier carried by two or more of them
+     */
+    public Map<String, List<Long>> getDuplicateIdentifierToReferenceMoleculeDbIds() {
+        Map<String, List<Long>> duplicateIdentifierToReferenceMoleculeDbIds = new LinkedHashMap<>();
+        for (int chEBIId : chEBIIdToReferenceMoleculeDbIds.getDuplicates()) {
+            duplicateIdentifierToReferenceMoleculeDbIds.put(
+                String.valueOf(chEBIId), Longs.asList(chEBIIdToReferenceMoleculeDbIds.get(chEBIId))
+            );
+        }
+        for (String identifier : otherIdentifierToReferenceMoleculeDbIds.keySet()) {
+            List<Long> referenceMoleculeDbIds = otherIdentifierToReferenceMoleculeDbIds.get(identifier);
+            if (referenceMoleculeDbIds.size() > 1) {
+                duplicateIdentifierToReferenceMoleculeDbIds.put(identifier, new ArrayList<>(referenceMoleculeDbIds));
+            }
+        }
+        return duplicateIdentifierToReferenceMoleculeDbIds;
+    }
+
     public void findAndLogDuplicates() throws Exception {
-        Map<String, List<GKInstance>> duplicates = getDuplicateIdentifierToReferenceMolecules();
+        Map<String, List<Long>> duplicates = getDuplicateIdentifierToReferenceMoleculeDbIds();
 
-        for (Map.Entry<String, List<GKInstance>> entry : duplicates.entrySet()) {
+        for (Map.Entry<String, List<Long>> entry : duplicates.entrySet()) {
             String identifier = entry.getKey();
-            List<GKInstance> duplicateReferenceMolecules = entry.getValue();
 
             // Log each duplicate instance
-            for (GKInstance referenceMolecule : duplicateReferenceMolecules) {
-                GKInstance creator = getCreator(referenceMolecule);
+            for (GKInstance referenceMolecule : dbReader.getReferenceMolecules(entry.getValue())) {
+                GKInstance creator = creatorCache.getCreator(referenceMolecule);
                 this.duplicateReferenceMoleculeReporter.report(
                     referenceMolecule.getDBID().toString(),
-                    getCreatorName(creator),
+                    creatorCache.getCreatorName(creator),
                     identifier,
                     referenceMolecule.getDisplayName()
                 );
@@ -44,20 +97,42 @@ public class DuplicateChecker {
         }
     }
 
-    private Map<String, List<GKInstance>> getDuplicateIdentifierToReferenceMolecules() {
-        return referenceMolecules.stream()
-            .collect(Collectors.groupingBy(molecule -> {
-                try {
-                    return (String) molecule.getAttributeValue(ReactomeJavaConstants.identifier);
-                } catch (Exception e) {
-                    logger.error("Error getting identifier for molecule: " + molecule, e);
-                    return "";
-                }
-            }))
-            .entrySet()
-            .stream()
-            .filter(entry -> entry.getValue().size() > 1)
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    private void add(String identifier, long referenceMoleculeDbId) {
+        int chEBIId = parseChEBIId(identifier);
+        if (chEBIId >= 0) {
+            chEBIIdToReferenceMoleculeDbIds.add(chEBIId, referenceMoleculeDbId);
+        } else if (!otherIdentifierToReferenceMoleculeDbIds.containsEntry(identifier, referenceMoleculeDbId)) {
+            otherIdentifierToReferenceMoleculeDbIds.put(identifier, referenceMoleculeDbId);
+        }
     }
 
+    /**
+     * @return The identifier as an int if it is a plain ChEBI number (digits without leading zeros, which would not
+     * survive the conversion), otherwise -1
+     */
+    static int parseChEBIId(String identifier) {
+        int length = identifier.length();
+        if (length == 0 || length > MAX_NUMERIC_IDENTIFIER_LENGTH || (identifier.charAt(0) == '0' && length > 1)) {
+            return -1;
+        }
+
+        int chEBIId = 0;
+        for (int index = 0; index < length; index++) {
+            char digit = identifier.charAt(index);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            chEBIId = chEBIId * 10 + (digit - '0');
+        }
+        return chEBIId;
+    }
+
+    private String getIdentifier(GKInstance referenceMolecule) {
+        try {
+            return (String) referenceMolecule.getAttributeValue(ReactomeJavaConstants.identifier);
+        } catch (Exception e) {
+            logger.error("Error getting identifier for molecule: " + referenceMolecule, e);
+            return "";
+        }
+    }
 }
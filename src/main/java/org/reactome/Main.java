@@ -6,94 +6,530 @@ import org.apache.logging.log4j.Logger;
 import org.gk.model.GKInstance;
 import org.gk.model.ReactomeJavaConstants;
 import org.gk.persistence.MySQLAdaptor;
+import org.reactome.database.ChangePlan;
+import org.reactome.database.CheckpointJournal;
 import org.reactome.database.DBInteractor;
+import org.reactome.database.ReferenceMoleculeChanges;
 import org.reactome.model.ChEBIEntity;
 import org.reactome.reports.FailedChEBILookupReporter;
 import org.reactome.reports.ReferenceMoleculeChEBIIdentifierChangeReporter;
+import org.reactome.webservice.ChEBIEntityCache;
 import org.reactome.webservice.ChEBIEntityRetriever;
+import org.reactome.webservice.ChEBIFlatFileRetriever;
+import org.reactome.webservice.helpers.AdaptiveBatchSizer;
+import org.reactome.webservice.helpers.ChEBIAPIClient;
+import org.reactome.webservice.helpers.RequestThrottle;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-import static org.reactome.reports.Utils.getCreator;
-import static org.reactome.reports.Utils.getCreatorName;
 
 public class Main {
     private static Logger logger = LogManager.getLogger(Main.class);
 
+    private static final int BATCH_SIZE = 500;
+    private static final String NOT_IN_CHEBI_FAILURE_REASON = "Identifier not found in ChEBI";
+
+    private static final String UPDATE_MODE = "update";
+    private static final String PLAN_MODE = "plan";
+    private static final String APPLY_MODE = "apply";
+
     private static DBInteractor dbInteractor;
     private static FailedChEBILookupReporter failedChEBILookupReporter;
     private static ReferenceMoleculeChEBIIdentifierChangeReporter referenceMoleculeChEBIIdentifierChangeReporter;
+    private static DuplicateChecker duplicateChecker;
+    private static Map<GKInstance, String> referenceMoleculeToLookupFailureReason = Collections.emptyMap();
+    private static Map<String, String> replacementChEBIIdentifierToLookupFailureReason = Collections.emptyMap();
 
     public static void main(String[] args) throws Exception {
         String configFilePath = args.length > 0 ? args[0] : "src/main/resources/config.properties";
+        String mode = args.length > 1 ? args[1] : UPDATE_MODE;
         Properties configProperties = getConfigProperties(configFilePath);
         dbInteractor = new DBInteractor(getCuratorDbAdaptor(configProperties), getPersonId(configProperties));
 
-        dbInteractor.startTransaction();
+        switch (mode) {
+            case UPDATE_MODE:
+                update(configProperties, null);
+                logger.info("Finished ChEBI update - please check report files for details");
+                break;
+            case PLAN_MODE:
+                ChangePlan changePlan = getChangePlan(configProperties);
+                update(configProperties, changePlan);
+                logger.info("Finished planning ChEBI update - please check report files and the change plan " +
+                    changePlan.getPlanFile() + ", then run in " + APPLY_MODE + " mode to write it");
+                break;
+            case APPLY_MODE:
+                applyChangePlan(getChangePlan(configProperties));
+                logger.info("Finished applying ChEBI update change plan");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode '" + mode + "' - expected one of " +
+                    String.join(", ", UPDATE_MODE, PLAN_MODE, APPLY_MODE));
+        }
+    }
+
+    /**
+     * Looks up the reference molecules in ChEBI and updates them.  When planning, the database is only read and the
+     * changes are written to the change plan instead, so no transaction is opened.
+     *
+     * @param changePlan Change plan to write the changes to, or null to write them to the database
+     */
+    private static void update(Properties configProperties, ChangePlan changePlan) throws Exception {
+        int commitInterval = changePlan == null ? getCommitInterval(configProperties) : 0;
+        CheckpointJournal checkpointJournal = commitInterval > 0 ? getCheckpointJournal(configProperties) : null;
+        UpdateFingerprints updateFingerprints = getUpdateFingerprints(configProperties);
+
+        if (changePlan != null) {
+            changePlan.create();
+        } else {
+            dbInteractor.startTransaction();
+        }
+
+        List<Long> referenceMoleculeDbIds = dbInteractor.getAllChEBIReferenceMoleculeDbIds();
+        logger.info("Found " + referenceMoleculeDbIds.size() + " reference molecules to process");
+        List<Long> referenceMoleculeDbIdsToUpdate =
+            getReferenceMoleculeDbIdsToUpdate(referenceMoleculeDbIds, checkpointJournal);
+        boolean prefetchAttributes = shouldPrefetchAttributes(configProperties);
+        if (prefetchAttributes) {
+            dbInteractor.indexReferenceMoleculeIdentifiers();
+        }
+        duplicateChecker = new DuplicateChecker(dbInteractor, dbInteractor.getCreatorCache());
+        addCommittedReferenceMoleculesToDuplicateCheck(
+            referenceMoleculeDbIds.subList(0, referenceMoleculeDbIds.size() - referenceMoleculeDbIdsToUpdate.size()),
+            configProperties, prefetchAttributes
+        );
 
-        List<GKInstance> referenceMolecules = dbInteractor.getAllChEBIReferenceMoleculeInstances();
         logger.info("Updating reference molecules...");
-        updateReferenceMolecules(referenceMolecules);
+        lookUpAndUpdateReferenceMolecules(
+            referenceMoleculeDbIdsToUpdate, configProperties, prefetchAttributes, updateFingerprints, commitInterval,
+            checkpointJournal, changePlan
+        );
         logger.info("Done updating reference molecules");
 
         logger.info("Checking for duplicate reference molecules...");
-        checkForDuplicates(referenceMolecules);
+        duplicateChecker.findAndLogDuplicates();
         logger.info("Done checking for duplicate reference molecules");
 
+        if (changePlan == null) {
+            dbInteractor.commit();
+            if (updateFingerprints != null) {
+                updateFingerprints.save();
+            }
+        }
+        if (checkpointJournal != null) {
+            checkpointJournal.delete();
+        }
+    }
+
+    /**
+     * Writes the changes in a change plan made by an earlier run in plan mode, in one transaction.
+     */
+    private static void applyChangePlan(ChangePlan changePlan) throws Exception {
+        List<ChangePlan.Change> changes = changePlan.read();
+        logger.info("Applying " + changes.size() + " planned changes from " + changePlan.getPlanFile());
+
+        dbInteractor.startTransaction();
+        int skippedInstanceCount = dbInteractor.applyChangePlan(changes);
         dbInteractor.commit();
 
-        logger.info("Finished ChEBI update - please check report files for details");
+        if (skippedInstanceCount > 0) {
+            logger.warn(skippedInstanceCount + " instances changed since the plan was made were skipped - " +
+                "plan and apply again to update them");
+        }
+    }
+
+    /**
+     * Looks up the reference molecules in ChEBI, through the web service or offline from the flat files, and updates
+     * each chunk of them as soon as its lookups complete while the next chunk is being looked up.
+     *
+     * @param referenceMoleculeDbIds DB_IDs of the reference molecules to update, in ascending order
+     */
+    private static void lookUpAndUpdateReferenceMolecules(
+        List<Long> referenceMoleculeDbIds, Properties configProperties, boolean prefetchAttributes,
+        UpdateFingerprints updateFingerprints, int commitInterval, CheckpointJournal checkpointJournal,
+        ChangePlan changePlan) throws Exception {
+
+        int chunkSize = getLookupChunkSize(configProperties);
+
+        Path flatFileDirectory = getChEBIFlatFileDirectory(configProperties);
+        if (flatFileDirectory != null) {
+            logger.info("Looking up ChEBI entities offline from flat files in " + flatFileDirectory);
+            ChEBIFlatFileRetriever chEBIFlatFileRetriever = new ChEBIFlatFileRetriever(flatFileDirectory);
+            updateReferenceMolecules(
+                referenceMoleculeDbIds, chEBIFlatFileRetriever::getChEBIEntities,
+                chEBIIdentifiers -> chEBIIdentifiers.stream().collect(Collectors.toMap(
+                    chEBIIdentifier -> chEBIIdentifier, chEBIFlatFileRetriever::getChEBIEntity
+                )),
+                configProperties, prefetchAttributes, updateFingerprints, commitInterval, checkpointJournal,
+                changePlan
+            );
+            return;
+        }
+
+        int maxBatchesInFlight = getMaxBatchesInFlight(configProperties);
+        int maxFailedIdentifiers = getMaxFailedIdentifiers(configProperties);
+        AdaptiveBatchSizer batchSizer = getAdaptiveBatchSizer(configProperties);
+        Map<GKInstance, String> lookupFailureReasons = new ConcurrentHashMap<>();
+        referenceMoleculeToLookupFailureReason = lookupFailureReasons;
+        Map<String, String> replacementLookupFailureReasons = new ConcurrentHashMap<>();
+        replacementChEBIIdentifierToLookupFailureReason = replacementLookupFailureReasons;
+        try (ChEBIAPIClient chEBIAPIClient = getChEBIAPIClient(configProperties);
+             ChEBIEntityCache chEBIEntityCache = getChEBIEntityCache(configProperties)) {
+
+            logger.info("Querying ChEBI with up to " + maxBatchesInFlight + " batches of " +
+                batchSizer.getBatchSize() + " (initially) in flight, " + chunkSize + " reference molecules at a time");
+            ChEBIEntityRetriever chEBIEntityRetriever = new ChEBIEntityRetriever(chEBIAPIClient, chEBIEntityCache);
+            // The limit on failed identifiers is for the whole run, so each lookup may use only what is left of it
+            Set<String> failedChEBIIdentifiers = ConcurrentHashMap.newKeySet();
+            ChEBILookupPipeline.ChunkLookup chunkLookup = referenceMoleculeChunk -> {
+                Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity =
+                    chEBIEntityRetriever.getChEBIEntities(
+                        referenceMoleculeChunk, batchSizer, maxBatchesInFlight,
+                        getRemainingFailedIdentifiers(maxFailedIdentifiers, failedChEBIIdentifiers)
+                    );
+
+                chEBIEntityRetriever.getFailedLookups().forEach((referenceMolecule, failureReason) -> {
+                    failedChEBIIdentifiers.add(Utils.getReferenceMoleculeIdentifier(referenceMolecule));
+                    lookupFailureReasons.put(referenceMolecule, failureReason);
+                });
+                return referenceMoleculeToPotentialChEBIEntity;
+            };
+
+            updateReferenceMolecules(
+                referenceMoleculeDbIds, chunkLookup,
+                chEBIIdentifiers -> {
+                    Map<String, Optional<ChEBIEntity>> chEBIIdentifierToPotentialChEBIEntity =
+                        chEBIEntityRetriever.getChEBIEntitiesByIdentifier(
+                            chEBIIdentifiers, batchSizer, maxBatchesInFlight,
+                            getRemainingFailedIdentifiers(maxFailedIdentifiers, failedChEBIIdentifiers)
+                        );
+
+                    chEBIEntityRetriever.getFailedIdentifierLookups().forEach((chEBIIdentifier, failureReason) -> {
+                        failedChEBIIdentifiers.add(chEBIIdentifier);
+                        replacementLookupFailureReasons.put(chEBIIdentifier, failureReason);
+                    });
+                    return chEBIIdentifierToPotentialChEBIEntity;
+                },
+                configProperties, prefetchAttributes, updateFingerprints, commitInterval, checkpointJournal,
+                changePlan
+            );
+        } finally {
+            logger.info("ChEBI batch sizing - " + batchSizer);
+            if (!lookupFailureReasons.isEmpty()) {
+                logger.warn(lookupFailureReasons.size() + " ChEBI lookups failed and were skipped " +
+                    "- see the failed ChEBI lookups report");
+            }
+        }
+    }
+
+    /**
+     * @param referenceMoleculeDbIds DB_IDs of all the reference molecules, in ascending order
+     * @return DB_IDs of the reference molecules not yet committed by an earlier run, according to the checkpoint
+     * journal, i.e. the end of the given DB_IDs; all of them if there is no journal or checkpoint
+     */
+    private static List<Long> getReferenceMoleculeDbIdsToUpdate(
+        List<Long> referenceMoleculeDbIds, CheckpointJournal checkpointJournal) throws Exception {
+
+        if (checkpointJournal == null) {
+            return referenceMoleculeDbIds;
+        }
+
+        // Chunks are committed in DB_ID order so the checkpoint is a single DB_ID
+        Long lastCommittedDbId = checkpointJournal.getLastCommittedDbId();
+        if (lastCommittedDbId == null) {
+            return referenceMoleculeDbIds;
+        }
+        if (checkpointJournal.getInstanceEditDbId() != null) {
+            dbInteractor.useInstanceEdit(checkpointJournal.getInstanceEditDbId());
+        }
+
+        int firstDbIdToUpdateIndex = 0;
+        while (firstDbIdToUpdateIndex < referenceMoleculeDbIds.size() &&
+            referenceMoleculeDbIds.get(firstDbIdToUpdateIndex) <= lastCommittedDbId) {
+            firstDbIdToUpdateIndex++;
+        }
+        logger.info("Skipping " + firstDbIdToUpdateIndex + " reference molecules committed by an earlier run");
+        return referenceMoleculeDbIds.subList(firstDbIdToUpdateIndex, referenceMoleculeDbIds.size());
+    }
+
+    /**
+     * Adds the reference molecules committed by an earlier run, which this run does not update, to the duplicate
+     * check a page at a time.
+     */
+    private static void addCommittedReferenceMoleculesToDuplicateCheck(
+        List<Long> committedReferenceMoleculeDbIds, Properties configProperties, boolean prefetchAttributes)
+        throws Exception {
+
+        for (List<Long> pageDbIds :
+            Lists.partition(committedReferenceMoleculeDbIds, getReferenceMoleculePageSize(configProperties))) {
+
+            List<GKInstance> referenceMolecules = dbInteractor.getReferenceMolecules(pageDbIds);
+            if (prefetchAttributes) {
+                dbInteractor.loadReferenceMoleculeProjections(referenceMolecules);
+            }
+            duplicateChecker.add(referenceMolecules);
+            dbInteractor.clearReferenceMoleculeProjections();
+            if (shouldReleaseInstanceCache(configProperties)) {
+                dbInteractor.releaseInstanceCache();
+            }
+        }
+    }
+
+    /**
+     * Maps the reference molecules whose replacement identifier could not be looked up to an empty Optional, with the
+     * failure reason, so they are skipped and reported like those whose own lookup failed.
+     */
+    private static void skipFailedReplacementLookups(
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToCurrentChEBIEntity,
+        ChEBIIdentifierResolver chEBIIdentifierResolver) {
+
+        if (replacementChEBIIdentifierToLookupFailureReason.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<GKInstance, Optional<ChEBIEntity>> referenceMoleculeAndChEBIEntity :
+            referenceMoleculeToCurrentChEBIEntity.entrySet()) {
+
+            GKInstance referenceMolecule = referenceMoleculeAndChEBIEntity.getKey();
+            String currentChEBIIdentifier = chEBIIdentifierResolver.getCurrentChEBIIdentifier(
+                Utils.getReferenceMoleculeIdentifier(referenceMolecule)
+            );
+            String failureReason = replacementChEBIIdentifierToLookupFailureReason.get(currentChEBIIdentifier);
+            if (failureReason != null) {
+                referenceMoleculeToLookupFailureReason.put(
+                    referenceMolecule,
+                    "Lookup of replacement identifier " + currentChEBIIdentifier + " failed: " + failureReason
+                );
+                referenceMoleculeAndChEBIEntity.setValue(Optional.empty());
+            }
+        }
     }
 
-    private static void updateReferenceMolecules(List<GKInstance> referenceMolecules) throws Exception {
+    /**
+     * @return The reference molecules to update, leaving out those whose ChEBI entity and own state are unchanged
+     * since the last successful update when running in delta mode
+     */
+    private static List<GKInstance> getChangedReferenceMolecules(
+        List<GKInstance> referenceMolecules,
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity,
+        UpdateFingerprints updateFingerprints) throws Exception {
+
+        if (updateFingerprints == null) {
+            return referenceMolecules;
+        }
+
+        List<GKInstance> changedReferenceMolecules = new ArrayList<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            Optional<ChEBIEntity> potentialChEBIEntity = referenceMoleculeToPotentialChEBIEntity.get(referenceMolecule);
+            if (potentialChEBIEntity.isEmpty() ||
+                !updateFingerprints.isUnchanged(
+                    dbInteractor.getChEBIMoleculeProjection(referenceMolecule), potentialChEBIEntity.get())) {
+                changedReferenceMolecules.add(referenceMolecule);
+            }
+        }
+        logger.info("Skipping " + (referenceMolecules.size() - changedReferenceMolecules.size()) +
+            " reference molecules unchanged since the last update");
+        return changedReferenceMolecules;
+    }
+
+    /**
+     * Records the fingerprints of the updated reference molecules, to be saved once the update has been committed.
+     */
+    private static void recordFingerprints(
+        UpdateFingerprints updateFingerprints,
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity) throws Exception {
+
+        for (Map.Entry<GKInstance, Optional<ChEBIEntity>> entry : referenceMoleculeToPotentialChEBIEntity.entrySet()) {
+            if (entry.getValue().isPresent()) {
+                updateFingerprints.record(
+                    dbInteractor.getChEBIMoleculeProjection(entry.getKey()), entry.getValue().get()
+                );
+            }
+        }
+    }
+
+    /**
+     * Updates the reference molecules a page at a time, reading each page from the database and updating it chunk by
+     * chunk as the lookup pipeline looks them up, so that only one page of reference molecules (and their referrers)
+     * is held at a time.  Replacement identifiers are resolved, and in delta mode the unchanged reference molecules
+     * left out, for each chunk in turn; the resolver remembers the replacements resolved for earlier chunks.
+     *
+     * @param referenceMoleculeDbIds DB_IDs of the reference molecules to update, in ascending order
+     */
+    private static void updateReferenceMolecules(
+        List<Long> referenceMoleculeDbIds, ChEBILookupPipeline.ChunkLookup chunkLookup,
+        ChEBIIdentifierResolver.ChEBIEntityLookup chEBIEntityLookup, Properties configProperties,
+        boolean prefetchAttributes, UpdateFingerprints updateFingerprints, int commitInterval,
+        CheckpointJournal checkpointJournal, ChangePlan changePlan) throws Exception {
+
         failedChEBILookupReporter = new FailedChEBILookupReporter();
         referenceMoleculeChEBIIdentifierChangeReporter = new ReferenceMoleculeChEBIIdentifierChangeReporter();
+        ChEBIIdentifierResolver chEBIIdentifierResolver = new ChEBIIdentifierResolver(chEBIEntityLookup, dbInteractor);
 
-        logger.info("Found " + referenceMolecules.size() + " reference molecules to process");
-
-        final int batchSize = 500;
+        int pageSize = getReferenceMoleculePageSize(configProperties);
+        boolean releaseInstanceCache = shouldReleaseInstanceCache(configProperties);
+        int chunkSize = getLookupChunkSize(configProperties);
+        int queueCapacity = getLookupQueueCapacity(configProperties);
+        int batchSize = commitInterval > 0 ? Math.min(BATCH_SIZE, commitInterval) : BATCH_SIZE;
         int processedCount = 0;
-        for (List<GKInstance> referenceMoleculeBatch : getReferenceMoleculeBatches(referenceMolecules, batchSize)) {
-            updateReferenceMoleculeBatch(referenceMoleculeBatch);
+        int uncommittedCount = 0;
+        for (List<Long> pageDbIds : Lists.partition(referenceMoleculeDbIds, pageSize)) {
+            List<GKInstance> referenceMolecules = dbInteractor.getReferenceMolecules(pageDbIds);
+            if (prefetchAttributes) {
+                dbInteractor.loadReferenceMoleculeProjections(referenceMolecules);
+            }
+            duplicateChecker.add(referenceMolecules);
+
+            ChEBILookupPipeline chEBILookupPipeline =
+                new ChEBILookupPipeline(referenceMolecules, chunkSize, queueCapacity, chunkLookup);
+            try (chEBILookupPipeline) {
+                chEBILookupPipeline.start();
+                if (prefetchAttributes && updateFingerprints == null) {
+                    // Read while the first chunk is being looked up
+                    dbInteractor.loadReferenceMoleculeReferrers(referenceMolecules);
+                    dbInteractor.loadReportedInstanceCreators(referenceMolecules);
+                }
+
+                Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity;
+                while ((referenceMoleculeToPotentialChEBIEntity = chEBILookupPipeline.take()) != null) {
+                    Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeChunkToCurrentChEBIEntity =
+                        chEBIIdentifierResolver.resolve(referenceMoleculeToPotentialChEBIEntity);
+                    skipFailedReplacementLookups(referenceMoleculeChunkToCurrentChEBIEntity, chEBIIdentifierResolver);
+
+                    List<GKInstance> changedReferenceMolecules = getChangedReferenceMolecules(
+                        new ArrayList<>(referenceMoleculeChunkToCurrentChEBIEntity.keySet()),
+                        referenceMoleculeChunkToCurrentChEBIEntity, updateFingerprints
+                    );
+                    if (prefetchAttributes && updateFingerprints != null) {
+                        // Only the referrers of changed molecules are read in delta mode
+                        dbInteractor.loadReferenceMoleculeReferrers(changedReferenceMolecules);
+                        dbInteractor.loadReportedInstanceCreators(changedReferenceMolecules);
+                    }
+
+                    for (List<GKInstance> referenceMoleculeBatch :
+                        getReferenceMoleculeBatches(changedReferenceMolecules, batchSize)) {
+
+                        updateReferenceMoleculeBatch(
+                            referenceMoleculeBatch, referenceMoleculeChunkToCurrentChEBIEntity
+                        );
+                        if (changePlan != null) {
+                            changePlan.append(dbInteractor.takePlannedChanges());
+                        } else {
+                            dbInteractor.flush();
+                        }
+
+                        processedCount += referenceMoleculeBatch.size();
+                        uncommittedCount += referenceMoleculeBatch.size();
+                        logger.info("Finished processing " + processedCount + " reference molecules");
+
+                        if (commitInterval > 0 && uncommittedCount >= commitInterval) {
+                            commitChunk(
+                                referenceMoleculeBatch.get(referenceMoleculeBatch.size() - 1), checkpointJournal
+                            );
+                            uncommittedCount = 0;
+                        }
+                    }
+                    if (updateFingerprints != null) {
+                        recordFingerprints(updateFingerprints, referenceMoleculeChunkToCurrentChEBIEntity);
+                    }
+                }
+            } finally {
+                logger.info("ChEBI lookup pipeline - " + chEBILookupPipeline);
+            }
 
-            processedCount += referenceMoleculeBatch.size();
-            logger.info("Finished processing " + processedCount + " reference molecules");
+            dbInteractor.clearReferenceMoleculeProjections();
+            if (releaseInstanceCache) {
+                dbInteractor.releaseInstanceCache();
+            }
         }
+        logger.info("Resolved " + chEBIIdentifierResolver.getObsoleteToCurrentChEBIIdentifiers().size() +
+            " obsolete ChEBI identifiers to their current identifiers");
     }
 
-    private static void updateReferenceMoleculeBatch(List<GKInstance> referenceMoleculeBatch) throws Exception {
-        ChEBIEntityRetriever chEBIEntityRetriever = new ChEBIEntityRetriever();
+    /**
+     * Commits everything up to and including the reference molecule, records the checkpoint and starts the
+     * transaction for the next chunk.
+     */
+    private static void commitChunk(GKInstance lastReferenceMolecule, CheckpointJournal checkpointJournal)
+        throws Exception {
+
+        dbInteractor.commit();
+        checkpointJournal.record(lastReferenceMolecule.getDBID(), dbInteractor.getInstanceEditDbId());
+        logger.info("Committed reference molecules up to DB_ID " + lastReferenceMolecule.getDBID());
 
-        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity =
-            chEBIEntityRetriever.getChEBIEntities(referenceMoleculeBatch);
+        dbInteractor.startTransaction();
+    }
 
-        for (GKInstance referenceMolecule : referenceMoleculeToPotentialChEBIEntity.keySet() ) {
+    private static void updateReferenceMoleculeBatch(
+        List<GKInstance> referenceMoleculeBatch,
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity) {
+
+        Map<GKInstance, ReferenceMoleculeChanges> referenceMoleculeToChanges =
+            decideReferenceMoleculeChanges(referenceMoleculeBatch, referenceMoleculeToPotentialChEBIEntity);
+        try {
+            dbInteractor.loadInstancesToWrite(referenceMoleculeToChanges.values());
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to load the instances to update", e);
+        }
+        for (GKInstance referenceMolecule : referenceMoleculeBatch) {
             Optional<ChEBIEntity> potentialChEBIEntity = referenceMoleculeToPotentialChEBIEntity.get(referenceMolecule);
 
             potentialChEBIEntity.ifPresentOrElse(chEBIEntity -> {
-                updateReferenceMoleculeWithChEBIEntity(referenceMolecule, chEBIEntity);
+                updateReferenceMoleculeWithChEBIEntity(
+                    referenceMolecule, chEBIEntity, referenceMoleculeToChanges.get(referenceMolecule)
+                );
             }, () -> logFailedChEBIEntityLookUp(referenceMolecule));
         }
     }
 
+    /**
+     * Decides the changes for the reference molecules found in ChEBI in parallel, on the common fork/join pool, for
+     * those whose attributes and referrers are all loaded; deciding the others reads the database, so they are left
+     * to be decided on this thread as they are updated.
+     *
+     * @return Changes decided for each reference molecule which could be decided in parallel
+     */
+    private static Map<GKInstance, ReferenceMoleculeChanges> decideReferenceMoleculeChanges(
+        List<GKInstance> referenceMoleculeBatch,
+        Map<GKInstance, Optional<ChEBIEntity>> referenceMoleculeToPotentialChEBIEntity) {
+
+        List<GKInstance> referenceMoleculesToDecide = new ArrayList<>();
+        for (GKInstance referenceMolecule : referenceMoleculeBatch) {
+            if (referenceMoleculeToPotentialChEBIEntity.get(referenceMolecule).isPresent() &&
+                dbInteractor.isLoadedForDecision(referenceMolecule)) {
+                referenceMoleculesToDecide.add(referenceMolecule);
+            }
+        }
+
+        return referenceMoleculesToDecide.parallelStream().collect(Collectors.toConcurrentMap(
+            referenceMolecule -> referenceMolecule,
+            referenceMolecule -> {
+                ChEBIEntity chEBIEntity = referenceMoleculeToPotentialChEBIEntity.get(referenceMolecule).get();
+                try {
+                    return dbInteractor.decideReferenceMoleculeChanges(
+                        referenceMolecule, chEBIEntity.getName(), chEBIEntity.getFormula()
+                    );
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to update reference molecule: " + referenceMolecule, e);
+                }
+            }
+        ));
+    }
+
     private static List<List<GKInstance>> getReferenceMoleculeBatches(
         List<GKInstance> referenceMolecules, int batchSize) {
 
         return Lists.partition(referenceMolecules, batchSize);
     }
 
-    private static void checkForDuplicates(List<GKInstance> referenceMolecules) throws Exception {
-        DuplicateChecker duplicateChecker = new DuplicateChecker(referenceMolecules);
-        duplicateChecker.findAndLogDuplicates();
-    }
-
-    // TODO Move (second try-block?) to DBInteractor class?
-    private static void updateReferenceMoleculeWithChEBIEntity(GKInstance referenceMolecule, ChEBIEntity chEBIEntity) {
+    private static void updateReferenceMoleculeWithChEBIEntity(
+        GKInstance referenceMolecule, ChEBIEntity chEBIEntity, ReferenceMoleculeChanges referenceMoleculeChanges) {
 
         String newChEBIId = chEBIEntity.getChEBIId();
         String newChEBIName = chEBIEntity.getName();
@@ -107,14 +543,11 @@ public class Main {
         }
 
         try {
-            dbInteractor.updateSimpleEntityReferrersNames(referenceMolecule, newChEBIName);
-
-            boolean referenceMoleculeNameUpdated = dbInteractor.updateReferenceMoleculeName(referenceMolecule, newChEBIName);
-            boolean formulaUpdated = dbInteractor.updateReferenceMoleculeFormula(referenceMolecule, newFormula);
-            if (referenceMoleculeNameUpdated || formulaUpdated) {
-                dbInteractor.updateReferenceMoleculeDisplayName(referenceMolecule);
-                dbInteractor.updateModifiedInstanceEdits(referenceMolecule);
+            if (referenceMoleculeChanges == null) {
+                referenceMoleculeChanges =
+                    dbInteractor.decideReferenceMoleculeChanges(referenceMolecule, newChEBIName, newFormula);
             }
+            dbInteractor.applyReferenceMoleculeChanges(referenceMoleculeChanges);
         } catch (Exception e) {
             throw new RuntimeException("Failed to update reference molecule: " + referenceMolecule, e);
         }
@@ -124,14 +557,20 @@ public class Main {
         try {
             failedChEBILookupReporter.report(
                 referenceMolecule.getDBID().toString(),
-                getCreatorName(getCreator(referenceMolecule)),
-                referenceMolecule.getDisplayName()
+                getCreatorName(referenceMolecule),
+                referenceMolecule.getDisplayName(),
+                referenceMoleculeToLookupFailureReason.getOrDefault(referenceMolecule, NOT_IN_CHEBI_FAILURE_REASON)
             );
         } catch (Exception e) {
             throw new RuntimeException("Unable to write to failedChEBILookup reporter", e);
         }
     }
 
+    private static String getCreatorName(GKInstance referenceMolecule) throws Exception {
+        GKInstance creator = dbInteractor.getReferenceMoleculeCreator(referenceMolecule);
+        return dbInteractor.getCreatorCache().getCreatorName(creator);
+    }
+
     private static void logIfReferenceMoleculeIdentifierChanged(GKInstance referenceMolecule, String newChEBIId)
         throws Exception {
 
@@ -140,7 +579,8 @@ public class Main {
             return;
         }
 
-        List<GKInstance> refMolsWithNewIdentifier = dbInteractor.getReferenceMoleculesWithChEBIIdentifier(newChEBIId);
+        List<GKInstance> refMolsWithNewIdentifier =
+            dbInteractor.getReferenceMoleculesWithChEBIIdentifier(newChEBIId);
         if (refMolsWithNewIdentifier.isEmpty()) {
             logReferenceMoleculeIdentifierChange(referenceMolecule, newChEBIId, null);
         }
@@ -157,7 +597,7 @@ public class Main {
 
         referenceMoleculeChEBIIdentifierChangeReporter.report(
             referenceMolecule.getDBID().toString(),
-            getCreatorName(getCreator(referenceMolecule)),
+            getCreatorName(referenceMolecule),
             referenceMolecule.getDisplayName(),
             existingChEBIId,
             newChEBIId,
@@ -170,15 +610,8 @@ public class Main {
     }
 
     private static String getReferenceMoleculeReferrerDbIds(GKInstance referenceMolecule) throws Exception {
-        Collection<GKInstance> referrers =
-            ((Collection<GKInstance>) referenceMolecule.getReferers(ReactomeJavaConstants.referenceEntity));
-
-        if (referrers == null) {
-            return "";
-        }
-
-        return referrers.stream()
-            .map(referrer -> referrer.getDBID().toString())
+        return dbInteractor.getReferenceMoleculeReferrerDbIds(referenceMolecule).stream()
+            .map(String::valueOf)
             .collect(Collectors.joining("|"));
     }
 
@@ -204,4 +637,162 @@ public class Main {
     private static long getPersonId(Properties configProperties) {
         return Long.parseLong(configProperties.getProperty("personId"));
     }
+
+    /**
+     * @return Number of reference molecules to update per committed chunk, or 0 to commit once at the end
+     */
+    private static int getCommitInterval(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("curator.database.commit.interval", "0"));
+    }
+
+    /**
+     * @return Fingerprints from the last successful update if running in delta mode, otherwise null
+     */
+    private static UpdateFingerprints getUpdateFingerprints(Properties configProperties) throws IOException {
+        final String prefix = "chebi.delta";
+
+        if (!Boolean.parseBoolean(configProperties.getProperty(prefix + ".enabled", "false"))) {
+            return null;
+        }
+        Path fingerprintFile =
+            Path.of(configProperties.getProperty(prefix + ".fingerprint.file", "cache/chebi-fingerprints.json"));
+
+        return new UpdateFingerprints(fingerprintFile);
+    }
+
+    private static ChangePlan getChangePlan(Properties configProperties) {
+        Path planFile = Path.of(configProperties.getProperty("change.plan.file", "plans/chebi-change-plan.jsonl"));
+
+        return new ChangePlan(planFile);
+    }
+
+    private static CheckpointJournal getCheckpointJournal(Properties configProperties) throws IOException {
+        Path journalFile = Path.of(
+            configProperties.getProperty("curator.database.checkpoint.file", "checkpoint/chebi-update.jsonl")
+        );
+
+        return new CheckpointJournal(journalFile);
+    }
+
+    private static boolean shouldPrefetchAttributes(Properties configProperties) {
+        return Boolean.parseBoolean(configProperties.getProperty("curator.database.prefetch.attributes", "true"));
+    }
+
+    private static ChEBIAPIClient getChEBIAPIClient(Properties configProperties) {
+        final String prefix = "chebi.api";
+
+        Duration connectTimeout = Duration.ofSeconds(
+            Long.parseLong(configProperties.getProperty(prefix + ".connect.timeout.seconds", "30"))
+        );
+        Duration requestTimeout = Duration.ofSeconds(
+            Long.parseLong(configProperties.getProperty(prefix + ".request.timeout.seconds", "120"))
+        );
+        boolean useHttp2 = Boolean.parseBoolean(configProperties.getProperty(prefix + ".http2", "false"));
+
+        return new ChEBIAPIClient(connectTimeout, requestTimeout, useHttp2, getRequestThrottle(configProperties));
+    }
+
+    private static RequestThrottle getRequestThrottle(Properties configProperties) {
+        final String prefix = "chebi.api";
+
+        double requestsPerSecond =
+            Double.parseDouble(configProperties.getProperty(prefix + ".rate.requests.per.second", "5"));
+        double identifiersPerSecond =
+            Double.parseDouble(configProperties.getProperty(prefix + ".rate.identifiers.per.second", "2500"));
+        int failureThreshold =
+            Integer.parseInt(configProperties.getProperty(prefix + ".circuit.failure.threshold", "5"));
+        Duration openDuration = Duration.ofSeconds(
+            Long.parseLong(configProperties.getProperty(prefix + ".circuit.open.seconds", "30"))
+        );
+
+        return new RequestThrottle(requestsPerSecond, identifiersPerSecond, failureThreshold, openDuration);
+    }
+
+    /**
+     * @return Cache of ChEBI lookups, or null if caching is disabled (a time-to-live of zero hours)
+     */
+    private static ChEBIEntityCache getChEBIEntityCache(Properties configProperties) throws IOException {
+        final String prefix = "chebi.cache";
+
+        long timeToLiveHours = Long.parseLong(configProperties.getProperty(prefix + ".ttl.hours", "24"));
+        if (timeToLiveHours <= 0) {
+            return null;
+        }
+        Path cacheFile = Path.of(configProperties.getProperty(prefix + ".file", "cache/chebi-entities.jsonl"));
+
+        return new ChEBIEntityCache(cacheFile, Duration.ofHours(timeToLiveHours));
+    }
+
+    /**
+     * @return Directory of ChEBI bulk download files to use instead of the web service, or null to query ChEBI
+     */
+    private static Path getChEBIFlatFileDirectory(Properties configProperties) {
+        String flatFileDirectory = configProperties.getProperty("chebi.offline.directory", "").trim();
+        return flatFileDirectory.isEmpty() ? null : Path.of(flatFileDirectory);
+    }
+
+    private static AdaptiveBatchSizer getAdaptiveBatchSizer(Properties configProperties) {
+        final String prefix = "chebi.api.batch";
+
+        int initialBatchSize = Integer.parseInt(configProperties.getProperty(prefix + ".size.initial", "500"));
+        int minBatchSize = Integer.parseInt(configProperties.getProperty(prefix + ".size.min", "50"));
+        int maxBatchSize = Integer.parseInt(configProperties.getProperty(prefix + ".size.max", "2000"));
+        Duration targetLatency = Duration.ofSeconds(
+            Long.parseLong(configProperties.getProperty(prefix + ".target.latency.seconds", "20"))
+        );
+        long maxResponseBytes =
+            Long.parseLong(configProperties.getProperty(prefix + ".max.response.megabytes", "32")) * 1024 * 1024;
+
+        return new AdaptiveBatchSizer(initialBatchSize, minBatchSize, maxBatchSize, targetLatency, maxResponseBytes);
+    }
+
+    /**
+     * @return Number of identifiers whose ChEBI lookups may fail, and be reported and skipped, before the run is
+     * abandoned; 0 abandons the run on the first failed batch
+     */
+    private static int getMaxFailedIdentifiers(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("chebi.api.max.failed.identifiers", "100"));
+    }
+
+    /**
+     * @return Number of identifiers that may still fail before the run stops, or 0 if no failures are tolerated
+     */
+    private static int getRemainingFailedIdentifiers(int maxFailedIdentifiers, Set<String> failedChEBIIdentifiers) {
+        return maxFailedIdentifiers > 0 ? Math.max(0, maxFailedIdentifiers - failedChEBIIdentifiers.size()) : 0;
+    }
+
+    /**
+     * @return Number of reference molecules read from the database and updated at a time, bounding how many are held
+     * in memory at once
+     */
+    private static int getReferenceMoleculePageSize(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("curator.database.page.size", "20000"));
+    }
+
+    /**
+     * @return true if the database adaptor's instance cache is to be emptied after each page of reference molecules,
+     * so that instances read for earlier pages are not kept for the rest of the run
+     */
+    private static boolean shouldReleaseInstanceCache(Properties configProperties) {
+        return Boolean.parseBoolean(configProperties.getProperty("curator.database.cache.release", "true"));
+    }
+
+    /**
+     * @return Number of reference molecules looked up in ChEBI at a time, each chunk being updated while the next is
+     * looked up
+     */
+    private static int getLookupChunkSize(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("chebi.lookup.chunk.size", "5000"));
+    }
+
+    /**
+     * @return Number of looked up chunks which may wait to be updated before lookups pause
+     */
+    private static int getLookupQueueCapacity(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("chebi.lookup.queue.capacity", "2"));
+    }
+
+    private static int getMaxBatchesInFlight(Properties configProperties) {
+        return Integer.parseInt(configProperties.getProperty("chebi.api.max.batches.in.flight", "4"));
+    }
 }
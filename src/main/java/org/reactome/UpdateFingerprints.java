@@ -0,0 +1,158 @@
+package org.reactome;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.reactome.database.ChEBIMoleculeProjection;
+import org.reactome.model.ChEBIEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content fingerprints from the last successful update, for skipping the reference molecules nothing has changed for.
+ *
+ * Two fingerprints are kept: one of the ChEBI entity returned for each requested ChEBI identifier (its identifier,
+ * name and formula, so a new replacement identifier also counts as a change), and one of each reference molecule's
+ * own state after the update (its identifier, names and formula).  A molecule is unchanged if ChEBI returns the same
+ * entity for its identifier as last time and the molecule is as the last update left it, i.e. not edited since; the
+ * update would then find nothing to do for it except SimpleEntity names edited since, which are left alone.
+ *
+ * The fingerprint file holds one JSON object and is only replaced, whole, by save().  Fingerprints recorded during
+ * the run are kept apart from the loaded ones until then, so that recording a molecule as soon as it is updated does
+ * not change what the molecules after it are compared with.
+ */
+public class UpdateFingerprints {
+    private static final Logger logger = LogManager.getLogger(UpdateFingerprints.class);
+
+    private final Path fingerprintFile;
+
+    private final Map<String, String> chEBIIdentifierToEntityFingerprint;
+    private final Map<Long, String> dbIdToReferenceMoleculeFingerprint;
+    private final Map<String, String> chEBIIdentifierToRecordedEntityFingerprint;
+    private final Map<Long, String> dbIdToRecordedReferenceMoleculeFingerprint;
+
+    public UpdateFingerprints(Path fingerprintFile) throws IOException {
+        this.fingerprintFile = fingerprintFile;
+        this.chEBIIdentifierToEntityFingerprint = new HashMap<>();
+        this.dbIdToReferenceMoleculeFingerprint = new HashMap<>();
+        this.chEBIIdentifierToRecordedEntityFingerprint = new HashMap<>();
+        this.dbIdToRecordedReferenceMoleculeFingerprint = new HashMap<>();
+
+        load();
+    }
+
+    /**
+     * @param referenceMolecule Projection of the reference molecule, as read from the database
+     * @param chEBIEntity ChEBI entity just returned for the molecule's identifier
+     * @return true if both the ChEBI entity and the molecule are the same as after the last successful update, whatever
+     * has been recorded since
+     */
+    public boolean isUnchanged(ChEBIMoleculeProjection referenceMolecule, ChEBIEntity chEBIEntity) {
+        String chEBIIdentifier = referenceMolecule.getIdentifier();
+        String referenceMoleculeFingerprint = dbIdToReferenceMoleculeFingerprint.get(referenceMolecule.getDbId());
+        return chEBIIdentifier != null &&
+            getFingerprint(chEBIEntity).equals(chEBIIdentifierToEntityFingerprint.get(chEBIIdentifier)) &&
+            getFingerprint(referenceMolecule).equals(referenceMoleculeFingerprint);
+    }
+
+    /**
+     * Records the ChEBI entity returned for the molecule's identifier and the molecule's state after the update.
+     *
+     * @param referenceMolecule Projection of the reference molecule, after it has been updated
+     * @param chEBIEntity ChEBI entity returned for the molecule's identifier
+     */
+    public void record(ChEBIMoleculeProjection referenceMolecule, ChEBIEntity chEBIEntity) {
+        chEBIIdentifierToRecordedEntityFingerprint.put(referenceMolecule.getIdentifier(), getFingerprint(chEBIEntity));
+        dbIdToRecordedReferenceMoleculeFingerprint.put(referenceMolecule.getDbId(), getFingerprint(referenceMolecule));
+    }
+
+    /**
+     * Replaces the fingerprint file with the loaded fingerprints, overridden by those recorded since.  Call only once
+     * the update has been committed.
+     *
+     * @throws IOException Thrown if the fingerprint file cannot be written
+     */
+    public void save() throws IOException {
+        Map<String, String> chEBIIdentifierToSavedEntityFingerprint = new HashMap<>(chEBIIdentifierToEntityFingerprint);
+        chEBIIdentifierToSavedEntityFingerprint.putAll(chEBIIdentifierToRecordedEntityFingerprint);
+        Map<Long, String> dbIdToSavedReferenceMoleculeFingerprint = new HashMap<>(dbIdToReferenceMoleculeFingerprint);
+        dbIdToSavedReferenceMoleculeFingerprint.putAll(dbIdToRecordedReferenceMoleculeFingerprint);
+
+        JSONObject fingerprintsJSON = new JSONObject();
+        fingerprintsJSON.put("chebi", new JSONObject(chEBIIdentifierToSavedEntityFingerprint));
+        JSONObject referenceMoleculeFingerprintsJSON = new JSONObject();
+        dbIdToSavedReferenceMoleculeFingerprint.forEach((dbId, fingerprint) ->
+            referenceMoleculeFingerprintsJSON.put(dbId.toString(), fingerprint)
+        );
+        fingerprintsJSON.put("referenceMolecules", referenceMoleculeFingerprintsJSON);
+
+        Path fingerprintDirectory = fingerprintFile.toAbsolutePath().getParent();
+        if (fingerprintDirectory != null && Files.notExists(fingerprintDirectory)) {
+            Files.createDirectories(fingerprintDirectory);
+        }
+        Path newFingerprintFile = fingerprintFile.resolveSibling(fingerprintFile.getFileName() + ".tmp");
+        Files.write(newFingerprintFile, fingerprintsJSON.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(newFingerprintFile, fingerprintFile, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Saved fingerprints of {} ChEBI entities and {} reference molecules to {}",
+            chEBIIdentifierToSavedEntityFingerprint.size(), dbIdToSavedReferenceMoleculeFingerprint.size(),
+            fingerprintFile);
+    }
+
+    static String getFingerprint(ChEBIEntity chEBIEntity) {
+        return Hashing.murmur3_128().newHasher()
+            .putString(String.valueOf(chEBIEntity.getChEBIId()), StandardCharsets.UTF_8).putByte((byte) 0)
+            .putString(String.valueOf(chEBIEntity.getName()), StandardCharsets.UTF_8).putByte((byte) 0)
+            .putString(String.valueOf(chEBIEntity.getFormula()), StandardCharsets.UTF_8)
+            .hash()
+            .toString();
+    }
+
+    static String getFingerprint(ChEBIMoleculeProjection referenceMolecule) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+            .putString(String.valueOf(referenceMolecule.getIdentifier()), StandardCharsets.UTF_8).putByte((byte) 0)
+            .putString(String.valueOf(referenceMolecule.getFormula()), StandardCharsets.UTF_8);
+        for (String name : referenceMolecule.getNames()) {
+            hasher.putByte((byte) 0).putString(String.valueOf(name), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void load() throws IOException {
+        if (Files.notExists(fingerprintFile)) {
+            return;
+        }
+
+        try {
+            JSONObject fingerprintsJSON = new JSONObject(Files.readString(fingerprintFile, StandardCharsets.UTF_8));
+            JSONObject chEBIFingerprintsJSON = fingerprintsJSON.getJSONObject("chebi");
+            for (String chEBIIdentifier : chEBIFingerprintsJSON.keySet()) {
+                chEBIIdentifierToEntityFingerprint.put(
+                    chEBIIdentifier, chEBIFingerprintsJSON.getString(chEBIIdentifier)
+                );
+            }
+            JSONObject referenceMoleculeFingerprintsJSON = fingerprintsJSON.getJSONObject("referenceMolecules");
+            for (String dbId : referenceMoleculeFingerprintsJSON.keySet()) {
+                dbIdToReferenceMoleculeFingerprint.put(
+                    Long.valueOf(dbId), referenceMoleculeFingerprintsJSON.getString(dbId)
+                );
+            }
+        } catch (JSONException | NumberFormatException e) {
+            // Treated as a first run: every molecule is updated and the file replaced on success
+            logger.warn("Ignoring unreadable fingerprint file {}", fingerprintFile);
+            chEBIIdentifierToEntityFingerprint.clear();
+            dbIdToReferenceMoleculeFingerprint.clear();
+            return;
+        }
+        logger.info("Loaded fingerprints of {} ChEBI entities and {} reference molecules from {}",
+            chEBIIdentifierToEntityFingerprint.size(), dbIdToReferenceMoleculeFingerprint.size(), fingerprintFile);
+    }
+}
@@ -1,24 +1,25 @@
 package org.reactome;
 
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
 import org.gk.model.GKInstance;
 import org.gk.model.ReactomeJavaConstants;
 
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class Utils {
 
-    public static Map<String, GKInstance> getIdentifierToReferenceMoleculeMap(List<GKInstance> referenceMolecules) {
-        return referenceMolecules
-            .stream()
-            .collect(Collectors.toMap(
-                Utils::getReferenceMoleculeIdentifier,
-                referenceMolecule -> referenceMolecule)
-            );
+    /**
+     * @return Multimap of each identifier to all reference molecules carrying it, with identifiers in the order
+     * they first appear
+     */
+    public static ListMultimap<String, GKInstance> getIdentifierToReferenceMoleculesMap(
+        List<GKInstance> referenceMolecules) {
+
+        return Multimaps.index(referenceMolecules, Utils::getReferenceMoleculeIdentifier);
     }
 
-    private static String getReferenceMoleculeIdentifier(GKInstance referenceMolecule) {
+    public static String getReferenceMoleculeIdentifier(GKInstance referenceMolecule) {
         try {
             return (String) referenceMolecule.getAttributeValue(ReactomeJavaConstants.identifier);
         } catch (Exception e) {
@@ -0,0 +1,102 @@
+package org.reactome.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only projection of a ChEBI reference molecule holding just what the update reads: its identifier, names and
+ * formula, the creating InstanceEdit for the reports and the DB_IDs of the instances referring to it.  Projections
+ * are read with plain SQL queries and replaced, never changed, when the update changes the molecule, so deciding how
+ * to update a molecule needs neither its GKInstance's attribute values nor the database connection.
+ */
+public final class ChEBIMoleculeProjection {
+    private final long dbId;
+    private final String identifier;
+    private final List<String> names;
+    private final String formula;
+    private final Long createdInstanceEditDbId;
+    private final long[] referrerDbIds;
+
+    /**
+     * @param dbId DB_ID of the reference molecule
+     * @param identifier ChEBI identifier of the reference molecule
+     * @param names Names of the reference molecule, in order
+     * @param formula Formula of the reference molecule, or null if it has none
+     * @param createdInstanceEditDbId DB_ID of the InstanceEdit which created the reference molecule, or null if none
+     */
+    public ChEBIMoleculeProjection(
+        long dbId, String identifier, List<String> names, String formula, Long createdInstanceEditDbId) {
+
+        this(dbId, identifier, names, formula, createdInstanceEditDbId, null);
+    }
+
+    private ChEBIMoleculeProjection(
+        long dbId, String identifier, List<String> names, String formula,
+        Long createdInstanceEditDbId, long[] referrerDbIds) {
+
+        this.dbId = dbId;
+        this.identifier = identifier;
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.formula = formula;
+        this.createdInstanceEditDbId = createdInstanceEditDbId;
+        this.referrerDbIds = referrerDbIds;
+    }
+
+    public long getDbId() {
+        return dbId;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public String getFormula() {
+        return formula;
+    }
+
+    Long getCreatedInstanceEditDbId() {
+        return createdInstanceEditDbId;
+    }
+
+    /**
+     * @return true if the DB_IDs of the instances referring to the reference molecule have been read
+     */
+    boolean hasReferrerDbIds() {
+        return referrerDbIds != null;
+    }
+
+    /**
+     * @return DB_IDs of the instances referring to the reference molecule, or null if they have not been read
+     */
+    long[] getReferrerDbIds() {
+        return referrerDbIds != null ? referrerDbIds.clone() : null;
+    }
+
+    /**
+     * @return A copy of this projection with the DB_IDs of the instances referring to the reference molecule
+     */
+    ChEBIMoleculeProjection withReferrerDbIds(long[] referrerDbIds) {
+        return new ChEBIMoleculeProjection(
+            dbId, identifier, names, formula, createdInstanceEditDbId, referrerDbIds.clone()
+        );
+    }
+
+    /**
+     * @return A copy of this projection with the names and formula the update has given the reference molecule
+     */
+    ChEBIMoleculeProjection withNamesAndFormula(List<String> names, String formula) {
+        return new ChEBIMoleculeProjection(
+            dbId, identifier, names, formula, createdInstanceEditDbId, referrerDbIds
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "ReferenceMolecule:" + dbId + " (" + identifier + ")";
+    }
+}
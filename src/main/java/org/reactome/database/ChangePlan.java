@@ -0,0 +1,246 @@
+package org.reactome.database;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * File of the attribute changes decided by a read-only planning run, to be reviewed and then applied by a separate
+ * run in one short transaction.
+ *
+ * The plan file holds one JSON object per changed attribute of an instance: the instance's DB_ID and class, the
+ * attribute name, its new values and, where known, the values it had when the plan was made.  Instance values are
+ * written as references by DB_ID; the InstanceEdit the applying run creates for its changes is written as a
+ * placeholder, since it does not exist yet when planning.
+ */
+public class ChangePlan {
+    private final Path planFile;
+
+    public ChangePlan(Path planFile) {
+        this.planFile = planFile;
+    }
+
+    public Path getPlanFile() {
+        return planFile;
+    }
+
+    /**
+     * Creates an empty plan file, replacing any earlier plan.
+     *
+     * @throws IOException Thrown if the plan file cannot be created
+     */
+    public void create() throws IOException {
+        Path planDirectory = planFile.toAbsolutePath().getParent();
+        if (planDirectory != null && Files.notExists(planDirectory)) {
+            Files.createDirectories(planDirectory);
+        }
+        Files.write(planFile, new byte[0]);
+    }
+
+    /**
+     * Appends changes to the plan file.
+     *
+     * @param changes Changes to append
+     * @throws IOException Thrown if the changes cannot be written
+     */
+    public void append(Collection<Change> changes) throws IOException {
+        try (BufferedWriter planFileWriter = Files.newBufferedWriter(
+            planFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+            for (Change change : changes) {
+                planFileWriter.write(change.toJSON().toString());
+                planFileWriter.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return Every change in the plan file, in the order planned
+     * @throws IOException Thrown if the plan file cannot be read or any line of it is not a change, since applying
+     * part of a plan would leave the database inconsistent with what was reviewed
+     */
+    public List<Change> read() throws IOException {
+        List<Change> changes = new ArrayList<>();
+        int lineNumber = 0;
+        try (BufferedReader planFileReader = Files.newBufferedReader(planFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = planFileReader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    changes.add(Change.fromJSON(new JSONObject(line)));
+                } catch (JSONException e) {
+                    throw new IOException("Unreadable line " + lineNumber + " of change plan " + planFile, e);
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * New values of one attribute of one instance.  Values are strings, numbers or InstanceReferences.
+     */
+    public static class Change {
+        private final long dbId;
+        private final String className;
+        private final String attributeName;
+        private final List<Object> values;
+        private final List<Object> persistedValues;
+
+        /**
+         * @param persistedValues Values of the attribute when the plan was made, or null if not known (the change is
+         * then applied whatever the attribute's current values)
+         */
+        public Change(
+            long dbId, String className, String attributeName, List<Object> values, List<Object> persistedValues) {
+
+            this.dbId = dbId;
+            this.className = className;
+            this.attributeName = attributeName;
+            this.values = values;
+            this.persistedValues = persistedValues;
+        }
+
+        public long getDbId() {
+            return dbId;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        public List<Object> getValues() {
+            return Collections.unmodifiableList(values);
+        }
+
+        public List<Object> getPersistedValues() {
+            return persistedValues != null ? Collections.unmodifiableList(persistedValues) : null;
+        }
+
+        JSONObject toJSON() {
+            JSONObject changeJSON = new JSONObject();
+            changeJSON.put("dbId", dbId);
+            changeJSON.put("class", className);
+            changeJSON.put("attribute", attributeName);
+            changeJSON.put("values", toJSONArray(values));
+            if (persistedValues != null) {
+                changeJSON.put("persisted", toJSONArray(persistedValues));
+            }
+            return changeJSON;
+        }
+
+        static Change fromJSON(JSONObject changeJSON) {
+            return new Change(
+                changeJSON.getLong("dbId"),
+                changeJSON.getString("class"),
+                changeJSON.getString("attribute"),
+                fromJSONArray(changeJSON.getJSONArray("values")),
+                changeJSON.has("persisted") ? fromJSONArray(changeJSON.getJSONArray("persisted")) : null
+            );
+        }
+
+        private static JSONArray toJSONArray(List<Object> values) {
+            JSONArray valuesJSON = new JSONArray();
+            for (Object value : values) {
+                valuesJSON.put(value instanceof InstanceReference ? ((InstanceReference) value).toJSON() : value);
+            }
+            return valuesJSON;
+        }
+
+        private static List<Object> fromJSONArray(JSONArray valuesJSON) {
+            List<Object> values = new ArrayList<>();
+            for (int index = 0; index < valuesJSON.length(); index++) {
+                Object value = valuesJSON.get(index);
+                values.add(value instanceof JSONObject ? InstanceReference.fromJSON((JSONObject) value) : value);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Instance value of an attribute: a stored instance by DB_ID, or the InstanceEdit of the applying run.
+     */
+    public static class InstanceReference {
+        public static final InstanceReference NEW_INSTANCE_EDIT = new InstanceReference(null, null);
+
+        private final Long dbId;
+        private final String className;
+
+        public InstanceReference(Long dbId, String className) {
+            this.dbId = dbId;
+            this.className = className;
+        }
+
+        public boolean isNewInstanceEdit() {
+            return dbId == null;
+        }
+
+        public Long getDbId() {
+            return dbId;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        JSONObject toJSON() {
+            JSONObject referenceJSON = new JSONObject();
+            if (isNewInstanceEdit()) {
+                referenceJSON.put("newInstanceEdit", true);
+            } else {
+                referenceJSON.put("dbId", dbId.longValue());
+                referenceJSON.put("class", className);
+            }
+            return referenceJSON;
+        }
+
+        static InstanceReference fromJSON(JSONObject referenceJSON) {
+            if (referenceJSON.optBoolean("newInstanceEdit")) {
+                return NEW_INSTANCE_EDIT;
+            }
+            return new InstanceReference(referenceJSON.getLong("dbId"), referenceJSON.getString("class"));
+        }
+
+        // References are equal if they refer to the same instance, whatever class name they were recorded with
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InstanceReference)) {
+                return false;
+            }
+            return Objects.equals(dbId, ((InstanceReference) o).dbId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(dbId);
+        }
+
+        @Override
+        public String toString() {
+            return isNewInstanceEdit() ? "[new InstanceEdit]" : "[" + className + ":" + dbId + "]";
+        }
+    }
+}
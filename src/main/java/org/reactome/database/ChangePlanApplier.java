@@ -0,0 +1,157 @@
+package org.reactome.database;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gk.model.GKInstance;
+import org.gk.model.ReactomeJavaConstants;
+import org.gk.persistence.MySQLAdaptor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sets the values in a change plan on the planned instances and marks them dirty in the unit of work, skipping any
+ * instance changed since the plan was made.
+ */
+class ChangePlanApplier {
+    private static Logger logger = LogManager.getLogger(ChangePlanApplier.class);
+
+    /**
+     * Supplies this run's InstanceEdit, which planned values may refer to.
+     */
+    @FunctionalInterface
+    interface InstanceEditSupplier {
+        GKInstance get() throws Exception;
+    }
+
+    private final MySQLAdaptor dbAdaptor;
+    private final UnitOfWork unitOfWork;
+    private final InstanceEditSupplier instanceEditSupplier;
+    private final int maxValuesPerQuery;
+
+    ChangePlanApplier(
+        MySQLAdaptor dbAdaptor, UnitOfWork unitOfWork, InstanceEditSupplier instanceEditSupplier,
+        int maxValuesPerQuery) {
+
+        this.dbAdaptor = dbAdaptor;
+        this.unitOfWork = unitOfWork;
+        this.instanceEditSupplier = instanceEditSupplier;
+        this.maxValuesPerQuery = maxValuesPerQuery;
+    }
+
+    /**
+     * @return Values with instances replaced by references to them; an unstored instance can only be this run's
+     * InstanceEdit
+     */
+    static List<Object> toPlanValues(List<?> values) {
+        List<Object> planValues = new ArrayList<>();
+        for (Object value : values != null ? values : new ArrayList<>()) {
+            if (value instanceof GKInstance) {
+                GKInstance instanceValue = (GKInstance) value;
+                planValues.add(instanceValue.getDBID() == null ?
+                    ChangePlan.InstanceReference.NEW_INSTANCE_EDIT :
+                    new ChangePlan.InstanceReference(instanceValue.getDBID(), instanceValue.getSchemClass().getName())
+                );
+            } else {
+                planValues.add(value);
+            }
+        }
+        return planValues;
+    }
+
+    /**
+     * Loads the planned attributes in bulk, then applies the changes to each instance they still match.
+     *
+     * @return Number of instances skipped because they changed after the plan was made
+     */
+    int apply(List<ChangePlan.Change> changes) throws Exception {
+        Map<GKInstance, List<ChangePlan.Change>> instanceToChanges = new LinkedHashMap<>();
+        ListMultimap<String, GKInstance> attributeNameToInstances = ArrayListMultimap.create();
+        for (ChangePlan.Change change : changes) {
+            GKInstance instance = (GKInstance) dbAdaptor.getInstance(change.getClassName(), change.getDbId());
+            instanceToChanges.computeIfAbsent(instance, k -> new ArrayList<>()).add(change);
+            if (change.getPersistedValues() != null) {
+                attributeNameToInstances.put(change.getAttributeName(), instance);
+            }
+        }
+        for (String attributeName : attributeNameToInstances.keySet()) {
+            for (List<GKInstance> instanceBatch :
+                Lists.partition(attributeNameToInstances.get(attributeName), maxValuesPerQuery)) {
+                dbAdaptor.loadInstanceAttributeValues(instanceBatch, new String[] {attributeName});
+            }
+        }
+
+        int skippedInstanceCount = 0;
+        for (Map.Entry<GKInstance, List<ChangePlan.Change>> entry : instanceToChanges.entrySet()) {
+            GKInstance instance = entry.getKey();
+            if (!isUnchangedSincePlanned(instance, entry.getValue())) {
+                logger.warn("Skipping planned changes to {} - changed since the plan was made", instance);
+                skippedInstanceCount++;
+                continue;
+            }
+
+            for (ChangePlan.Change change : entry.getValue()) {
+                applyChange(instance, change);
+            }
+        }
+        logger.info("Applied planned changes to {} instances ({} skipped)",
+            instanceToChanges.size() - skippedInstanceCount, skippedInstanceCount);
+        return skippedInstanceCount;
+    }
+
+    private boolean isUnchangedSincePlanned(GKInstance instance, List<ChangePlan.Change> changes) throws Exception {
+        for (ChangePlan.Change change : changes) {
+            List<Object> persistedValues = change.getPersistedValues();
+            if (persistedValues == null) {
+                continue;
+            }
+
+            // Compared as text since numbers read back from the plan file may be of a different type
+            List<Object> currentValues = toPlanValues(instance.getAttributeValuesList(change.getAttributeName()));
+            if (!String.valueOf(currentValues).equals(String.valueOf(persistedValues))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void applyChange(GKInstance instance, ChangePlan.Change change) throws Exception {
+        String attributeName = change.getAttributeName();
+        List<Object> values = fromPlanValues(change.getValues());
+
+        if (attributeName.equals(ReactomeJavaConstants._displayName)) {
+            instance.setDisplayName(values.isEmpty() ? null : (String) values.get(0));
+        } else if (instance.getSchemClass().getAttribute(attributeName).isMultiple()) {
+            instance.setAttributeValue(attributeName, values);
+        } else {
+            instance.setAttributeValue(attributeName, values.isEmpty() ? null : values.get(0));
+        }
+
+        if (change.getPersistedValues() != null) {
+            unitOfWork.registerDirty(instance, attributeName, fromPlanValues(change.getPersistedValues()));
+        } else {
+            unitOfWork.registerDirty(instance, attributeName);
+        }
+    }
+
+    private List<Object> fromPlanValues(List<Object> planValues) throws Exception {
+        List<Object> values = new ArrayList<>();
+        for (Object planValue : planValues) {
+            if (planValue instanceof ChangePlan.InstanceReference) {
+                ChangePlan.InstanceReference instanceReference = (ChangePlan.InstanceReference) planValue;
+                values.add(instanceReference.isNewInstanceEdit() ?
+                    instanceEditSupplier.get() :
+                    dbAdaptor.getInstance(instanceReference.getClassName(), instanceReference.getDbId())
+                );
+            } else {
+                values.add(planValue);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,134 @@
+package org.reactome.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Durable record of how far a chunked-commit run has got, so that a restarted run can skip the reference molecules
+ * already committed and keep attributing its changes to the same InstanceEdit.
+ *
+ * The journal file holds one JSON object per line, appended and synced to disk after each commit: the DB_ID of the
+ * last reference molecule committed (molecules are processed in DB_ID order) and the DB_ID of the run's InstanceEdit,
+ * if it has been stored yet.  The last readable line is the checkpoint; a partially written last line from a run
+ * killed while recording is skipped, which at worst repeats the last chunk.  The journal is deleted once the run
+ * completes.
+ */
+public class CheckpointJournal {
+    private static final Logger logger = LogManager.getLogger(CheckpointJournal.class);
+
+    private final Path journalFile;
+
+    private Long lastCommittedDbId;
+    private Long instanceEditDbId;
+
+    public CheckpointJournal(Path journalFile) throws IOException {
+        this.journalFile = journalFile;
+
+        load();
+    }
+
+    /**
+     * @return DB_ID of the last reference molecule committed by an earlier run, or null if there is no checkpoint
+     */
+    public Long getLastCommittedDbId() {
+        return lastCommittedDbId;
+    }
+
+    /**
+     * @return DB_ID of the InstanceEdit used by an earlier run, or null if there is no checkpoint or the earlier run
+     * had not stored it
+     */
+    public Long getInstanceEditDbId() {
+        return instanceEditDbId;
+    }
+
+    /**
+     * Appends a checkpoint to the journal and syncs it to disk.  Call only after the transaction covering every
+     * reference molecule up to lastCommittedDbId has been committed.
+     *
+     * @param lastCommittedDbId DB_ID of the last reference molecule committed
+     * @param instanceEditDbId DB_ID of the run's InstanceEdit, or null if it has not been stored
+     * @throws IOException Thrown if the checkpoint cannot be written
+     */
+    public void record(long lastCommittedDbId, Long instanceEditDbId) throws IOException {
+        JSONObject checkpointJSON = new JSONObject();
+        checkpointJSON.put("lastCommittedDbId", lastCommittedDbId);
+        if (instanceEditDbId != null) {
+            checkpointJSON.put("instanceEditDbId", instanceEditDbId.longValue());
+        }
+        checkpointJSON.put("committedAt", Instant.now().toString());
+
+        createParentDirectories();
+        try (FileChannel journalChannel = FileChannel.open(
+            journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+
+            journalChannel.write(ByteBuffer.wrap(
+                (checkpointJSON + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)
+            ));
+            journalChannel.force(true);
+        }
+
+        this.lastCommittedDbId = lastCommittedDbId;
+        this.instanceEditDbId = instanceEditDbId;
+    }
+
+    /**
+     * Deletes the journal once the run has completed, so the next run starts from the beginning.
+     *
+     * @throws IOException Thrown if the journal cannot be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(journalFile);
+        this.lastCommittedDbId = null;
+        this.instanceEditDbId = null;
+    }
+
+    private void load() throws IOException {
+        if (Files.notExists(journalFile)) {
+            return;
+        }
+
+        int lineNumber = 0;
+        try (BufferedReader journalFileReader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = journalFileReader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    JSONObject checkpointJSON = new JSONObject(line);
+                    lastCommittedDbId = checkpointJSON.getLong("lastCommittedDbId");
+                    instanceEditDbId = checkpointJSON.has("instanceEditDbId") ?
+                        checkpointJSON.getLong("instanceEditDbId") : null;
+                } catch (JSONException e) {
+                    logger.warn("Skipping unreadable line {} of checkpoint journal {}", lineNumber, journalFile);
+                }
+            }
+        }
+        if (lastCommittedDbId != null) {
+            logger.info("Resuming from checkpoint in {} - last committed DB_ID {}, InstanceEdit DB_ID {}",
+                journalFile, lastCommittedDbId, instanceEditDbId);
+        }
+    }
+
+    private void createParentDirectories() throws IOException {
+        Path journalDirectory = journalFile.toAbsolutePath().getParent();
+        if (journalDirectory != null && Files.notExists(journalDirectory)) {
+            Files.createDirectories(journalDirectory);
+        }
+    }
+}
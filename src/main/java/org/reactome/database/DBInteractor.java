@@ -1,5 +1,10 @@
 package org.reactome.database;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.gk.model.GKInstance;
@@ -8,27 +13,43 @@ import org.gk.model.ReactomeJavaConstants;
 import org.gk.persistence.MySQLAdaptor;
 import org.gk.persistence.TransactionsNotSupportedException;
 import org.gk.schema.Schema;
+import org.reactome.reports.CreatorCache;
 import org.reactome.reports.ReferenceMoleculeFormulaChangeReporter;
 import org.reactome.reports.ReferenceMoleculeNameChangeReporter;
 import org.reactome.reports.SimpleEntityNameChangeReporter;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
-import static org.reactome.reports.Utils.getCreator;
-import static org.reactome.reports.Utils.getCreatorName;
 
 public class DBInteractor implements DBReader, DBWriter {
     private static Logger logger = LogManager.getLogger(DBInteractor.class);
 
+    private static final int MAX_VALUES_PER_QUERY = 1000;
+
     private final MySQLAdaptor dbAdaptor;
     private final long personId;
 
     private GKInstance instanceEdit;
+    private final DbIdMap<ChEBIMoleculeProjection> moleculeProjections;
+    private final DbIdMap<ReferrerProjection> referrerProjections;
+    private final IdentifierIndex identifierIndex;
+    private final UnitOfWork unitOfWork;
+    private final CreatorCache creatorCache;
+    private final ReferenceMoleculeProjectionLoader projectionLoader;
+    private int instanceCacheReleaseCount;
 
     private final ReferenceMoleculeNameChangeReporter referenceMoleculeNameChangeReporter;
     private final ReferenceMoleculeFormulaChangeReporter referenceMoleculeFormulaChangeReporter;
@@ -41,14 +62,34 @@ public class DBInteractor implements DBReader, DBWriter {
         this.referenceMoleculeNameChangeReporter = new ReferenceMoleculeNameChangeReporter();
         this.referenceMoleculeFormulaChangeReporter = new ReferenceMoleculeFormulaChangeReporter();
         this.simpleEntityNameChangeReporter = new SimpleEntityNameChangeReporter();
+        this.moleculeProjections = new DbIdMap<>();
+        this.referrerProjections = new DbIdMap<>();
+        this.identifierIndex = new IdentifierIndex();
+        this.unitOfWork = new UnitOfWork(dbAdaptor);
+        this.creatorCache = new CreatorCache();
+        this.projectionLoader = new ReferenceMoleculeProjectionLoader(
+            dbAdaptor, moleculeProjections, referrerProjections, creatorCache, MAX_VALUES_PER_QUERY
+        );
     }
 
     public void startTransaction() throws TransactionsNotSupportedException, SQLException {
         getDbAdaptor().startTransaction();
     }
 
-    public void commit() throws SQLException {
+    /**
+     * Writes all pending updates and commits the transaction.
+     */
+    public void commit() throws Exception {
+        flush();
         getDbAdaptor().commit();
+        logger.info("Database writes - {}", getUnitOfWork());
+    }
+
+    /**
+     * Writes all updates made so far, which are otherwise held in memory until the next flush or commit.
+     */
+    public void flush() throws Exception {
+        getUnitOfWork().flush();
     }
 
     @Override
@@ -63,120 +104,427 @@ public class DBInteractor implements DBReader, DBWriter {
         );
     }
 
+    /**
+     * @return DB_IDs of all ChEBI reference molecules, in ascending order, read with one query so that they can be
+     * walked in pages through getReferenceMolecules
+     */
+    public List<Long> getAllChEBIReferenceMoleculeDbIds() throws Exception {
+        String referenceDatabaseTable = getSchema()
+            .getClassByName(ReactomeJavaConstants.ReferenceMolecule)
+            .getAttribute(ReactomeJavaConstants.referenceDatabase)
+            .getOrigin()
+            .getName();
+        String query = "SELECT m.DB_ID" +
+            " FROM " + ReactomeJavaConstants.ReferenceMolecule + " m" +
+            " JOIN " + referenceDatabaseTable + " r ON r.DB_ID = m.DB_ID" +
+            " WHERE r." + ReactomeJavaConstants.referenceDatabase + " = ?" +
+            " ORDER BY m.DB_ID";
+
+        List<Long> dbIds = new ArrayList<>();
+        try (ResultSet resultSet = getDbAdaptor().executeQuery(
+            query, Collections.singletonList(getChEBIReferenceDatabaseOrThrow().getDBID()))) {
+
+            while (resultSet.next()) {
+                dbIds.add(resultSet.getLong(1));
+            }
+        }
+        return dbIds;
+    }
+
+    /**
+     * @return Reference molecules with the DB_IDs, in ascending DB_ID order, fetched with one query per
+     * MAX_VALUES_PER_QUERY DB_IDs
+     */
     @Override
-    public List<GKInstance> getReferenceMoleculesWithChEBIIdentifier(String chEBIId) throws Exception {
-        Collection<GKInstance> refMolsWithChEBIIdentifier = (Collection<GKInstance>)
-            getDbAdaptor().fetchInstanceByAttribute(
-                ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.identifier, "=", chEBIId
-            );
+    public List<GKInstance> getReferenceMolecules(List<Long> dbIds) throws Exception {
+        List<GKInstance> referenceMolecules = new ArrayList<>();
+        for (List<Long> dbIdBatch : Lists.partition(dbIds, MAX_VALUES_PER_QUERY)) {
+            Collection<GKInstance> referenceMoleculeBatch = (Collection<GKInstance>)
+                getDbAdaptor().fetchInstanceByAttribute(
+                    ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.DB_ID, "=", dbIdBatch
+                );
+            if (referenceMoleculeBatch != null) {
+                referenceMolecules.addAll(referenceMoleculeBatch);
+            }
+        }
+        referenceMolecules.sort(Comparator.comparing(GKInstance::getDBID));
+        return referenceMolecules;
+    }
 
-        if (refMolsWithChEBIIdentifier == null || refMolsWithChEBIIdentifier.isEmpty()) {
-            return new ArrayList<>();
+    /**
+     * @return Reference molecules with the identifier, from the identifier index, querying and indexing it if needed
+     */
+    @Override
+    public List<GKInstance> getReferenceMoleculesWithChEBIIdentifier(String chEBIId) throws Exception {
+        if (!identifierIndex.isIndexed(chEBIId)) {
+            Collection<GKInstance> refMolsWithChEBIIdentifier = (Collection<GKInstance>)
+                getDbAdaptor().fetchInstanceByAttribute(
+                    ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.identifier, "=", chEBIId
+                );
+            indexQueriedReferenceMolecules(Collections.singletonList(chEBIId), refMolsWithChEBIIdentifier);
         }
-        return new ArrayList<>(refMolsWithChEBIIdentifier);
+        return identifierIndex.get(chEBIId, this::getReferenceMolecule);
     }
 
+    /**
+     * @return Map of each identifier to its reference molecules, from the identifier index, querying the identifiers
+     * not indexed yet with one query per MAX_VALUES_PER_QUERY
+     */
     @Override
-    public boolean updateSimpleEntityReferrersNames(GKInstance referenceMolecule, String newName) throws Exception {
-        boolean anySimpleEntityNameUpdated = false;
-        for (GKInstance simpleEntity : getReferenceMoleculeReferrers(referenceMolecule)) {
-            List<String> simpleEntityNames = getSimpleEntityInstanceNames(simpleEntity);
-            List<String> updatedSimpleEntityNames = getUpdatedSimpleEntityNames(referenceMolecule, simpleEntity, newName);
+    public ListMultimap<String, GKInstance> getReferenceMoleculesWithChEBIIdentifiers(Collection<String> chEBIIds)
+        throws Exception {
 
-            if (simpleEntityNames.equals(updatedSimpleEntityNames)) {
-                continue;
+        List<String> unindexedChEBIIds = new ArrayList<>();
+        for (String chEBIId : new LinkedHashSet<>(chEBIIds)) {
+            if (!identifierIndex.isIndexed(chEBIId)) {
+                unindexedChEBIIds.add(chEBIId);
             }
+        }
+        for (List<String> chEBIIdBatch : Lists.partition(unindexedChEBIIds, MAX_VALUES_PER_QUERY)) {
+            Collection<GKInstance> refMolsWithChEBIIdentifiers = (Collection<GKInstance>)
+                getDbAdaptor().fetchInstanceByAttribute(
+                    ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.identifier, "=", chEBIIdBatch
+                );
+            indexQueriedReferenceMolecules(chEBIIdBatch, refMolsWithChEBIIdentifiers);
+        }
 
-            boolean shouldAutoUpdateSimpleEntityNames = !differentFirstNames(simpleEntityNames, updatedSimpleEntityNames);
+        ListMultimap<String, GKInstance> chEBIIdToRefMols = ArrayListMultimap.create();
+        for (String chEBIId : chEBIIds) {
+            if (!chEBIIdToRefMols.containsKey(chEBIId)) {
+                chEBIIdToRefMols.putAll(chEBIId, identifierIndex.get(chEBIId, this::getReferenceMolecule));
+            }
+        }
+        return chEBIIdToRefMols;
+    }
 
-            if (shouldAutoUpdateSimpleEntityNames) {
-                simpleEntity.setAttributeValue(ReactomeJavaConstants.name, updatedSimpleEntityNames);
-                getDbAdaptor().updateInstanceAttribute(simpleEntity, ReactomeJavaConstants.name);
-                updateModifiedInstanceEdits(simpleEntity);
+    /**
+     * Indexes the identifiers of all reference molecules as projections with one query, so that lookups by identifier
+     * answer without querying the database or filling the instance cache.
+     */
+    @Override
+    public void indexReferenceMoleculeIdentifiers() throws Exception {
+        String identifierTable = getSchema()
+            .getClassByName(ReactomeJavaConstants.ReferenceMolecule)
+            .getAttribute(ReactomeJavaConstants.identifier)
+            .getOrigin()
+            .getName();
+        String query = "SELECT m.DB_ID, i." + ReactomeJavaConstants.identifier + ", d._class, d._displayName" +
+            " FROM " + ReactomeJavaConstants.ReferenceMolecule + " m" +
+            " JOIN " + identifierTable + " i ON i.DB_ID = m.DB_ID" +
+            " JOIN DatabaseObject d ON d.DB_ID = m.DB_ID" +
+            " WHERE i." + ReactomeJavaConstants.identifier + " IS NOT NULL";
+
+        try (ResultSet resultSet = getDbAdaptor().executeQuery(query, Collections.emptyList())) {
+            Map<String, String> classNames = new HashMap<>();
+            while (resultSet.next()) {
+                // Class names are shared rather than held once per row
+                String className = classNames.computeIfAbsent(resultSet.getString(3), name -> name);
+                identifierIndex.add(resultSet.getString(2), new ReferenceMoleculeProjection(
+                    resultSet.getLong(1), className, resultSet.getString(4)
+                ));
             }
+        }
+        identifierIndex.setComplete();
+        logger.info("Indexed identifiers of {} reference molecules", identifierIndex.size());
+    }
 
-            this.simpleEntityNameChangeReporter.report(
-                simpleEntity.getDBID().toString(),
-                getCreatorName(getCreator(simpleEntity)),
-                simpleEntity.getDisplayName(),
-                newName,
-                simpleEntityNames.toString(),
-                updatedSimpleEntityNames.toString(),
-                String.valueOf(shouldAutoUpdateSimpleEntityNames)
-            );
+    /**
+     * Loads projections of the reference molecules, and only their identifiers onto the instances; the other
+     * attributes are loaded only onto the instances which are changed (see loadInstancesToWrite).
+     */
+    public void loadReferenceMoleculeProjections(List<GKInstance> referenceMolecules) throws Exception {
+        projectionLoader.loadReferenceMoleculeProjections(referenceMolecules);
+    }
+
+    /**
+     * Primes the creator cache for the reference molecules and their loaded referrers, so reports name creators
+     * without reading them one at a time.
+     */
+    public void loadReportedInstanceCreators(List<GKInstance> referenceMolecules) throws Exception {
+        projectionLoader.loadReportedInstanceCreators(referenceMolecules);
+    }
+
+    /**
+     * Loads projections of the instances referring to the reference molecules, without fetching them as instances.
+     */
+    public void loadReferenceMoleculeReferrers(List<GKInstance> referenceMolecules) throws Exception {
+        projectionLoader.loadReferenceMoleculeReferrers(referenceMolecules);
+    }
+
+    /**
+     * Drops the loaded projections, e.g. once the reference molecules they were loaded for have been updated.
+     */
+    public void clearReferenceMoleculeProjections() {
+        moleculeProjections.clear();
+        referrerProjections.clear();
+    }
 
-            anySimpleEntityNameUpdated = true;
+    /**
+     * Empties the database adaptor's instance cache between pages; this run's InstanceEdit and the cached creators
+     * are held outside it.  Fails if any updates have not been flushed.
+     */
+    public void releaseInstanceCache() {
+        int pendingInstanceCount = getUnitOfWork().getDirtyInstanceCount();
+        if (pendingInstanceCount > 0) {
+            throw new IllegalStateException(
+                "Unable to release the instance cache with " + pendingInstanceCount + " instances still to be written"
+            );
         }
 
-        return anySimpleEntityNameUpdated;
+        // MySQLAdaptor does not expose the cache's size, so the heap it and the page held is reported instead
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeapMegabytes = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        getDbAdaptor().refresh();
+        instanceCacheReleaseCount++;
+        logger.info("Released instance cache (release {}) with {} MB of heap in use",
+            instanceCacheReleaseCount, usedHeapMegabytes);
     }
 
+    /**
+     * @return Number of times the instance cache has been released by releaseInstanceCache
+     */
+    public int getInstanceCacheReleaseCount() {
+        return instanceCacheReleaseCount;
+    }
+
+    /**
+     * @return DB_IDs of the reference molecule's referrers, from its projection if they were loaded
+     */
     @Override
-    public boolean updateReferenceMoleculeName(GKInstance referenceMolecule, String newName) throws Exception {
-        // TODO Check with Lisa and Peter if this implementation is correct - do we want to maintain old names
-        //  and/or move the new name to be first for the reference molecule?
+    public List<Long> getReferenceMoleculeReferrerDbIds(GKInstance referenceMolecule) throws Exception {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null && molecule.hasReferrerDbIds()) {
+            return Longs.asList(molecule.getReferrerDbIds());
+        }
 
-        List<String> referenceMoleculeNames =
-            safeList(referenceMolecule.getAttributeValuesList(ReactomeJavaConstants.name));
+        List<Long> referrerDbIds = new ArrayList<>();
+        for (GKInstance referrer : getReferenceMoleculeReferrerInstances(referenceMolecule)) {
+            referrerDbIds.add(referrer.getDBID());
+        }
+        return referrerDbIds;
+    }
 
-        if (referenceMoleculeNames.contains(newName)) {
-            return false;
+    /**
+     * @return Projection of the reference molecule as the update has left it, loaded or read from the instance
+     */
+    public ChEBIMoleculeProjection getChEBIMoleculeProjection(GKInstance referenceMolecule) throws Exception {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        return molecule != null ? molecule : readChEBIMoleculeProjection(referenceMolecule);
+    }
+
+    /**
+     * @return Creator of the reference molecule for the reports, from the creator cache where possible
+     */
+    public GKInstance getReferenceMoleculeCreator(GKInstance referenceMolecule) throws Exception {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null) {
+            if (molecule.getCreatedInstanceEditDbId() == null) {
+                return null;
+            }
+            if (creatorCache.isCreatorCached(molecule.getCreatedInstanceEditDbId())) {
+                return creatorCache.getCachedCreator(molecule.getCreatedInstanceEditDbId());
+            }
         }
+        return creatorCache.getCreator(referenceMolecule);
+    }
 
-        this.referenceMoleculeNameChangeReporter.report(
-            referenceMolecule.getDBID().toString(),
-            getCreatorName(getCreator(referenceMolecule)),
-            referenceMolecule.getDisplayName(),
-            referenceMoleculeNames.get(0),
-            newName
+    @Override
+    public boolean updateSimpleEntityReferrersNames(GKInstance referenceMolecule, String newName) throws Exception {
+        List<ReferenceMoleculeChanges.SimpleEntityNameChange> simpleEntityNameChanges = decideSimpleEntityNameChanges(
+            getReferenceMoleculeNames(referenceMolecule), getReferrers(referenceMolecule), newName
         );
+        applySimpleEntityNameChanges(simpleEntityNameChanges, newName);
+
+        return !simpleEntityNameChanges.isEmpty();
+    }
 
-        referenceMoleculeNames.add(0, newName);
-        referenceMolecule.setAttributeValue(ReactomeJavaConstants.name, referenceMoleculeNames);
-        getDbAdaptor().updateInstanceAttribute(referenceMolecule, ReactomeJavaConstants.name);
+    @Override
+    public boolean updateReferenceMoleculeName(GKInstance referenceMolecule, String newName) throws Exception {
+        List<String> referenceMoleculeNames = getReferenceMoleculeNames(referenceMolecule);
+        List<String> updatedReferenceMoleculeNames = getUpdatedReferenceMoleculeNames(referenceMoleculeNames, newName);
+        if (updatedReferenceMoleculeNames == null) {
+            return false;
+        }
 
+        applyReferenceMoleculeNames(referenceMolecule, referenceMoleculeNames, updatedReferenceMoleculeNames, newName);
         return true;
     }
 
     @Override
     public boolean updateReferenceMoleculeFormula(GKInstance referenceMolecule, String newFormula) throws Exception {
-        if (newFormula == null || newFormula.isEmpty()) {
+        String existingFormula = getReferenceMoleculeFormula(referenceMolecule);
+        String updatedFormula = getUpdatedReferenceMoleculeFormula(existingFormula, newFormula);
+        if (updatedFormula == null) {
             return false;
         }
 
-        String existingFormula = (String) referenceMolecule.getAttributeValue(ReactomeJavaConstants.formula);
-        if (newFormula.equals(existingFormula)) {
-            return false;
+        applyReferenceMoleculeFormula(referenceMolecule, existingFormula, updatedFormula);
+        return true;
+    }
+
+    /**
+     * Decides the changes to the reference molecule and its SimpleEntity referrers without making them; thread safe
+     * for molecules which are isLoadedForDecision, as it then reads only projections.
+     */
+    public ReferenceMoleculeChanges decideReferenceMoleculeChanges(
+        GKInstance referenceMolecule, String newName, String newFormula) throws Exception {
+
+        List<String> referenceMoleculeNames = getReferenceMoleculeNames(referenceMolecule);
+        String existingFormula = getReferenceMoleculeFormula(referenceMolecule);
+        List<ReferenceMoleculeChanges.Referrer> referrers = getReferrers(referenceMolecule);
+        List<ReferenceMoleculeChanges.SimpleEntityNameChange> simpleEntityNameChanges =
+            decideSimpleEntityNameChanges(referenceMoleculeNames, referrers, newName);
+
+        return new ReferenceMoleculeChanges(
+            referenceMolecule, newName, newFormula,
+            referenceMoleculeNames, getUpdatedReferenceMoleculeNames(referenceMoleculeNames, newName),
+            existingFormula, getUpdatedReferenceMoleculeFormula(existingFormula, newFormula),
+            referrers, simpleEntityNameChanges
+        );
+    }
+
+    /**
+     * @return true if decideReferenceMoleculeChanges reads only loaded projections for the reference molecule
+     */
+    public boolean isLoadedForDecision(GKInstance referenceMolecule) {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        return molecule != null && molecule.hasReferrerDbIds();
+    }
+
+    /**
+     * Loads the attributes applying the changes reads or rewrites, in bulk, onto the instances they change.
+     */
+    public void loadInstancesToWrite(Collection<ReferenceMoleculeChanges> referenceMoleculeChanges) throws Exception {
+        Set<GKInstance> referenceMolecules = new LinkedHashSet<>();
+        Set<GKInstance> simpleEntities = new LinkedHashSet<>();
+        for (ReferenceMoleculeChanges changes : referenceMoleculeChanges) {
+            GKInstance referenceMolecule = changes.getReferenceMolecule();
+            if (changes.isReferenceMoleculeChanged() &&
+                !isAttributeLoaded(referenceMolecule, ReactomeJavaConstants.modified)) {
+                referenceMolecules.add(referenceMolecule);
+            }
+
+            for (ReferenceMoleculeChanges.SimpleEntityNameChange change : changes.getSimpleEntityNameChanges()) {
+                GKInstance simpleEntity = change.isAutoUpdate() ? getReferrerInstance(change.getSimpleEntity()) : null;
+                if (simpleEntity != null && !isAttributeLoaded(simpleEntity, ReactomeJavaConstants.modified)) {
+                    simpleEntities.add(simpleEntity);
+                }
+            }
+        }
+
+        for (List<GKInstance> referenceMoleculeBatch : Iterables.partition(referenceMolecules, MAX_VALUES_PER_QUERY)) {
+            getDbAdaptor().loadInstanceAttributeValues(referenceMoleculeBatch, new String[] {
+                ReactomeJavaConstants.name, ReactomeJavaConstants.formula, ReactomeJavaConstants.referenceDatabase,
+                ReactomeJavaConstants.modified
+            });
         }
+        for (List<GKInstance> simpleEntityBatch : Iterables.partition(simpleEntities, MAX_VALUES_PER_QUERY)) {
+            getDbAdaptor().loadInstanceAttributeValues(simpleEntityBatch, new String[] {
+                ReactomeJavaConstants.name, ReactomeJavaConstants.modified
+            });
+        }
+    }
 
-        referenceMolecule.setAttributeValue(ReactomeJavaConstants.formula, newFormula);
-        getDbAdaptor().updateInstanceAttribute(referenceMolecule, ReactomeJavaConstants.formula);
+    /**
+     * Applies decided changes, deciding again first if their values have changed since.  Call only on the thread
+     * owning the database connection; returns true if the reference molecule's name or formula changed.
+     */
+    public boolean applyReferenceMoleculeChanges(ReferenceMoleculeChanges referenceMoleculeChanges) throws Exception {
+        GKInstance referenceMolecule = referenceMoleculeChanges.getReferenceMolecule();
+        if (!isCurrent(referenceMoleculeChanges)) {
+            referenceMoleculeChanges = decideReferenceMoleculeChanges(
+                referenceMolecule, referenceMoleculeChanges.getNewName(), referenceMoleculeChanges.getNewFormula()
+            );
+        }
 
-        this.referenceMoleculeFormulaChangeReporter.report(
-            referenceMolecule.getDBID().toString(),
-            getCreatorName(getCreator(referenceMolecule)),
-            referenceMolecule.getDisplayName(),
-            existingFormula,
-            newFormula
+        applySimpleEntityNameChanges(
+            referenceMoleculeChanges.getSimpleEntityNameChanges(), referenceMoleculeChanges.getNewName()
         );
+        if (referenceMoleculeChanges.getUpdatedNames() != null) {
+            applyReferenceMoleculeNames(
+                referenceMolecule, referenceMoleculeChanges.getNames(), referenceMoleculeChanges.getUpdatedNames(),
+                referenceMoleculeChanges.getNewName()
+            );
+        }
+        if (referenceMoleculeChanges.getUpdatedFormula() != null) {
+            applyReferenceMoleculeFormula(
+                referenceMolecule, referenceMoleculeChanges.getFormula(), referenceMoleculeChanges.getUpdatedFormula()
+            );
+        }
 
+        if (!referenceMoleculeChanges.isReferenceMoleculeChanged()) {
+            return false;
+        }
+        updateReferenceMoleculeDisplayName(referenceMolecule);
+        updateModifiedInstanceEdits(referenceMolecule);
         return true;
     }
 
     @Override
     public boolean updateReferenceMoleculeDisplayName(GKInstance referenceMolecule) throws Exception {
         InstanceDisplayNameGenerator.setDisplayName(referenceMolecule);
-        getDbAdaptor().updateInstanceAttribute(referenceMolecule, ReactomeJavaConstants._displayName);
+        getUnitOfWork().registerDirty(referenceMolecule, ReactomeJavaConstants._displayName);
         return true;
     }
 
     public boolean updateModifiedInstanceEdits(GKInstance instance) throws Exception {
-        instance.getAttributeValuesList(ReactomeJavaConstants.modified);
+        List<?> persistedModified = safeList(instance.getAttributeValuesList(ReactomeJavaConstants.modified));
         instance.addAttributeValue(ReactomeJavaConstants.modified, getInstanceEdit());
-        getDbAdaptor().updateInstanceAttribute(instance, ReactomeJavaConstants.modified);
+        getUnitOfWork().registerDirty(instance, ReactomeJavaConstants.modified, persistedModified);
         return true;
     }
 
+    /**
+     * Takes the changes made so far as change plan entries, clearing the unit of work so nothing is written.
+     */
+    public List<ChangePlan.Change> takePlannedChanges() throws Exception {
+        List<ChangePlan.Change> changes = new ArrayList<>();
+        for (Map.Entry<GKInstance, Set<String>> entry : getUnitOfWork().getDirtyAttributeNames().entrySet()) {
+            GKInstance instance = entry.getKey();
+            for (String attributeName : entry.getValue()) {
+                List<?> persistedValues = getUnitOfWork().getPersistedValues(instance, attributeName);
+                changes.add(new ChangePlan.Change(
+                    instance.getDBID(),
+                    instance.getSchemClass().getName(),
+                    attributeName,
+                    ChangePlanApplier.toPlanValues(instance.getAttributeValuesList(attributeName)),
+                    persistedValues != null ? ChangePlanApplier.toPlanValues(persistedValues) : null
+                ));
+            }
+        }
+        getUnitOfWork().clear();
+        return changes;
+    }
+
+    /**
+     * Applies a change plan, skipping instances changed since it was made.
+     *
+     * @return Number of instances skipped
+     */
+    public int applyChangePlan(List<ChangePlan.Change> changes) throws Exception {
+        return new ChangePlanApplier(getDbAdaptor(), getUnitOfWork(), this::getInstanceEdit, MAX_VALUES_PER_QUERY)
+            .apply(changes);
+    }
+
+    /**
+     * Attributes this run's changes to an InstanceEdit stored by an earlier run instead of creating a new one.
+     */
+    public void useInstanceEdit(long instanceEditDbId) throws Exception {
+        GKInstance storedInstanceEdit = getDbAdaptor().fetchInstance(instanceEditDbId);
+        if (storedInstanceEdit == null ||
+            !storedInstanceEdit.getSchemClass().isa(ReactomeJavaConstants.InstanceEdit)) {
+            throw new IllegalStateException("No InstanceEdit with DB_ID " + instanceEditDbId + " could be found");
+        }
+        this.instanceEdit = storedInstanceEdit;
+    }
+
+    /**
+     * @return DB_ID of this run's InstanceEdit, or null if it has not been stored yet
+     */
+    public Long getInstanceEditDbId() {
+        return instanceEdit != null ? instanceEdit.getDBID() : null;
+    }
+
     GKInstance getInstanceEdit() throws Exception {
         if (instanceEdit == null) {
             instanceEdit = new GKInstance(getSchema().getClassByName(ReactomeJavaConstants.InstanceEdit));
@@ -190,15 +538,171 @@ public class DBInteractor implements DBReader, DBWriter {
         return instanceEdit;
     }
 
+    private List<ReferenceMoleculeChanges.SimpleEntityNameChange> decideSimpleEntityNameChanges(
+        List<String> referenceMoleculeNames, List<ReferenceMoleculeChanges.Referrer> referrers, String newName) {
+
+        List<ReferenceMoleculeChanges.SimpleEntityNameChange> simpleEntityNameChanges = new ArrayList<>();
+        for (ReferenceMoleculeChanges.Referrer simpleEntity : referrers) {
+            List<String> simpleEntityNames = simpleEntity.getProjection().getNames();
+            List<String> updatedSimpleEntityNames =
+                getUpdatedSimpleEntityNames(referenceMoleculeNames, simpleEntityNames, newName);
+
+            if (simpleEntityNames.equals(updatedSimpleEntityNames)) {
+                continue;
+            }
+
+            boolean shouldAutoUpdateSimpleEntityNames = !differentFirstNames(simpleEntityNames, updatedSimpleEntityNames);
+            simpleEntityNameChanges.add(new ReferenceMoleculeChanges.SimpleEntityNameChange(
+                simpleEntity, updatedSimpleEntityNames, shouldAutoUpdateSimpleEntityNames
+            ));
+        }
+        return simpleEntityNameChanges;
+    }
+
+    private void applySimpleEntityNameChanges(
+        List<ReferenceMoleculeChanges.SimpleEntityNameChange> simpleEntityNameChanges, String newName)
+        throws Exception {
+
+        for (ReferenceMoleculeChanges.SimpleEntityNameChange simpleEntityNameChange : simpleEntityNameChanges) {
+            ReferenceMoleculeChanges.Referrer simpleEntity = simpleEntityNameChange.getSimpleEntity();
+            if (simpleEntityNameChange.isAutoUpdate()) {
+                GKInstance simpleEntityInstance = getReferrerInstance(simpleEntity);
+                simpleEntityInstance.setAttributeValue(
+                    ReactomeJavaConstants.name, new ArrayList<>(simpleEntityNameChange.getUpdatedNames())
+                );
+                getUnitOfWork().registerDirty(
+                    simpleEntityInstance, ReactomeJavaConstants.name, simpleEntityNameChange.getNames()
+                );
+                updateModifiedInstanceEdits(simpleEntityInstance);
+                if (simpleEntity.getInstance() == null) {
+                    referrerProjections.put(
+                        simpleEntity.getProjection().getDbId(),
+                        simpleEntity.getProjection().withNames(simpleEntityNameChange.getUpdatedNames())
+                    );
+                }
+            }
+
+            this.simpleEntityNameChangeReporter.report(
+                String.valueOf(simpleEntity.getProjection().getDbId()),
+                creatorCache.getCreatorName(getReferrerCreator(simpleEntity)),
+                simpleEntity.getProjection().getDisplayName(),
+                newName,
+                simpleEntityNameChange.getNames().toString(),
+                simpleEntityNameChange.getUpdatedNames().toString(),
+                String.valueOf(simpleEntityNameChange.isAutoUpdate())
+            );
+        }
+    }
+
+    /**
+     * @return The reference molecule's names with the new name first, or null if it already has the new name
+     */
+    private List<String> getUpdatedReferenceMoleculeNames(List<String> referenceMoleculeNames, String newName) {
+        // TODO Check with Lisa and Peter if this implementation is correct - do we want to maintain old names
+        //  and/or move the new name to be first for the reference molecule?
+        if (referenceMoleculeNames.contains(newName)) {
+            return null;
+        }
+
+        List<String> updatedReferenceMoleculeNames = new ArrayList<>(referenceMoleculeNames);
+        updatedReferenceMoleculeNames.add(0, newName);
+        return updatedReferenceMoleculeNames;
+    }
+
+    private void applyReferenceMoleculeNames(
+        GKInstance referenceMolecule, List<String> referenceMoleculeNames, List<String> updatedReferenceMoleculeNames,
+        String newName) throws Exception {
+
+        this.referenceMoleculeNameChangeReporter.report(
+            referenceMolecule.getDBID().toString(),
+            creatorCache.getCreatorName(getReferenceMoleculeCreator(referenceMolecule)),
+            referenceMolecule.getDisplayName(),
+            referenceMoleculeNames.get(0),
+            newName
+        );
+
+        List<String> persistedReferenceMoleculeNames = new ArrayList<>(referenceMoleculeNames);
+        referenceMolecule.setAttributeValue(
+            ReactomeJavaConstants.name, new ArrayList<>(updatedReferenceMoleculeNames)
+        );
+        getUnitOfWork().registerDirty(
+            referenceMolecule, ReactomeJavaConstants.name, persistedReferenceMoleculeNames
+        );
+
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null) {
+            moleculeProjections.put(
+                molecule.getDbId(), molecule.withNamesAndFormula(updatedReferenceMoleculeNames, molecule.getFormula())
+            );
+        }
+    }
+
+    /**
+     * @return The new formula, or null if there is none or the reference molecule already has it
+     */
+    private String getUpdatedReferenceMoleculeFormula(String existingFormula, String newFormula) {
+        if (newFormula == null || newFormula.isEmpty() || newFormula.equals(existingFormula)) {
+            return null;
+        }
+        return newFormula;
+    }
+
+    private void applyReferenceMoleculeFormula(
+        GKInstance referenceMolecule, String existingFormula, String updatedFormula) throws Exception {
+
+        referenceMolecule.setAttributeValue(ReactomeJavaConstants.formula, updatedFormula);
+        getUnitOfWork().registerDirty(referenceMolecule, ReactomeJavaConstants.formula, valuesOf(existingFormula));
+
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null) {
+            moleculeProjections.put(
+                molecule.getDbId(), molecule.withNamesAndFormula(molecule.getNames(), updatedFormula)
+            );
+        }
+
+        this.referenceMoleculeFormulaChangeReporter.report(
+            referenceMolecule.getDBID().toString(),
+            creatorCache.getCreatorName(getReferenceMoleculeCreator(referenceMolecule)),
+            referenceMolecule.getDisplayName(),
+            existingFormula,
+            updatedFormula
+        );
+    }
+
+    /**
+     * @return true if every value the changes were decided from is still the same
+     */
+    private boolean isCurrent(ReferenceMoleculeChanges referenceMoleculeChanges) throws Exception {
+        GKInstance referenceMolecule = referenceMoleculeChanges.getReferenceMolecule();
+        if (!referenceMoleculeChanges.getNames().equals(getReferenceMoleculeNames(referenceMolecule)) ||
+            !Objects.equals(referenceMoleculeChanges.getFormula(), getReferenceMoleculeFormula(referenceMolecule))) {
+            return false;
+        }
+
+        for (ReferenceMoleculeChanges.Referrer referrer : referenceMoleculeChanges.getReferrers()) {
+            List<String> currentNames = referrer.getInstance() != null ?
+                getSimpleEntityInstanceNames(referrer.getInstance()) :
+                referrerProjections.get(referrer.getProjection().getDbId()).getNames();
+            if (!referrer.getProjection().getNames().equals(currentNames)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAttributeLoaded(GKInstance instance, String attributeName) throws Exception {
+        return instance.isInflated() ||
+            instance.isAttributeValueLoaded(instance.getSchemClass().getAttribute(attributeName));
+    }
+
     private List<String> getUpdatedSimpleEntityNames(
-        GKInstance referenceMolecule, GKInstance simpleEntity, String newChEBIName) throws Exception {
+        List<String> referenceMoleculeNames, List<String> currentSimpleEntityNames, String newChEBIName) {
 
-        List<String> simpleEntityNames = getSimpleEntityInstanceNames(simpleEntity);
+        List<String> simpleEntityNames = new ArrayList<>(currentSimpleEntityNames);
         if (simpleEntityNames.isEmpty()) {
             throw new IllegalStateException("Simple entity has no names");
         }
 
-        List<String> referenceMoleculeNames = getReferenceMoleculeNames(referenceMolecule);
         if (referenceMoleculeNames.isEmpty()) {
             throw new IllegalStateException("Reference molecule has no names");
         }
@@ -277,10 +781,6 @@ public class DBInteractor implements DBReader, DBWriter {
         return !simpleEntityFirstName.equals(updatedSimpleEntityFirstName);
     }
 
-    private List<String> getReferenceMoleculeNames(GKInstance referenceMolecule) throws Exception {
-        return referenceMolecule.getAttributeValuesList(ReactomeJavaConstants.name);
-    }
-
     private Schema getSchema() throws Exception {
         if (getDbAdaptor().getSchema() == null) {
             getDbAdaptor().fetchSchema();
@@ -309,7 +809,81 @@ public class DBInteractor implements DBReader, DBWriter {
         return chEBIReferenceDatabaseInstances.iterator().next();
     }
 
-    private List<GKInstance> getReferenceMoleculeReferrers(GKInstance referenceMolecule) throws Exception {
+    /**
+     * @return Projection loaded for the reference molecule by loadReferenceMoleculeProjections, or null if none was
+     */
+    private ChEBIMoleculeProjection getStoredProjection(GKInstance referenceMolecule) {
+        Long dbId = referenceMolecule.getDBID();
+        return dbId != null ? moleculeProjections.get(dbId) : null;
+    }
+
+    private ChEBIMoleculeProjection readChEBIMoleculeProjection(GKInstance referenceMolecule) throws Exception {
+        return new ChEBIMoleculeProjection(
+            referenceMolecule.getDBID(),
+            (String) referenceMolecule.getAttributeValue(ReactomeJavaConstants.identifier),
+            getReferenceMoleculeNames(referenceMolecule),
+            getReferenceMoleculeFormula(referenceMolecule),
+            null
+        );
+    }
+
+    /**
+     * @return Names of the reference molecule from its loaded projection, or otherwise from the instance
+     */
+    private List<String> getReferenceMoleculeNames(GKInstance referenceMolecule) throws Exception {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null) {
+            return molecule.getNames();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> names = (List<String>) referenceMolecule.getAttributeValuesList(ReactomeJavaConstants.name);
+        return safeList(names);
+    }
+
+    /**
+     * @return Formula of the reference molecule from its loaded projection, or otherwise from the instance
+     */
+    private String getReferenceMoleculeFormula(GKInstance referenceMolecule) throws Exception {
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null) {
+            return molecule.getFormula();
+        }
+        return (String) referenceMolecule.getAttributeValue(ReactomeJavaConstants.formula);
+    }
+
+    /**
+     * @return Referrers of the reference molecule, as their loaded projections where there are any and otherwise as
+     * projections read from the instances
+     */
+    private List<ReferenceMoleculeChanges.Referrer> getReferrers(GKInstance referenceMolecule) throws Exception {
+        List<ReferenceMoleculeChanges.Referrer> referrers = new ArrayList<>();
+        ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+        if (molecule != null && molecule.hasReferrerDbIds()) {
+            for (long referrerDbId : molecule.getReferrerDbIds()) {
+                referrers.add(new ReferenceMoleculeChanges.Referrer(referrerProjections.get(referrerDbId), null));
+            }
+            return referrers;
+        }
+
+        for (GKInstance referrer : getReferenceMoleculeReferrerInstances(referenceMolecule)) {
+            ReferrerProjection loadedReferrer =
+                referrer.getDBID() != null ? referrerProjections.get(referrer.getDBID()) : null;
+            referrers.add(loadedReferrer != null ?
+                new ReferenceMoleculeChanges.Referrer(loadedReferrer, null) :
+                new ReferenceMoleculeChanges.Referrer(
+                    new ReferrerProjection(
+                        referrer.getDBID(), null, referrer.getDisplayName(), getSimpleEntityInstanceNames(referrer),
+                        null
+                    ),
+                    referrer
+                )
+            );
+        }
+        return referrers;
+    }
+
+    private List<GKInstance> getReferenceMoleculeReferrerInstances(GKInstance referenceMolecule) throws Exception {
         @SuppressWarnings("unchecked")
         Collection<GKInstance> referrers = referenceMolecule.getReferers(ReactomeJavaConstants.referenceEntity);
         if (referrers == null || referrers.isEmpty()) {
@@ -318,6 +892,72 @@ public class DBInteractor implements DBReader, DBWriter {
         return new ArrayList<>(referrers);
     }
 
+    /**
+     * @return Instance of the referrer, from the instance cache if it is already there
+     */
+    private GKInstance getReferrerInstance(ReferenceMoleculeChanges.Referrer referrer) throws Exception {
+        if (referrer.getInstance() != null) {
+            return referrer.getInstance();
+        }
+
+        ReferrerProjection projection = referrer.getProjection();
+        GKInstance instance = (GKInstance) getDbAdaptor().getInstance(projection.getClassName(), projection.getDbId());
+        if (instance.getDisplayName() == null) {
+            instance.setDisplayName(projection.getDisplayName());
+        }
+        return instance;
+    }
+
+    /**
+     * @return Creator of the referrer for the reports, from the creator cache where possible
+     */
+    private GKInstance getReferrerCreator(ReferenceMoleculeChanges.Referrer referrer) throws Exception {
+        Long createdInstanceEditDbId = referrer.getProjection().getCreatedInstanceEditDbId();
+        if (referrer.getInstance() == null) {
+            if (createdInstanceEditDbId == null) {
+                return null;
+            }
+            if (creatorCache.isCreatorCached(createdInstanceEditDbId)) {
+                return creatorCache.getCachedCreator(createdInstanceEditDbId);
+            }
+        }
+        return creatorCache.getCreator(getReferrerInstance(referrer));
+    }
+
+    /**
+     * @return Reference molecule the projection is of, from the instance cache if it is already there
+     */
+    private GKInstance getReferenceMolecule(ReferenceMoleculeProjection projection) throws Exception {
+        GKInstance referenceMolecule = (GKInstance) getDbAdaptor().getInstance(
+            projection.getClassName(), projection.getDbId()
+        );
+        if (referenceMolecule.getDisplayName() == null) {
+            referenceMolecule.setDisplayName(projection.getDisplayName());
+        }
+        return referenceMolecule;
+    }
+
+    /**
+     * Adds the reference molecules found by querying identifiers to the identifier index under their identifiers.
+     */
+    private void indexQueriedReferenceMolecules(
+        Collection<String> queriedChEBIIds, Collection<GKInstance> refMolsWithChEBIIdentifiers) throws Exception {
+
+        if (refMolsWithChEBIIdentifiers != null) {
+            for (GKInstance refMol : refMolsWithChEBIIdentifiers) {
+                String chEBIId = (String) refMol.getAttributeValue(ReactomeJavaConstants.identifier);
+                if (chEBIId != null && !identifierIndex.isIndexed(chEBIId)) {
+                    identifierIndex.add(chEBIId, refMol);
+                }
+            }
+        }
+        identifierIndex.addIndexedIdentifiers(queriedChEBIIds);
+    }
+
+    private static List<Object> valuesOf(Object value) {
+        return value != null ? Collections.singletonList(value) : Collections.emptyList();
+    }
+
     private List<String> getSimpleEntityInstanceNames(GKInstance simpleEntityInstance) throws Exception {
         @SuppressWarnings("unchecked")
         List<String> names = (List<String>) simpleEntityInstance.getAttributeValuesList(ReactomeJavaConstants.name);
@@ -327,7 +967,6 @@ public class DBInteractor implements DBReader, DBWriter {
         return new ArrayList<>(names);
     }
 
-
     private <E> List<E> safeList(List<E> list) {
         return list != null ? list : new ArrayList<>();
     }
@@ -336,6 +975,17 @@ public class DBInteractor implements DBReader, DBWriter {
         return this.dbAdaptor;
     }
 
+    UnitOfWork getUnitOfWork() {
+        return this.unitOfWork;
+    }
+
+    /**
+     * @return Creators of the reported instances, filled by loadReportedInstanceCreators
+     */
+    public CreatorCache getCreatorCache() {
+        return this.creatorCache;
+    }
+
     private long getPersonId() {
         return this.personId;
     }
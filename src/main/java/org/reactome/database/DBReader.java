@@ -1,11 +1,22 @@
 package org.reactome.database;
 
+import com.google.common.collect.ListMultimap;
 import org.gk.model.GKInstance;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DBReader {
     List<GKInstance> getAllChEBIReferenceMoleculeInstances() throws Exception;
 
+    List<GKInstance> getReferenceMolecules(List<Long> dbIds) throws Exception;
+
     List<GKInstance> getReferenceMoleculesWithChEBIIdentifier(String chEBIId) throws Exception;
+
+    ListMultimap<String, GKInstance> getReferenceMoleculesWithChEBIIdentifiers(Collection<String> chEBIIds)
+        throws Exception;
+
+    List<Long> getReferenceMoleculeReferrerDbIds(GKInstance referenceMolecule) throws Exception;
+
+    void indexReferenceMoleculeIdentifiers() throws Exception;
 }
@@ -0,0 +1,109 @@
+package org.reactome.database;
+
+/**
+ * Map from DB_ID to value, kept in two parallel arrays with open addressing so that DB_IDs are not boxed and no entry
+ * objects are allocated.  DB_IDs are positive, so 0 marks an empty slot.  Entries are only added or replaced, never
+ * removed one by one, only all at once by clear().  Not thread-safe: reads from several threads are only safe while
+ * nothing is being put.
+ *
+ * @param <V> Type of the values
+ */
+class DbIdMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] dbIds;
+    private Object[] values;
+    private int size;
+
+    DbIdMap() {
+        this.dbIds = new long[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * @return The value for the DB_ID, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(long dbId) {
+        int mask = dbIds.length - 1;
+        for (int slot = getSlot(dbId, mask); dbIds[slot] != 0; slot = (slot + 1) & mask) {
+            if (dbIds[slot] == dbId) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    boolean containsKey(long dbId) {
+        return get(dbId) != null;
+    }
+
+    /**
+     * Adds the value for the DB_ID or replaces the one it has.
+     */
+    void put(long dbId, V value) {
+        if (dbId <= 0) {
+            throw new IllegalArgumentException("DB_ID must be positive: " + dbId);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Value for DB_ID " + dbId + " must not be null");
+        }
+
+        int mask = dbIds.length - 1;
+        int slot = getSlot(dbId, mask);
+        while (dbIds[slot] != 0) {
+            if (dbIds[slot] == dbId) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        dbIds[slot] = dbId;
+        values[slot] = value;
+        size++;
+
+        // Kept at most half full so probe sequences stay short
+        if (size * 2 > dbIds.length) {
+            resize(dbIds.length * 2);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry and shrinks the map back to its initial capacity.
+     */
+    void clear() {
+        this.dbIds = new long[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+        this.size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldDbIds = dbIds;
+        Object[] oldValues = values;
+        this.dbIds = new long[capacity];
+        this.values = new Object[capacity];
+
+        int mask = capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldDbIds.length; oldSlot++) {
+            if (oldDbIds[oldSlot] == 0) {
+                continue;
+            }
+            int slot = getSlot(oldDbIds[oldSlot], mask);
+            while (dbIds[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            dbIds[slot] = oldDbIds[oldSlot];
+            values[slot] = oldValues[oldSlot];
+        }
+    }
+
+    private static int getSlot(long dbId, int mask) {
+        // DB_IDs are largely sequential, so their bits are mixed before masking
+        long hash = dbId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
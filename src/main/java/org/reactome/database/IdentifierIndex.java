@@ -0,0 +1,92 @@
+package org.reactome.database;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.gk.model.GKInstance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory index of instances by identifier, either complete (built from one read of every identifier) or covering
+ * only the identifiers queried so far.  Identifiers which are not indexed are not answered for, so callers can fall
+ * back to querying the database for them.
+ *
+ * Instances read by a plain query are indexed as projections and only fetched as GKInstances when their identifier
+ * is looked up; instances already in memory (queried as GKInstances) are indexed as they are.
+ */
+class IdentifierIndex {
+    /**
+     * Fetches the instance a projection is of, e.g. from the database adaptor's instance cache.
+     */
+    @FunctionalInterface
+    interface InstanceLoader {
+        GKInstance load(ReferenceMoleculeProjection projection) throws Exception;
+    }
+
+    private final SetMultimap<String, ReferenceMoleculeProjection> identifierToProjections;
+    private final SetMultimap<String, GKInstance> identifierToInstances;
+    private final Set<String> indexedIdentifiers;
+    private boolean complete;
+
+    IdentifierIndex() {
+        this.identifierToProjections = LinkedHashMultimap.create();
+        this.identifierToInstances = LinkedHashMultimap.create();
+        this.indexedIdentifiers = new HashSet<>();
+    }
+
+    void add(String identifier, ReferenceMoleculeProjection projection) {
+        identifierToProjections.put(identifier, projection);
+    }
+
+    void add(String identifier, GKInstance instance) {
+        identifierToInstances.put(identifier, instance);
+    }
+
+    /**
+     * Marks the identifiers as indexed, i.e. every instance with them has been added.
+     */
+    void addIndexedIdentifiers(Collection<String> identifiers) {
+        indexedIdentifiers.addAll(identifiers);
+    }
+
+    /**
+     * Marks every identifier as indexed.
+     */
+    void setComplete() {
+        this.complete = true;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    boolean isIndexed(String identifier) {
+        return complete || indexedIdentifiers.contains(identifier);
+    }
+
+    /**
+     * @param loader Loader fetching the instances indexed as projections
+     * @return Instances with the identifier, or an empty list if none have it or it was not indexed
+     * @throws Exception Thrown if unable to fetch an instance indexed as a projection
+     */
+    List<GKInstance> get(String identifier, InstanceLoader loader) throws Exception {
+        List<GKInstance> instances = new ArrayList<>();
+        for (ReferenceMoleculeProjection projection : identifierToProjections.get(identifier)) {
+            instances.add(loader.load(projection));
+        }
+        for (GKInstance instance : identifierToInstances.get(identifier)) {
+            if (!instances.contains(instance)) {
+                instances.add(instance);
+            }
+        }
+        return instances;
+    }
+
+    int size() {
+        return identifierToProjections.size() + identifierToInstances.size();
+    }
+}
@@ -0,0 +1,155 @@
+package org.reactome.database;
+
+import org.gk.model.GKInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes decided for one reference molecule and the SimpleEntities referring to it from the name and formula ChEBI
+ * has for it.  Decisions are made from projections of the instances without changing anything, so that they can be
+ * made for many reference molecules at once on several threads, and are applied afterwards by the thread owning the
+ * database connection.
+ *
+ * The values each decision was made from are kept with it, so that a decision made before another one was applied
+ * can be recognised as stale (e.g. for a referrer of two reference molecules) and made again.
+ */
+public final class ReferenceMoleculeChanges {
+    private final GKInstance referenceMolecule;
+    private final String newName;
+    private final String newFormula;
+
+    private final List<String> names;
+    private final List<String> updatedNames;
+    private final String formula;
+    private final String updatedFormula;
+    private final List<Referrer> referrers;
+    private final List<SimpleEntityNameChange> simpleEntityNameChanges;
+
+    /**
+     * @param updatedNames New names of the reference molecule, or null if they are unchanged
+     * @param updatedFormula New formula of the reference molecule, or null if it is unchanged
+     * @param referrers Every referrer the SimpleEntity name changes were decided from
+     */
+    ReferenceMoleculeChanges(
+        GKInstance referenceMolecule, String newName, String newFormula, List<String> names, List<String> updatedNames,
+        String formula, String updatedFormula, List<Referrer> referrers,
+        List<SimpleEntityNameChange> simpleEntityNameChanges) {
+
+        this.referenceMolecule = referenceMolecule;
+        this.newName = newName;
+        this.newFormula = newFormula;
+        this.names = immutableCopy(names);
+        this.updatedNames = updatedNames != null ? immutableCopy(updatedNames) : null;
+        this.formula = formula;
+        this.updatedFormula = updatedFormula;
+        this.referrers = immutableCopy(referrers);
+        this.simpleEntityNameChanges = immutableCopy(simpleEntityNameChanges);
+    }
+
+    public GKInstance getReferenceMolecule() {
+        return referenceMolecule;
+    }
+
+    /**
+     * @return true if the reference molecule's name or formula is to change
+     */
+    public boolean isReferenceMoleculeChanged() {
+        return updatedNames != null || updatedFormula != null;
+    }
+
+    String getNewName() {
+        return newName;
+    }
+
+    String getNewFormula() {
+        return newFormula;
+    }
+
+    List<String> getNames() {
+        return names;
+    }
+
+    List<String> getUpdatedNames() {
+        return updatedNames;
+    }
+
+    String getFormula() {
+        return formula;
+    }
+
+    String getUpdatedFormula() {
+        return updatedFormula;
+    }
+
+    List<Referrer> getReferrers() {
+        return referrers;
+    }
+
+    List<SimpleEntityNameChange> getSimpleEntityNameChanges() {
+        return simpleEntityNameChanges;
+    }
+
+    private static <E> List<E> immutableCopy(List<E> list) {
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    /**
+     * A referrer of the reference molecule as the changes were decided from it: its projection and, if it was read
+     * from an instance already in memory rather than loaded as a projection, that instance.
+     */
+    static final class Referrer {
+        private final ReferrerProjection projection;
+        private final GKInstance instance;
+
+        /**
+         * @param instance Instance the projection was read from, or null if it was loaded as a projection and the
+         * instance is only to be fetched if it is written
+         */
+        Referrer(ReferrerProjection projection, GKInstance instance) {
+            this.projection = projection;
+            this.instance = instance;
+        }
+
+        ReferrerProjection getProjection() {
+            return projection;
+        }
+
+        GKInstance getInstance() {
+            return instance;
+        }
+    }
+
+    /**
+     * New names decided for a SimpleEntity, which are only set if its first name is unchanged (otherwise the change
+     * is just reported for a curator to review).
+     */
+    static final class SimpleEntityNameChange {
+        private final Referrer simpleEntity;
+        private final List<String> updatedNames;
+        private final boolean autoUpdate;
+
+        SimpleEntityNameChange(Referrer simpleEntity, List<String> updatedNames, boolean autoUpdate) {
+            this.simpleEntity = simpleEntity;
+            this.updatedNames = immutableCopy(updatedNames);
+            this.autoUpdate = autoUpdate;
+        }
+
+        Referrer getSimpleEntity() {
+            return simpleEntity;
+        }
+
+        List<String> getNames() {
+            return simpleEntity.getProjection().getNames();
+        }
+
+        List<String> getUpdatedNames() {
+            return updatedNames;
+        }
+
+        boolean isAutoUpdate() {
+            return autoUpdate;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.reactome.database;
+
+/**
+ * Read-only projection of a reference molecule from a plain SQL query: just what is needed to fetch the molecule as a
+ * GKInstance if it is ever looked up.  Holding these instead of GKInstances keeps lookup structures covering every
+ * reference molecule in the database from filling the database adaptor's instance cache with molecules the update
+ * never reads.  Projections are equal if they are of the same database object.
+ */
+final class ReferenceMoleculeProjection {
+    private final long dbId;
+    private final String className;
+    private final String displayName;
+
+    /**
+     * @param dbId DB_ID of the reference molecule
+     * @param className Schema class of the reference molecule (i.e. its _class column)
+     * @param displayName Display name of the reference molecule, or null if not read
+     */
+    ReferenceMoleculeProjection(long dbId, String className, String displayName) {
+        this.dbId = dbId;
+        this.className = className;
+        this.displayName = displayName;
+    }
+
+    long getDbId() {
+        return dbId;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReferenceMoleculeProjection)) {
+            return false;
+        }
+        return dbId == ((ReferenceMoleculeProjection) o).dbId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(dbId);
+    }
+
+    @Override
+    public String toString() {
+        return className + ":" + dbId;
+    }
+}
@@ -0,0 +1,313 @@
+package org.reactome.database;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.primitives.Longs;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gk.model.GKInstance;
+import org.gk.model.ReactomeJavaConstants;
+import org.gk.persistence.MySQLAdaptor;
+import org.gk.schema.Schema;
+import org.gk.schema.SchemaAttribute;
+import org.gk.schema.SchemaClass;
+import org.reactome.reports.CreatorCache;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads projections of reference molecules, their referrers and the creators of both with set-based read-only
+ * queries, into the projection maps and creator cache shared with DBInteractor.
+ */
+class ReferenceMoleculeProjectionLoader {
+    private static Logger logger = LogManager.getLogger(ReferenceMoleculeProjectionLoader.class);
+
+    private final MySQLAdaptor dbAdaptor;
+    private final DbIdMap<ChEBIMoleculeProjection> moleculeProjections;
+    private final DbIdMap<ReferrerProjection> referrerProjections;
+    private final CreatorCache creatorCache;
+    private final int maxValuesPerQuery;
+
+    ReferenceMoleculeProjectionLoader(
+        MySQLAdaptor dbAdaptor, DbIdMap<ChEBIMoleculeProjection> moleculeProjections,
+        DbIdMap<ReferrerProjection> referrerProjections, CreatorCache creatorCache, int maxValuesPerQuery) {
+
+        this.dbAdaptor = dbAdaptor;
+        this.moleculeProjections = moleculeProjections;
+        this.referrerProjections = referrerProjections;
+        this.creatorCache = creatorCache;
+        this.maxValuesPerQuery = maxValuesPerQuery;
+    }
+
+    /**
+     * Loads the molecules' identifiers, names, formulas and creating instance edits as projections, and only their
+     * identifiers onto the instances.
+     */
+    void loadReferenceMoleculeProjections(List<GKInstance> referenceMolecules) throws Exception {
+        String identifierTable =
+            getAttributeOriginTable(ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.identifier);
+        String formulaTable =
+            getAttributeOriginTable(ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.formula);
+
+        for (List<GKInstance> referenceMoleculeBatch : Lists.partition(referenceMolecules, maxValuesPerQuery)) {
+            dbAdaptor.loadInstanceAttributeValues(
+                referenceMoleculeBatch, new String[] {ReactomeJavaConstants.identifier}
+            );
+
+            List<Long> referenceMoleculeDbIds = getDbIds(referenceMoleculeBatch);
+            ListMultimap<Long, String> dbIdToNames =
+                readNames(ReactomeJavaConstants.ReferenceMolecule, referenceMoleculeDbIds);
+            String query = "SELECT d.DB_ID, i." + ReactomeJavaConstants.identifier +
+                ", f." + ReactomeJavaConstants.formula + ", d." + ReactomeJavaConstants.created +
+                " FROM DatabaseObject d" +
+                " LEFT JOIN " + identifierTable + " i ON i.DB_ID = d.DB_ID" +
+                " LEFT JOIN " + formulaTable + " f ON f.DB_ID = d.DB_ID" +
+                " WHERE d.DB_ID IN (" + String.join(",", Collections.nCopies(referenceMoleculeDbIds.size(), "?")) + ")";
+
+            try (ResultSet resultSet = dbAdaptor.executeQuery(query, referenceMoleculeDbIds)) {
+                while (resultSet.next()) {
+                    long dbId = resultSet.getLong(1);
+                    moleculeProjections.put(dbId, new ChEBIMoleculeProjection(
+                        dbId, resultSet.getString(2), dbIdToNames.get(dbId), resultSet.getString(3),
+                        getNullableLong(resultSet, 4)
+                    ));
+                }
+            }
+        }
+        logger.info("Loaded projections of {} reference molecules", referenceMolecules.size());
+    }
+
+    /**
+     * Caches the creators of the molecules and their loaded referrers, joining the creating instance edits' authors
+     * to DatabaseObject for their display names.
+     */
+    void loadReportedInstanceCreators(List<GKInstance> referenceMolecules) throws Exception {
+        Set<Long> createdInstanceEditDbIds = new LinkedHashSet<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+            if (molecule == null) {
+                continue;
+            }
+
+            addUncachedInstanceEdit(createdInstanceEditDbIds, molecule.getCreatedInstanceEditDbId());
+            for (long referrerDbId : molecule.hasReferrerDbIds() ? molecule.getReferrerDbIds() : new long[0]) {
+                addUncachedInstanceEdit(
+                    createdInstanceEditDbIds, referrerProjections.get(referrerDbId).getCreatedInstanceEditDbId()
+                );
+            }
+        }
+
+        SchemaAttribute authorAttribute = getSchema()
+            .getClassByName(ReactomeJavaConstants.InstanceEdit)
+            .getAttribute(ReactomeJavaConstants.author);
+        String authorTable = authorAttribute.getOrigin().getName() +
+            (authorAttribute.isMultiple() ? "_2_" + ReactomeJavaConstants.author : "");
+        String firstAuthorCondition = authorAttribute.isMultiple() ?
+            " AND a." + ReactomeJavaConstants.author + "_rank = 0" : "";
+
+        for (List<Long> instanceEditDbIdBatch : Iterables.partition(createdInstanceEditDbIds, maxValuesPerQuery)) {
+            String query = "SELECT a.DB_ID, a." + ReactomeJavaConstants.author + ", d._class, d._displayName" +
+                " FROM " + authorTable + " a JOIN DatabaseObject d ON d.DB_ID = a." + ReactomeJavaConstants.author +
+                " WHERE a.DB_ID IN (" + String.join(",", Collections.nCopies(instanceEditDbIdBatch.size(), "?")) + ")" +
+                firstAuthorCondition;
+
+            try (ResultSet resultSet = dbAdaptor.executeQuery(query, instanceEditDbIdBatch)) {
+                while (resultSet.next()) {
+                    GKInstance creator = (GKInstance) dbAdaptor.getInstance(
+                        resultSet.getString(3), resultSet.getLong(2)
+                    );
+                    creator.setDisplayName(resultSet.getString(4));
+                    creatorCache.cacheCreator(resultSet.getLong(1), creator);
+                }
+            }
+            // Instance edits without an author
+            for (Long instanceEditDbId : instanceEditDbIdBatch) {
+                if (!creatorCache.isCreatorCached(instanceEditDbId)) {
+                    creatorCache.cacheCreator(instanceEditDbId, null);
+                }
+            }
+        }
+        logger.info("Loaded creators of {} instance edits", createdInstanceEditDbIds.size());
+    }
+
+    /**
+     * Loads the instances referring to the molecules through referenceEntity as projections and records their
+     * DB_IDs in the molecules' projections.  Referrers already loaded keep their projections.
+     */
+    void loadReferenceMoleculeReferrers(List<GKInstance> referenceMolecules) throws Exception {
+        SetMultimap<Long, Long> referenceMoleculeDbIdToReferrerDbIds = LinkedHashMultimap.create();
+        Map<Long, ReferrerProjection> unnamedReferrers = new LinkedHashMap<>();
+        for (String referenceEntityTable : getReferenceEntityTables()) {
+            for (List<GKInstance> referenceMoleculeBatch : Lists.partition(referenceMolecules, maxValuesPerQuery)) {
+                readReferrers(
+                    referenceEntityTable, referenceMoleculeBatch, referenceMoleculeDbIdToReferrerDbIds, unnamedReferrers
+                );
+            }
+        }
+
+        ListMultimap<String, ReferrerProjection> classNameToReferrers =
+            Multimaps.index(unnamedReferrers.values(), ReferrerProjection::getClassName);
+        for (String className : classNameToReferrers.keySet()) {
+            for (List<ReferrerProjection> referrerBatch :
+                Lists.partition(classNameToReferrers.get(className), maxValuesPerQuery)) {
+
+                List<Long> referrerDbIds = new ArrayList<>();
+                for (ReferrerProjection referrer : referrerBatch) {
+                    referrerDbIds.add(referrer.getDbId());
+                }
+                ListMultimap<Long, String> dbIdToNames = readNames(className, referrerDbIds);
+                for (ReferrerProjection referrer : referrerBatch) {
+                    referrerProjections.put(
+                        referrer.getDbId(), referrer.withNames(dbIdToNames.get(referrer.getDbId()))
+                    );
+                }
+            }
+        }
+
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            ChEBIMoleculeProjection molecule = getStoredProjection(referenceMolecule);
+            if (molecule != null) {
+                moleculeProjections.put(molecule.getDbId(), molecule.withReferrerDbIds(
+                    Longs.toArray(referenceMoleculeDbIdToReferrerDbIds.get(molecule.getDbId()))
+                ));
+            }
+        }
+        logger.info("Loaded {} referrers of {} reference molecules",
+            unnamedReferrers.size(), referenceMolecules.size());
+    }
+
+    /**
+     * @return Tables holding referenceEntity values: the class table for each class declaring a single-valued
+     * referenceEntity attribute and the Class_2_referenceEntity table for each declaring a multi-valued one
+     */
+    private Set<String> getReferenceEntityTables() throws Exception {
+        Set<String> referenceEntityTables = new TreeSet<>();
+        for (Object schemaClassObject : getSchema().getClasses()) {
+            SchemaClass schemaClass = (SchemaClass) schemaClassObject;
+            if (!schemaClass.isValidAttribute(ReactomeJavaConstants.referenceEntity)) {
+                continue;
+            }
+
+            SchemaAttribute referenceEntityAttribute = schemaClass.getAttribute(ReactomeJavaConstants.referenceEntity);
+            String originClassName = referenceEntityAttribute.getOrigin().getName();
+            referenceEntityTables.add(referenceEntityAttribute.isMultiple() ?
+                originClassName + "_2_" + ReactomeJavaConstants.referenceEntity :
+                originClassName
+            );
+        }
+        return referenceEntityTables;
+    }
+
+    /**
+     * Reads the referrers of the molecules in one referenceEntity table, with a projection without names for each
+     * referrer not loaded before.
+     */
+    private void readReferrers(
+        String referenceEntityTable, List<GKInstance> referenceMolecules,
+        SetMultimap<Long, Long> referenceMoleculeDbIdToReferrerDbIds, Map<Long, ReferrerProjection> unnamedReferrers)
+        throws Exception {
+
+        List<Long> referenceMoleculeDbIds = getDbIds(referenceMolecules);
+        String query = "SELECT r.DB_ID, r." + ReactomeJavaConstants.referenceEntity + ", d._class, d._displayName" +
+            ", d." + ReactomeJavaConstants.created +
+            " FROM " + referenceEntityTable + " r JOIN DatabaseObject d ON d.DB_ID = r.DB_ID" +
+            " WHERE r." + ReactomeJavaConstants.referenceEntity + " IN (" +
+            String.join(",", Collections.nCopies(referenceMoleculeDbIds.size(), "?")) + ")";
+
+        try (ResultSet resultSet = dbAdaptor.executeQuery(query, referenceMoleculeDbIds)) {
+            while (resultSet.next()) {
+                long referrerDbId = resultSet.getLong(1);
+                referenceMoleculeDbIdToReferrerDbIds.put(resultSet.getLong(2), referrerDbId);
+                if (referrerProjections.containsKey(referrerDbId) || unnamedReferrers.containsKey(referrerDbId)) {
+                    continue;
+                }
+
+                // The schema's class name is shared rather than one string held per referrer
+                String className = getSchema().getClassByName(resultSet.getString(3)).getName();
+                unnamedReferrers.put(referrerDbId, new ReferrerProjection(
+                    referrerDbId, className, resultSet.getString(4), Collections.emptyList(),
+                    getNullableLong(resultSet, 5)
+                ));
+            }
+        }
+    }
+
+    /**
+     * @return Names of the instances of the class with the DB_IDs, in order, read with one query
+     */
+    private ListMultimap<Long, String> readNames(String className, List<Long> dbIds) throws Exception {
+        ListMultimap<Long, String> dbIdToNames = ArrayListMultimap.create();
+        SchemaClass schemaClass = getSchema().getClassByName(className);
+        if (dbIds.isEmpty() || !schemaClass.isValidAttribute(ReactomeJavaConstants.name)) {
+            return dbIdToNames;
+        }
+
+        SchemaAttribute nameAttribute = schemaClass.getAttribute(ReactomeJavaConstants.name);
+        String dbIdCondition = "n.DB_ID IN (" + String.join(",", Collections.nCopies(dbIds.size(), "?")) + ")";
+        String query = nameAttribute.isMultiple() ?
+            "SELECT n.DB_ID, n." + ReactomeJavaConstants.name +
+                " FROM " + nameAttribute.getOrigin().getName() + "_2_" + ReactomeJavaConstants.name + " n" +
+                " WHERE " + dbIdCondition + " ORDER BY n.DB_ID, n." + ReactomeJavaConstants.name + "_rank" :
+            "SELECT n.DB_ID, n." + ReactomeJavaConstants.name + " FROM " + nameAttribute.getOrigin().getName() + " n" +
+                " WHERE " + dbIdCondition + " AND n." + ReactomeJavaConstants.name + " IS NOT NULL";
+
+        try (ResultSet resultSet = dbAdaptor.executeQuery(query, dbIds)) {
+            while (resultSet.next()) {
+                dbIdToNames.put(resultSet.getLong(1), resultSet.getString(2));
+            }
+        }
+        return dbIdToNames;
+    }
+
+    /**
+     * @return Table holding the values of the single-valued attribute for instances of the class
+     */
+    private String getAttributeOriginTable(String className, String attributeName) throws Exception {
+        return getSchema().getClassByName(className).getAttribute(attributeName).getOrigin().getName();
+    }
+
+    private ChEBIMoleculeProjection getStoredProjection(GKInstance referenceMolecule) {
+        Long dbId = referenceMolecule.getDBID();
+        return dbId != null ? moleculeProjections.get(dbId) : null;
+    }
+
+    private void addUncachedInstanceEdit(Set<Long> instanceEditDbIds, Long instanceEditDbId) {
+        if (instanceEditDbId != null && !creatorCache.isCreatorCached(instanceEditDbId)) {
+            instanceEditDbIds.add(instanceEditDbId);
+        }
+    }
+
+    private Schema getSchema() throws Exception {
+        if (dbAdaptor.getSchema() == null) {
+            dbAdaptor.fetchSchema();
+        }
+        return dbAdaptor.getSchema();
+    }
+
+    private static List<Long> getDbIds(List<GKInstance> instances) {
+        List<Long> dbIds = new ArrayList<>();
+        for (GKInstance instance : instances) {
+            dbIds.add(instance.getDBID());
+        }
+        return dbIds;
+    }
+
+    private static Long getNullableLong(ResultSet resultSet, int columnIndex) throws SQLException {
+        long value = resultSet.getLong(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+}
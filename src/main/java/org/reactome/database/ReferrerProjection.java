@@ -0,0 +1,68 @@
+package org.reactome.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only projection of an instance referring to a reference molecule (usually a SimpleEntity) holding just what
+ * the update reads: its names and, for the reports, its display name and creating InstanceEdit.  The class is kept so
+ * that the instance can be fetched when its names are to be written.  Projections are replaced, never changed, when
+ * the update changes the names.
+ */
+final class ReferrerProjection {
+    private final long dbId;
+    private final String className;
+    private final String displayName;
+    private final List<String> names;
+    private final Long createdInstanceEditDbId;
+
+    /**
+     * @param dbId DB_ID of the referrer
+     * @param className Schema class of the referrer (i.e. its _class column), or null if only read from its instance
+     * @param displayName Display name of the referrer
+     * @param names Names of the referrer, in order
+     * @param createdInstanceEditDbId DB_ID of the InstanceEdit which created the referrer, or null if none
+     */
+    ReferrerProjection(
+        long dbId, String className, String displayName, List<String> names, Long createdInstanceEditDbId) {
+
+        this.dbId = dbId;
+        this.className = className;
+        this.displayName = displayName;
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.createdInstanceEditDbId = createdInstanceEditDbId;
+    }
+
+    long getDbId() {
+        return dbId;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getDisplayName() {
+        return displayName;
+    }
+
+    List<String> getNames() {
+        return names;
+    }
+
+    Long getCreatedInstanceEditDbId() {
+        return createdInstanceEditDbId;
+    }
+
+    /**
+     * @return A copy of this projection with the names the update has given the referrer
+     */
+    ReferrerProjection withNames(List<String> names) {
+        return new ReferrerProjection(dbId, className, displayName, names, createdInstanceEditDbId);
+    }
+
+    @Override
+    public String toString() {
+        return className + ":" + dbId;
+    }
+}
@@ -0,0 +1,288 @@
+package org.reactome.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gk.model.GKInstance;
+import org.gk.persistence.MySQLAdaptor;
+import org.gk.schema.SchemaAttribute;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Records which attributes of which instances have been changed in memory and writes them to the database together
+ * on flush, instead of with one updateInstanceAttribute call (and round-trip) per attribute.
+ *
+ * Each instance is written once per flush however many times its attributes were marked dirty.  Single-valued
+ * attributes are written with one UPDATE per instance and class table covering all of its dirty columns there.
+ * Multi-valued attributes registered with their persisted values are written incrementally in the
+ * Class_2_attribute table: rows are only deleted and inserted where the new values differ from the persisted ones,
+ * and the ranks of the rows after them are only shifted if the number of values changed in between, so appending a
+ * value is a single insert.  Multi-valued attributes registered without their persisted values are rewritten in
+ * full.  Identical statements for different instances are sent as one JDBC batch.
+ *
+ * Values must already be set on the instances when they are marked dirty, and the writes happen on the adaptor's
+ * connection, so they are part of any transaction in progress.
+ */
+public class UnitOfWork {
+    private static final Logger logger = LogManager.getLogger(UnitOfWork.class);
+
+    /**
+     * Order in which statements are executed, so that rows are removed and ranks shifted before the rows taking
+     * their place are inserted.
+     */
+    private enum Phase {
+        REMOVE, SHIFT, WRITE
+    }
+
+    private final MySQLAdaptor dbAdaptor;
+    private final Map<GKInstance, Set<String>> instanceToDirtyAttributeNames;
+    private final Map<GKInstance, Map<String, List<?>>> instanceToPersistedValues;
+
+    private long flushedInstanceCount;
+    private long statementBatchCount;
+    private long writtenRowCount;
+
+    public UnitOfWork(MySQLAdaptor dbAdaptor) {
+        this.dbAdaptor = dbAdaptor;
+        this.instanceToDirtyAttributeNames = new LinkedHashMap<>();
+        this.instanceToPersistedValues = new HashMap<>();
+    }
+
+    /**
+     * Marks an attribute whose value has been changed on the instance as needing to be written on the next flush.
+     * A multi-valued attribute marked this way is rewritten in full.
+     */
+    public void registerDirty(GKInstance instance, String attributeName) {
+        instanceToDirtyAttributeNames.computeIfAbsent(instance, k -> new LinkedHashSet<>()).add(attributeName);
+    }
+
+    /**
+     * Marks an attribute whose values have been changed on the instance as needing to be written on the next flush,
+     * recording the values it had before.  For a multi-valued attribute, only the rows which differ from the persisted
+     * values are written; for a single-valued one, the persisted value is only kept for getPersistedValues.
+     *
+     * @param persistedValues Values of the attribute in the database, i.e. before the change (copied, so the caller
+     * may go on to modify the list)
+     */
+    public void registerDirty(GKInstance instance, String attributeName, List<?> persistedValues) {
+        // Only the first registration since the last flush reflects the database
+        if (!isDirty(instance, attributeName)) {
+            instanceToPersistedValues
+                .computeIfAbsent(instance, k -> new HashMap<>())
+                .put(attributeName, new ArrayList<>(persistedValues));
+        }
+        registerDirty(instance, attributeName);
+    }
+
+    public boolean isDirty(GKInstance instance, String attributeName) {
+        return instanceToDirtyAttributeNames.getOrDefault(instance, Collections.emptySet()).contains(attributeName);
+    }
+
+    public int getDirtyInstanceCount() {
+        return instanceToDirtyAttributeNames.size();
+    }
+
+    /**
+     * @return Names of the dirty attributes of each dirty instance, in the order the instances were first marked
+     */
+    public Map<GKInstance, Set<String>> getDirtyAttributeNames() {
+        return Collections.unmodifiableMap(instanceToDirtyAttributeNames);
+    }
+
+    /**
+     * @return Values the attribute had before it was first marked dirty since the last flush, or null if they were
+     * not recorded
+     */
+    public List<?> getPersistedValues(GKInstance instance, String attributeName) {
+        return instanceToPersistedValues.getOrDefault(instance, Collections.emptyMap()).get(attributeName);
+    }
+
+    /**
+     * Forgets every dirty attribute without writing it, e.g. once the changes have been written to a change plan
+     * instead.
+     */
+    public void clear() {
+        instanceToDirtyAttributeNames.clear();
+        instanceToPersistedValues.clear();
+    }
+
+    /**
+     * Writes every dirty attribute to the database and clears the dirty state.
+     *
+     * @throws Exception Thrown if unable to write to the database; the dirty state is kept so the caller can roll
+     * back the transaction and decide what to do
+     */
+    public void flush() throws Exception {
+        if (instanceToDirtyAttributeNames.isEmpty()) {
+            return;
+        }
+
+        Map<Phase, Map<String, List<List<Object>>>> statementToParameterLists = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            statementToParameterLists.put(phase, new LinkedHashMap<>());
+        }
+        for (Map.Entry<GKInstance, Set<String>> entry : instanceToDirtyAttributeNames.entrySet()) {
+            addStatements(entry.getKey(), entry.getValue(), statementToParameterLists);
+        }
+
+        Connection connection = dbAdaptor.getConnection();
+        int flushStatementBatchCount = 0;
+        for (Map<String, List<List<Object>>> phaseStatementToParameterLists : statementToParameterLists.values()) {
+            for (Map.Entry<String, List<List<Object>>> entry : phaseStatementToParameterLists.entrySet()) {
+                try (PreparedStatement statement = connection.prepareStatement(entry.getKey())) {
+                    for (List<Object> parameters : entry.getValue()) {
+                        for (int index = 0; index < parameters.size(); index++) {
+                            statement.setObject(index + 1, parameters.get(index));
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                flushStatementBatchCount++;
+                writtenRowCount += entry.getValue().size();
+            }
+        }
+
+        logger.debug("Flushed {} instances with {} statement batches",
+            instanceToDirtyAttributeNames.size(), flushStatementBatchCount);
+        statementBatchCount += flushStatementBatchCount;
+        flushedInstanceCount += instanceToDirtyAttributeNames.size();
+        clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Instances written: %d, Statement batches: %d, Rows written: %d",
+            flushedInstanceCount, statementBatchCount, writtenRowCount);
+    }
+
+    private void addStatements(
+        GKInstance instance, Set<String> dirtyAttributeNames,
+        Map<Phase, Map<String, List<List<Object>>>> statementToParameterLists) throws Exception {
+
+        // Single-valued attributes grouped by the table (class) declaring them
+        Map<String, List<SchemaAttribute>> tableToSingleValuedAttributes = new TreeMap<>();
+        for (String attributeName : dirtyAttributeNames) {
+            SchemaAttribute attribute = instance.getSchemClass().getAttribute(attributeName);
+            if (attribute.isMultiple()) {
+                addMultiValuedAttributeStatements(instance, attribute, statementToParameterLists);
+            } else {
+                tableToSingleValuedAttributes
+                    .computeIfAbsent(attribute.getOrigin().getName(), k -> new ArrayList<>())
+                    .add(attribute);
+            }
+        }
+
+        for (Map.Entry<String, List<SchemaAttribute>> entry : tableToSingleValuedAttributes.entrySet()) {
+            StringJoiner assignments = new StringJoiner(", ");
+            List<Object> parameters = new ArrayList<>();
+            for (SchemaAttribute attribute : entry.getValue()) {
+                Object value = instance.getAttributeValue(attribute);
+                assignments.add(attribute.getName() + "=?");
+                parameters.add(getColumnValue(value));
+                if (attribute.isInstanceTypeAttribute()) {
+                    assignments.add(attribute.getName() + "_class=?");
+                    parameters.add(value != null ? ((GKInstance) value).getSchemClass().getName() : null);
+                }
+            }
+            parameters.add(instance.getDBID());
+
+            addStatement(
+                statementToParameterLists, Phase.WRITE,
+                "UPDATE " + entry.getKey() + " SET " + assignments + " WHERE DB_ID=?", parameters
+            );
+        }
+    }
+
+    private void addMultiValuedAttributeStatements(
+        GKInstance instance, SchemaAttribute attribute,
+        Map<Phase, Map<String, List<List<Object>>>> statementToParameterLists) throws Exception {
+
+        String table = attribute.getOrigin().getName() + "_2_" + attribute.getName();
+        String rankColumn = attribute.getName() + "_rank";
+        List<?> values = safeList(instance.getAttributeValuesList(attribute));
+        List<?> persistedValues = getPersistedValues(instance, attribute.getName());
+
+        int firstChangedRank = 0;
+        int unchangedSuffixLength = 0;
+        if (persistedValues == null) {
+            addStatement(
+                statementToParameterLists, Phase.REMOVE,
+                "DELETE FROM " + table + " WHERE DB_ID=?", List.of(instance.getDBID())
+            );
+        } else {
+            int maxUnchangedLength = Math.min(values.size(), persistedValues.size());
+            while (firstChangedRank < maxUnchangedLength &&
+                Objects.equals(values.get(firstChangedRank), persistedValues.get(firstChangedRank))) {
+                firstChangedRank++;
+            }
+            while (firstChangedRank + unchangedSuffixLength < maxUnchangedLength &&
+                Objects.equals(
+                    values.get(values.size() - 1 - unchangedSuffixLength),
+                    persistedValues.get(persistedValues.size() - 1 - unchangedSuffixLength))) {
+                unchangedSuffixLength++;
+            }
+
+            int persistedSuffixStart = persistedValues.size() - unchangedSuffixLength;
+            if (persistedSuffixStart > firstChangedRank) {
+                addStatement(
+                    statementToParameterLists, Phase.REMOVE,
+                    "DELETE FROM " + table + " WHERE DB_ID=? AND " + rankColumn + ">=? AND " + rankColumn + "<?",
+                    List.of(instance.getDBID(), firstChangedRank, persistedSuffixStart)
+                );
+            }
+            int rankShift = values.size() - persistedValues.size();
+            if (rankShift != 0 && unchangedSuffixLength > 0) {
+                addStatement(
+                    statementToParameterLists, Phase.SHIFT,
+                    "UPDATE " + table + " SET " + rankColumn + "=" + rankColumn + "+? WHERE DB_ID=? AND " +
+                        rankColumn + ">=?",
+                    List.of(rankShift, instance.getDBID(), persistedSuffixStart)
+                );
+            }
+        }
+
+        String insertStatement = "INSERT INTO " + table + " SET DB_ID=?, " +
+            rankColumn + "=?, " + attribute.getName() + "=?" +
+            (attribute.isInstanceTypeAttribute() ? ", " + attribute.getName() + "_class=?" : "");
+        for (int rank = firstChangedRank; rank < values.size() - unchangedSuffixLength; rank++) {
+            Object value = values.get(rank);
+            List<Object> parameters = new ArrayList<>(Arrays.asList(instance.getDBID(), rank, getColumnValue(value)));
+            if (attribute.isInstanceTypeAttribute()) {
+                parameters.add(((GKInstance) value).getSchemClass().getName());
+            }
+            addStatement(statementToParameterLists, Phase.WRITE, insertStatement, parameters);
+        }
+    }
+
+    private static void addStatement(
+        Map<Phase, Map<String, List<List<Object>>>> statementToParameterLists, Phase phase, String statement,
+        List<Object> parameters) {
+
+        statementToParameterLists.get(phase).computeIfAbsent(statement, k -> new ArrayList<>()).add(parameters);
+    }
+
+    /**
+     * @return Value as stored in its column: the DB_ID for an instance (storing the instance first if it is new)
+     * and the upper-case name for a boolean, as MySQLAdaptor stores them
+     */
+    private Object getColumnValue(Object value) throws Exception {
+        if (value instanceof GKInstance) {
+            GKInstance instanceValue = (GKInstance) value;
+            if (instanceValue.getDBID() == null) {
+                dbAdaptor.storeInstance(instanceValue);
+            }
+            return instanceValue.getDBID();
+        }
+        if (value instanceof Boolean) {
+            return value.toString().toUpperCase(Locale.ROOT);
+        }
+        return value;
+    }
+
+    private static List<?> safeList(List<?> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+}
@@ -0,0 +1,77 @@
+package org.reactome.reports;
+
+import org.gk.model.GKInstance;
+import org.gk.model.ReactomeJavaConstants;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creators (authors) of the creating InstanceEdits of reported instances, by InstanceEdit DB_ID, and the rendered name
+ * of each creator, so that a creator shared by many reported instances is read and rendered once.
+ */
+public class CreatorCache {
+    private final Map<Long, Optional<GKInstance>> instanceEditDbIdToCreator;
+    private final Map<Long, String> creatorDbIdToName;
+
+    public CreatorCache() {
+        this.instanceEditDbIdToCreator = new ConcurrentHashMap<>();
+        this.creatorDbIdToName = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * As Utils.getCreator, reading the author of each creating InstanceEdit only once.
+     */
+    public GKInstance getCreator(GKInstance inst) throws Exception {
+        GKInstance createdInstanceEdit = (GKInstance) inst.getAttributeValue(ReactomeJavaConstants.created);
+        if (createdInstanceEdit == null) {
+            return null;
+        }
+
+        Long createdInstanceEditDbId = createdInstanceEdit.getDBID();
+        Optional<GKInstance> cachedCreator =
+            createdInstanceEditDbId != null ? instanceEditDbIdToCreator.get(createdInstanceEditDbId) : null;
+        if (cachedCreator != null) {
+            return cachedCreator.orElse(null);
+        }
+
+        GKInstance creator = (GKInstance) createdInstanceEdit.getAttributeValue(ReactomeJavaConstants.author);
+        if (createdInstanceEditDbId != null) {
+            cacheCreator(createdInstanceEditDbId, creator);
+        }
+        return creator;
+    }
+
+    /**
+     * As Utils.getCreatorName, rendering each creator only once.
+     */
+    public String getCreatorName(GKInstance creator) {
+        if (creator == null || creator.getDBID() == null) {
+            return Utils.getCreatorName(creator);
+        }
+        return creatorDbIdToName.computeIfAbsent(creator.getDBID(), creatorDbId -> Utils.getCreatorName(creator));
+    }
+
+    /**
+     * Records the creator of an InstanceEdit, e.g. when creators are loaded in bulk, so it is not read again.
+     *
+     * @param instanceEditDbId DB_ID of the creating InstanceEdit
+     * @param creator Author of the InstanceEdit, or null if it has none
+     */
+    public void cacheCreator(long instanceEditDbId, GKInstance creator) {
+        instanceEditDbIdToCreator.put(instanceEditDbId, Optional.ofNullable(creator));
+    }
+
+    /**
+     * @return Creator recorded for the InstanceEdit, or null if it has none or none was recorded
+     */
+    public GKInstance getCachedCreator(long instanceEditDbId) {
+        Optional<GKInstance> cachedCreator = instanceEditDbIdToCreator.get(instanceEditDbId);
+        return cachedCreator != null ? cachedCreator.orElse(null) : null;
+    }
+
+    public boolean isCreatorCached(long instanceEditDbId) {
+        return instanceEditDbIdToCreator.containsKey(instanceEditDbId);
+    }
+}
@@ -10,7 +10,8 @@ public class FailedChEBILookupReporter implements Reportable {
         return String.join("\t",
         "Reference Molecule DbId",
             "Reference Molecule Creator",
-            "Reference Molecule Display Name"
+            "Reference Molecule Display Name",
+            "Failure Reason"
         );
     }
 
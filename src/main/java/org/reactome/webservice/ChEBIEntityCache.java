@@ -0,0 +1,242 @@
+package org.reactome.webservice;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.reactome.model.ChEBIEntity;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persistent cache of ChEBI lookups keyed by requested ChEBI identifier.  Both found entities and "does not exist"
+ * results are cached, each with the time it was fetched; entries older than the time-to-live are treated as misses
+ * so they are re-requested from ChEBI.
+ *
+ * The cache file holds one JSON object per line.  New results are appended (and flushed) as each batch arrives, so
+ * a run that fails part way through leaves everything fetched so far for the rerun.  Later lines for an identifier
+ * replace earlier ones when the file is loaded, and close() rewrites the file with only the current, unexpired
+ * entries.
+ */
+public class ChEBIEntityCache implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ChEBIEntityCache.class);
+
+    private final Path cacheFile;
+    private final Duration timeToLive;
+    private final Clock clock;
+
+    private final Map<String, CacheEntry> chEBIIdentifierToCacheEntry;
+    private BufferedWriter cacheFileWriter;
+
+    private long hitCount;
+    private long missCount;
+    private long expiredCount;
+
+    public ChEBIEntityCache(Path cacheFile, Duration timeToLive) throws IOException {
+        this(cacheFile, timeToLive, Clock.systemUTC());
+    }
+
+    ChEBIEntityCache(Path cacheFile, Duration timeToLive, Clock clock) throws IOException {
+        this.cacheFile = cacheFile;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.chEBIIdentifierToCacheEntry = new HashMap<>();
+
+        load();
+    }
+
+    /**
+     * Returns the unexpired cached results for the requested identifiers, counting each identifier as a hit, a miss
+     * (never cached) or expired (cached too long ago, so it needs to be revalidated against ChEBI).
+     *
+     * @param chEBIIdentifiers Identifiers about to be looked up
+     * @return Map of each identifier with a fresh cache entry to its cached entity (empty if it does not exist)
+     */
+    public synchronized Map<String, Optional<ChEBIEntity>> getFreshEntries(Collection<String> chEBIIdentifiers) {
+        Instant now = clock.instant();
+
+        Map<String, Optional<ChEBIEntity>> freshEntries = new HashMap<>();
+        for (String chEBIIdentifier : chEBIIdentifiers) {
+            CacheEntry cacheEntry = chEBIIdentifierToCacheEntry.get(chEBIIdentifier);
+            if (cacheEntry == null) {
+                missCount++;
+            } else if (cacheEntry.isExpired(now, timeToLive)) {
+                expiredCount++;
+            } else {
+                hitCount++;
+                freshEntries.put(chEBIIdentifier, cacheEntry.getChEBIEntity());
+            }
+        }
+        return freshEntries;
+    }
+
+    /**
+     * Records freshly fetched results and appends them to the cache file.
+     *
+     * @param chEBIIdentifierToChEBIEntity Map of each requested identifier to its entity (empty if it does not exist)
+     * @throws IOException Thrown if the results cannot be written to the cache file
+     */
+    public synchronized void put(Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity) throws IOException {
+        Instant now = clock.instant();
+        for (Map.Entry<String, Optional<ChEBIEntity>> entry : chEBIIdentifierToChEBIEntity.entrySet()) {
+            CacheEntry cacheEntry = new CacheEntry(entry.getValue(), now);
+            chEBIIdentifierToCacheEntry.put(entry.getKey(), cacheEntry);
+            getCacheFileWriter().write(cacheEntry.toJSON(entry.getKey()).toString());
+            getCacheFileWriter().newLine();
+        }
+        getCacheFileWriter().flush();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized double getHitRate() {
+        long lookupCount = hitCount + missCount + expiredCount;
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Hits: %d, Misses: %d, Expired: %d, Hit rate: %.1f%%",
+            hitCount, missCount, expiredCount, getHitRate() * 100);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        logger.info("Closing ChEBI entity cache - {}", this);
+        if (cacheFileWriter != null) {
+            cacheFileWriter.close();
+            cacheFileWriter = null;
+        }
+        compact();
+    }
+
+    private void load() throws IOException {
+        if (Files.notExists(cacheFile)) {
+            return;
+        }
+
+        int lineNumber = 0;
+        try (BufferedReader cacheFileReader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = cacheFileReader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    JSONObject cacheEntryJSON = new JSONObject(line);
+                    chEBIIdentifierToCacheEntry.put(cacheEntryJSON.getString("id"), CacheEntry.fromJSON(cacheEntryJSON));
+                } catch (JSONException e) {
+                    // A partially written last line from an interrupted run is expected; skip anything unreadable
+                    logger.warn("Skipping unreadable line {} of ChEBI cache file {}", lineNumber, cacheFile);
+                }
+            }
+        }
+        logger.info("Loaded {} cached ChEBI lookups from {}", chEBIIdentifierToCacheEntry.size(), cacheFile);
+    }
+
+    private void compact() throws IOException {
+        Instant now = clock.instant();
+        createParentDirectories();
+
+        Path compactedCacheFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (BufferedWriter compactedCacheFileWriter =
+                 Files.newBufferedWriter(compactedCacheFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, CacheEntry> entry : chEBIIdentifierToCacheEntry.entrySet()) {
+                if (entry.getValue().isExpired(now, timeToLive)) {
+                    continue;
+                }
+                compactedCacheFileWriter.write(entry.getValue().toJSON(entry.getKey()).toString());
+                compactedCacheFileWriter.newLine();
+            }
+        }
+        Files.move(compactedCacheFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private BufferedWriter getCacheFileWriter() throws IOException {
+        if (cacheFileWriter == null) {
+            createParentDirectories();
+            cacheFileWriter = Files.newBufferedWriter(
+                cacheFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+        }
+        return cacheFileWriter;
+    }
+
+    private void createParentDirectories() throws IOException {
+        Path cacheDirectory = cacheFile.toAbsolutePath().getParent();
+        if (cacheDirectory != null && Files.notExists(cacheDirectory)) {
+            Files.createDirectories(cacheDirectory);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Optional<ChEBIEntity> chEBIEntity;
+        private final Instant fetchedAt;
+
+        CacheEntry(Optional<ChEBIEntity> chEBIEntity, Instant fetchedAt) {
+            this.chEBIEntity = chEBIEntity;
+            this.fetchedAt = fetchedAt;
+        }
+
+        static CacheEntry fromJSON(JSONObject cacheEntryJSON) {
+            Optional<ChEBIEntity> chEBIEntity = cacheEntryJSON.getBoolean("exists") ?
+                Optional.of(new ChEBIEntity(
+                    cacheEntryJSON.getString("chebi_accession"),
+                    cacheEntryJSON.getString("name"),
+                    cacheEntryJSON.optString("formula", "")
+                )) :
+                Optional.empty();
+
+            return new CacheEntry(chEBIEntity, Instant.ofEpochMilli(cacheEntryJSON.getLong("fetched")));
+        }
+
+        Optional<ChEBIEntity> getChEBIEntity() {
+            return chEBIEntity;
+        }
+
+        boolean isExpired(Instant now, Duration timeToLive) {
+            return fetchedAt.plus(timeToLive).isBefore(now);
+        }
+
+        JSONObject toJSON(String chEBIIdentifier) {
+            JSONObject cacheEntryJSON = new JSONObject()
+                .put("id", chEBIIdentifier)
+                .put("exists", chEBIEntity.isPresent())
+                .put("fetched", fetchedAt.toEpochMilli());
+
+            chEBIEntity.ifPresent(entity -> cacheEntryJSON
+                .put("chebi_accession", entity.getChEBIId())
+                .put("name", entity.getName())
+                .put("formula", entity.getFormula())
+            );
+            return cacheEntryJSON;
+        }
+    }
+}
@@ -1,26 +1,66 @@
 package org.reactome.webservice;
 
+import com.google.common.collect.ListMultimap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.gk.model.GKInstance;
 import org.json.JSONObject;
 import org.reactome.Utils;
 import org.reactome.model.ChEBIEntity;
+import org.reactome.webservice.helpers.AdaptiveBatchSizer;
 import org.reactome.webservice.helpers.ChEBIAPIClient;
 import org.reactome.webservice.helpers.ChEBIEntityParser;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
 public class ChEBIEntityRetriever {
+    private static final Logger logger = LogManager.getLogger(ChEBIEntityRetriever.class);
+
     private final ChEBIAPIClient chEBIAPIClient;
     private final ChEBIEntityParser chEBIEntityParser;
+    private final ChEBIEntityCache chEBIEntityCache;
+    // Entities looked up so far, so that an identifier is requested once per retriever even across calls
+    private final Map<String, Optional<ChEBIEntity>> lookedUpChEBIEntities;
+
+    private Map<GKInstance, String> failedLookups;
+    private Map<String, String> failedIdentifierLookups;
+
+    /**
+     * @param chEBIAPIClient Shared client used for all ChEBI requests; the caller owns and closes it
+     */
+    public ChEBIEntityRetriever(ChEBIAPIClient chEBIAPIClient) {
+        this(chEBIAPIClient, new ChEBIEntityParser(), null);
+    }
 
-    public ChEBIEntityRetriever() {
-        this(new ChEBIAPIClient(), new ChEBIEntityParser());
+    /**
+     * @param chEBIAPIClient Shared client used for all ChEBI requests; the caller owns and closes it
+     * @param chEBIEntityCache Cache consulted before, and filled after, each ChEBI request; the caller owns and
+     * closes it
+     */
+    public ChEBIEntityRetriever(ChEBIAPIClient chEBIAPIClient, ChEBIEntityCache chEBIEntityCache) {
+        this(chEBIAPIClient, new ChEBIEntityParser(), chEBIEntityCache);
     }
 
     ChEBIEntityRetriever(ChEBIAPIClient chEBIAPIClient, ChEBIEntityParser chEBIEntityParser) {
+        this(chEBIAPIClient, chEBIEntityParser, null);
+    }
+
+    ChEBIEntityRetriever(
+        ChEBIAPIClient chEBIAPIClient, ChEBIEntityParser chEBIEntityParser, ChEBIEntityCache chEBIEntityCache) {
+
         this.chEBIAPIClient = chEBIAPIClient;
         this.chEBIEntityParser = chEBIEntityParser;
+        this.chEBIEntityCache = chEBIEntityCache;
+        this.lookedUpChEBIEntities = new ConcurrentHashMap<>();
+        this.failedLookups = Collections.emptyMap();
+        this.failedIdentifierLookups = Collections.emptyMap();
     }
 
     public Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(List<GKInstance> referenceMolecules)
@@ -30,25 +70,402 @@ public class ChEBIEntityRetriever {
             throw new IllegalStateException("No reference molecules for identifiers to query ChEBI");
         }
 
-        Map<String, GKInstance> chEBIIdentifierToReferenceMoleculeMap =
-            Utils.getIdentifierToReferenceMoleculeMap(referenceMolecules);
+        ListMultimap<String, GKInstance> chEBIIdentifierToReferenceMolecules =
+            Utils.getIdentifierToReferenceMoleculesMap(referenceMolecules);
+
+        JSONObject chEBIResponseJSON = chEBIAPIClient.fetchCompounds(chEBIIdentifierToReferenceMolecules.keySet());
+
+        return getChEBIEntities(
+            referenceMolecules, getChEBIEntities(chEBIIdentifierToReferenceMolecules.keySet(), chEBIResponseJSON)
+        );
+    }
+
+    /**
+     * Queries ChEBI for all reference molecules, splitting them into batches of at most batchSize identifiers and
+     * keeping up to maxBatchesInFlight batch requests outstanding at once.  Submission stops at the first failed
+     * batch and that failure is rethrown once the outstanding requests have settled.  If a cache was provided, only
+     * identifiers missing from it or expired in it are requested from ChEBI.
+     *
+     * Each distinct identifier is requested once, however many reference molecules share it and however many calls
+     * it is in, and its entity is mapped to all of them.  Failed lookups are not remembered.
+     *
+     * @param referenceMolecules Reference molecules to look up in ChEBI
+     * @param batchSize Maximum number of identifiers per ChEBI request
+     * @param maxBatchesInFlight Maximum number of ChEBI requests outstanding at any one time
+     * @return Map of each reference molecule to its ChEBI entity (empty if ChEBI has no such entity)
+     * @throws IOException Thrown if a batch could not be retrieved after all retries
+     * @throws InterruptedException Thrown if interrupted while waiting for a request slot or for results
+     */
+    public Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(
+        List<GKInstance> referenceMolecules, int batchSize, int maxBatchesInFlight)
+        throws IOException, InterruptedException {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        return getChEBIEntities(referenceMolecules, AdaptiveBatchSizer.fixed(batchSize), maxBatchesInFlight);
+    }
 
-        Set<String> chEBIIdentifiers = chEBIIdentifierToReferenceMoleculeMap.keySet();
-        JSONObject chEBIResponseJSON = chEBIAPIClient.fetchCompounds(chEBIIdentifiers);
+    /**
+     * As getChEBIEntities with a fixed batch size, but each batch takes its size from the batch sizer when it is
+     * submitted, and the outcome of every request attempt is reported back to the batch sizer.
+     *
+     * @param referenceMolecules Reference molecules to look up in ChEBI
+     * @param batchSizer Chooses the number of identifiers per ChEBI request
+     * @param maxBatchesInFlight Maximum number of ChEBI requests outstanding at any one time
+     * @return Map of each reference molecule to its ChEBI entity (empty if ChEBI has no such entity)
+     * @throws IOException Thrown if a batch could not be retrieved after all retries
+     * @throws InterruptedException Thrown if interrupted while waiting for a request slot or for results
+     */
+    public Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(
+        List<GKInstance> referenceMolecules, AdaptiveBatchSizer batchSizer, int maxBatchesInFlight)
+        throws IOException, InterruptedException {
+
+        return getChEBIEntities(referenceMolecules, batchSizer, maxBatchesInFlight, 0);
+    }
+
+    /**
+     * As getChEBIEntities without recovery, except that a batch which still fails after all retries (including one
+     * answered with a non-retryable error) is split in half and each half requested again, recursively, until the
+     * failing identifiers are isolated.  Those reference molecules are mapped to an empty Optional and their failure
+     * reasons are available from getFailedLookups(); every other reference molecule is looked up as usual.  If more
+     * than maxFailedIdentifiers identifiers fail, the problem is taken to be ChEBI rather than the identifiers and
+     * the failure is rethrown.
+     *
+     * @param referenceMolecules Reference molecules to look up in ChEBI
+     * @param batchSizer Chooses the number of identifiers per ChEBI request
+     * @param maxBatchesInFlight Maximum number of ChEBI requests outstanding at any one time
+     * @param maxFailedIdentifiers Maximum number of identifiers which may fail before giving up; zero or less
+     * disables recovery so that the first failed batch is rethrown
+     * @return Map of each reference molecule to its ChEBI entity (empty if ChEBI has no such entity or the lookup
+     * failed)
+     * @throws IOException Thrown if a batch could not be retrieved after all retries and could not be recovered
+     * @throws InterruptedException Thrown if interrupted while waiting for a request slot or for results
+     */
+    public Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(
+        List<GKInstance> referenceMolecules, AdaptiveBatchSizer batchSizer, int maxBatchesInFlight,
+        int maxFailedIdentifiers) throws IOException, InterruptedException {
+
+        if (referenceMolecules == null || referenceMolecules.isEmpty()) {
+            throw new IllegalStateException("No reference molecules for identifiers to query ChEBI");
+        }
+        if (maxBatchesInFlight < 1) {
+            throw new IllegalArgumentException("Batches in flight must be positive: " + maxBatchesInFlight);
+        }
+
+        ListMultimap<String, GKInstance> chEBIIdentifierToReferenceMolecules =
+            Utils.getIdentifierToReferenceMoleculesMap(referenceMolecules);
+        if (chEBIIdentifierToReferenceMolecules.keySet().size() < referenceMolecules.size()) {
+            logger.info("{} reference molecules share {} distinct ChEBI identifiers",
+                referenceMolecules.size(), chEBIIdentifierToReferenceMolecules.keySet().size());
+        }
+
+        FailedLookupRecorder failedLookupRecorder = new FailedLookupRecorder(maxFailedIdentifiers);
+        Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity = fetchChEBIEntities(
+            chEBIIdentifierToReferenceMolecules.keySet(), batchSizer, maxBatchesInFlight, failedLookupRecorder
+        );
+
+        this.failedLookups = getFailedLookups(chEBIIdentifierToReferenceMolecules, failedLookupRecorder);
+        return getChEBIEntities(referenceMolecules, chEBIIdentifierToChEBIEntity);
+    }
+
+    /**
+     * As getChEBIEntities with recovery, but for bare identifiers rather than reference molecules, e.g. to look up
+     * the replacement identifiers ChEBI returned for obsolete ones.  Identifiers whose lookups failed are mapped to
+     * an empty Optional and their failure reasons are available from getFailedIdentifierLookups().
+     *
+     * @param chEBIIdentifiers ChEBI identifiers to look up
+     * @param batchSizer Chooses the number of identifiers per ChEBI request
+     * @param maxBatchesInFlight Maximum number of ChEBI requests outstanding at any one time
+     * @param maxFailedIdentifiers Maximum number of identifiers which may fail before giving up; zero or less
+     * disables recovery so that the first failed batch is rethrown
+     * @return Map of each identifier to its ChEBI entity (empty if ChEBI has no such entity or the lookup failed)
+     * @throws IOException Thrown if a batch could not be retrieved after all retries and could not be recovered
+     * @throws InterruptedException Thrown if interrupted while waiting for a request slot or for results
+     */
+    public Map<String, Optional<ChEBIEntity>> getChEBIEntitiesByIdentifier(
+        Collection<String> chEBIIdentifiers, AdaptiveBatchSizer batchSizer, int maxBatchesInFlight,
+        int maxFailedIdentifiers) throws IOException, InterruptedException {
+
+        if (maxBatchesInFlight < 1) {
+            throw new IllegalArgumentException("Batches in flight must be positive: " + maxBatchesInFlight);
+        }
+
+        FailedLookupRecorder failedLookupRecorder = new FailedLookupRecorder(maxFailedIdentifiers);
+        Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity = fetchChEBIEntities(
+            new LinkedHashSet<>(chEBIIdentifiers), batchSizer, maxBatchesInFlight, failedLookupRecorder
+        );
+
+        this.failedIdentifierLookups = new HashMap<>(failedLookupRecorder.getFailureReasons());
+        return chEBIIdentifierToChEBIEntity;
+    }
+
+    /**
+     * @return Reason for each reference molecule whose lookup failed in the most recent call to getChEBIEntities
+     * with recovery enabled
+     */
+    public Map<GKInstance, String> getFailedLookups() {
+        return Collections.unmodifiableMap(failedLookups);
+    }
+
+    /**
+     * @return Reason for each identifier whose lookup failed in the most recent call to getChEBIEntitiesByIdentifier
+     */
+    public Map<String, String> getFailedIdentifierLookups() {
+        return Collections.unmodifiableMap(failedIdentifierLookups);
+    }
+
+    private Map<String, Optional<ChEBIEntity>> fetchChEBIEntities(
+        Set<String> chEBIIdentifiers, AdaptiveBatchSizer batchSizer, int maxBatchesInFlight,
+        FailedLookupRecorder failedLookupRecorder) throws IOException, InterruptedException {
+
+        Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity = new HashMap<>();
+        List<String> chEBIIdentifiersToFetch =
+            getChEBIIdentifiersToFetch(chEBIIdentifiers, chEBIIdentifierToChEBIEntity);
+
+        Semaphore inFlightBatches = new Semaphore(maxBatchesInFlight);
+        List<CompletableFuture<Map<String, Optional<ChEBIEntity>>>> batchFutures = new ArrayList<>();
+        int batchStart = 0;
+        while (batchStart < chEBIIdentifiersToFetch.size()) {
+            if (batchFutures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                break;
+            }
+
+            inFlightBatches.acquire();
+            CompletableFuture<Map<String, Optional<ChEBIEntity>>> batchFuture;
+            try {
+                // Sized only once a slot is free, so responses that arrived while waiting are taken into account
+                int batchEnd = Math.min(chEBIIdentifiersToFetch.size(), batchStart + batchSizer.getBatchSize());
+                List<String> chEBIIdentifierBatch = chEBIIdentifiersToFetch.subList(batchStart, batchEnd);
+                batchStart = batchEnd;
+
+                batchFuture = fetchBatch(chEBIIdentifierBatch, batchSizer, failedLookupRecorder);
+            } catch (RuntimeException e) {
+                inFlightBatches.release();
+                throw e;
+            }
+            batchFuture.whenComplete((result, throwable) -> inFlightBatches.release());
+            batchFutures.add(batchFuture);
+        }
+
+        for (CompletableFuture<Map<String, Optional<ChEBIEntity>>> batchFuture : batchFutures) {
+            chEBIIdentifierToChEBIEntity.putAll(getOrRethrow(batchFuture));
+        }
+        return chEBIIdentifierToChEBIEntity;
+    }
+
+    private CompletableFuture<Map<String, Optional<ChEBIEntity>>> fetchBatch(
+        List<String> chEBIIdentifierBatch, AdaptiveBatchSizer batchSizer, FailedLookupRecorder failedLookupRecorder) {
+
+        return chEBIAPIClient
+            .fetchChEBIEntitiesAsync(new LinkedHashSet<>(chEBIIdentifierBatch), chEBIEntityParser, batchSizer)
+            .thenApply(chEBIIdentifierToChEBIEntity -> {
+                checkAllIdentifiersReturned(chEBIIdentifierBatch, chEBIIdentifierToChEBIEntity);
+                cacheChEBIEntities(chEBIIdentifierToChEBIEntity);
+                lookedUpChEBIEntities.putAll(chEBIIdentifierToChEBIEntity);
+                return chEBIIdentifierToChEBIEntity;
+            })
+            .handle((chEBIIdentifierToChEBIEntity, throwable) -> {
+                if (throwable == null) {
+                    return CompletableFuture.completedFuture(chEBIIdentifierToChEBIEntity);
+                }
+                return recoverBatch(chEBIIdentifierBatch, unwrap(throwable), batchSizer, failedLookupRecorder);
+            })
+            .thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Map<String, Optional<ChEBIEntity>>> recoverBatch(
+        List<String> chEBIIdentifierBatch, Throwable failure, AdaptiveBatchSizer batchSizer,
+        FailedLookupRecorder failedLookupRecorder) {
+
+        if (!failedLookupRecorder.isRecoverable(failure)) {
+            return CompletableFuture.failedFuture(failure);
+        }
+
+        if (chEBIIdentifierBatch.size() == 1) {
+            String chEBIIdentifier = chEBIIdentifierBatch.get(0);
+            if (!failedLookupRecorder.recordFailure(chEBIIdentifier, failure)) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            Map<String, Optional<ChEBIEntity>> failedChEBIEntity = new HashMap<>();
+            failedChEBIEntity.put(chEBIIdentifier, Optional.empty());
+            return CompletableFuture.completedFuture(failedChEBIEntity);
+        }
+
+        logger.warn("ChEBI batch of {} identifiers failed ({}) - splitting it to isolate the failing identifiers",
+            chEBIIdentifierBatch.size(), failure.getMessage());
+        int middle = chEBIIdentifierBatch.size() / 2;
+        // The halves are sent one after the other, as the split batch still holds just one in-flight slot
+        return fetchBatch(chEBIIdentifierBatch.subList(0, middle), batchSizer, failedLookupRecorder)
+            .thenCompose(firstHalfChEBIEntities -> fetchBatch(
+                chEBIIdentifierBatch.subList(middle, chEBIIdentifierBatch.size()), batchSizer, failedLookupRecorder
+            ).thenApply(secondHalfChEBIEntities -> {
+                Map<String, Optional<ChEBIEntity>> chEBIEntities = new HashMap<>(firstHalfChEBIEntities);
+                chEBIEntities.putAll(secondHalfChEBIEntities);
+                return chEBIEntities;
+            }));
+    }
+
+    private List<String> getChEBIIdentifiersToFetch(
+        Set<String> chEBIIdentifiers, Map<String, Optional<ChEBIEntity>> cachedChEBIEntities) {
+
+        List<String> chEBIIdentifiersNotLookedUp = new ArrayList<>();
+        for (String chEBIIdentifier : chEBIIdentifiers) {
+            Optional<ChEBIEntity> lookedUpChEBIEntity = lookedUpChEBIEntities.get(chEBIIdentifier);
+            if (lookedUpChEBIEntity != null) {
+                cachedChEBIEntities.put(chEBIIdentifier, lookedUpChEBIEntity);
+            } else {
+                chEBIIdentifiersNotLookedUp.add(chEBIIdentifier);
+            }
+        }
+        if (chEBIEntityCache == null) {
+            return chEBIIdentifiersNotLookedUp;
+        }
+
+        Map<String, Optional<ChEBIEntity>> freshCacheEntries =
+            chEBIEntityCache.getFreshEntries(chEBIIdentifiersNotLookedUp);
+        lookedUpChEBIEntities.putAll(freshCacheEntries);
+        cachedChEBIEntities.putAll(freshCacheEntries);
+        return chEBIIdentifiersNotLookedUp.stream()
+            .filter(chEBIIdentifier -> !cachedChEBIEntities.containsKey(chEBIIdentifier))
+            .collect(Collectors.toList());
+    }
+
+    private void cacheChEBIEntities(Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity) {
+        if (chEBIEntityCache == null) {
+            return;
+        }
+
+        try {
+            chEBIEntityCache.put(chEBIIdentifierToChEBIEntity);
+        } catch (IOException e) {
+            // Unchecked so that a cache failure is not mistaken for a failed ChEBI request and recovered from
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkAllIdentifiersReturned(
+        List<String> chEBIIdentifiers, Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity) {
 
-        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new HashMap<>();
         for (String chEBIIdentifier : chEBIIdentifiers) {
-            GKInstance referenceMolecule = chEBIIdentifierToReferenceMoleculeMap.get(chEBIIdentifier);
+            if (!chEBIIdentifierToChEBIEntity.containsKey(chEBIIdentifier)) {
+                throw new IllegalStateException("ChEBI response did not include identifier " + chEBIIdentifier);
+            }
+        }
+    }
+
+    /**
+     * Fans the entity looked up for each identifier out to every reference molecule carrying that identifier.
+     */
+    private Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(
+        List<GKInstance> referenceMolecules, Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity) {
+
+        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            chEBIEntities.put(
+                referenceMolecule,
+                chEBIIdentifierToChEBIEntity.get(Utils.getReferenceMoleculeIdentifier(referenceMolecule))
+            );
+        }
+        return chEBIEntities;
+    }
+
+    private Map<GKInstance, String> getFailedLookups(
+        ListMultimap<String, GKInstance> chEBIIdentifierToReferenceMolecules,
+        FailedLookupRecorder failedLookupRecorder) {
 
+        Map<GKInstance, String> failedLookups = new HashMap<>();
+        failedLookupRecorder.getFailureReasons().forEach((chEBIIdentifier, failureReason) -> {
+            for (GKInstance referenceMolecule : chEBIIdentifierToReferenceMolecules.get(chEBIIdentifier)) {
+                failedLookups.put(referenceMolecule, failureReason);
+            }
+        });
+        return failedLookups;
+    }
+
+    private Map<String, Optional<ChEBIEntity>> getChEBIEntities(
+        Set<String> chEBIIdentifiers, JSONObject chEBIResponseJSON) {
+
+        Map<String, Optional<ChEBIEntity>> chEBIIdentifierToChEBIEntity = new HashMap<>();
+        for (String chEBIIdentifier : chEBIIdentifiers) {
             JSONObject chEBIIdentifierJSON = chEBIResponseJSON.getJSONObject(chEBIIdentifier);
             if (chEBIIdentifierJSON.getBoolean("exists")) {
-                chEBIEntities.put(referenceMolecule, Optional.of(
+                chEBIIdentifierToChEBIEntity.put(chEBIIdentifier, Optional.of(
                     chEBIEntityParser.parse(chEBIIdentifierJSON.getJSONObject("data"))
                 ));
             } else {
-                chEBIEntities.put(referenceMolecule, Optional.empty());
+                chEBIIdentifierToChEBIEntity.put(chEBIIdentifier, Optional.empty());
             }
         }
-        return chEBIEntities;
+        return chEBIIdentifierToChEBIEntity;
+    }
+
+    private <T> T getOrRethrow(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * Collects the identifiers whose lookups failed during one call to getChEBIEntities, up to a limit.
+     */
+    private static class FailedLookupRecorder {
+        private final int maxFailedIdentifiers;
+        private final Map<String, String> failureReasons;
+
+        FailedLookupRecorder(int maxFailedIdentifiers) {
+            this.maxFailedIdentifiers = maxFailedIdentifiers;
+            this.failureReasons = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * @return true for failed ChEBI requests (retries exhausted or an unusable response), which could be
+         * caused by particular identifiers; false for anything else, or if recovery is disabled
+         */
+        boolean isRecoverable(Throwable failure) {
+            return maxFailedIdentifiers > 0 &&
+                (failure instanceof IOException || failure instanceof IllegalStateException);
+        }
+
+        /**
+         * @return false if recording this failure exceeds the limit, so the failure should be rethrown instead
+         */
+        synchronized boolean recordFailure(String chEBIIdentifier, Throwable failure) {
+            if (failureReasons.size() >= maxFailedIdentifiers) {
+                logger.error("More than {} ChEBI identifiers failed - giving up on recovering failed batches",
+                    maxFailedIdentifiers);
+                return false;
+            }
+
+            logger.warn("ChEBI lookup failed for identifier {}: {}", chEBIIdentifier, failure.getMessage());
+            failureReasons.put(chEBIIdentifier, String.valueOf(failure.getMessage()));
+            return true;
+        }
+
+        Map<String, String> getFailureReasons() {
+            return failureReasons;
+        }
     }
 }
@@ -0,0 +1,170 @@
+package org.reactome.webservice;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.gk.model.GKInstance;
+import org.reactome.Utils;
+import org.reactome.model.ChEBIEntity;
+import org.reactome.webservice.helpers.TabSeparatedFileReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Offline alternative to ChEBIEntityRetriever which answers lookups from ChEBI's bulk download files instead of the
+ * web service.  The compounds, chemical data and (optionally) names TSV files in the given directory, each either
+ * plain or gzip-compressed, are read once to build an in-memory index; no HTTP requests are made.
+ *
+ * Lookups follow the web service's semantics: a secondary identifier resolves to its primary compound (so the
+ * returned entity carries the primary identifier) and an identifier absent from the files yields an empty Optional.
+ */
+public class ChEBIFlatFileRetriever {
+    private static final Logger logger = LogManager.getLogger(ChEBIFlatFileRetriever.class);
+
+    private static final int MAX_PARENT_CHAIN_LENGTH = 10;
+
+    private final Map<String, CompoundRecord> chEBIIdentifierToCompound;
+    private final Map<String, String> chEBIIdentifierToFormula;
+
+    public ChEBIFlatFileRetriever(Path flatFileDirectory) throws IOException {
+        this(flatFileDirectory, new TabSeparatedFileReader());
+    }
+
+    ChEBIFlatFileRetriever(Path flatFileDirectory, TabSeparatedFileReader tabSeparatedFileReader) throws IOException {
+        this.chEBIIdentifierToCompound = new HashMap<>();
+        this.chEBIIdentifierToFormula = new HashMap<>();
+
+        loadCompounds(tabSeparatedFileReader, getFlatFile(flatFileDirectory, "compounds", true));
+        loadFormulae(tabSeparatedFileReader, getFlatFile(flatFileDirectory, "chemical_data", true));
+        Path namesFile = getFlatFile(flatFileDirectory, "names", false);
+        if (namesFile != null) {
+            loadMissingNames(tabSeparatedFileReader, namesFile);
+        }
+
+        logger.info("Indexed {} ChEBI compounds from flat files in {}", chEBIIdentifierToCompound.size(),
+            flatFileDirectory);
+    }
+
+    public Map<GKInstance, Optional<ChEBIEntity>> getChEBIEntities(List<GKInstance> referenceMolecules) {
+        if (referenceMolecules == null || referenceMolecules.isEmpty()) {
+            throw new IllegalStateException("No reference molecules for identifiers to query ChEBI");
+        }
+
+        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            chEBIEntities.put(
+                referenceMolecule, getChEBIEntity(Utils.getReferenceMoleculeIdentifier(referenceMolecule))
+            );
+        }
+        return chEBIEntities;
+    }
+
+    public Optional<ChEBIEntity> getChEBIEntity(String chEBIIdentifier) {
+        CompoundRecord compound = chEBIIdentifierToCompound.get(chEBIIdentifier);
+        for (int chainLength = 0; compound != null && compound.parentId != null; chainLength++) {
+            if (chainLength == MAX_PARENT_CHAIN_LENGTH) {
+                throw new IllegalStateException("Cyclic or overlong parent chain for ChEBI identifier " + chEBIIdentifier);
+            }
+            compound = chEBIIdentifierToCompound.get(compound.parentId);
+        }
+
+        if (compound == null || compound.name == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ChEBIEntity(
+            compound.id, compound.name, chEBIIdentifierToFormula.getOrDefault(compound.id, "")
+        ));
+    }
+
+    private void loadCompounds(TabSeparatedFileReader tabSeparatedFileReader, Path compoundsFile) throws IOException {
+        tabSeparatedFileReader.forEachRow(compoundsFile, (columns, row) -> {
+            String id = stripPrefix(columns.get(row, columns.indexOf("id")));
+            if (id == null) {
+                return;
+            }
+
+            String asciiName = columns.get(row, columns.indexOf("ascii_name"));
+            String name = asciiName != null ? asciiName : columns.get(row, columns.indexOf("name"));
+            String parentId = stripPrefix(columns.get(row, columns.indexOf("parent_id")));
+
+            chEBIIdentifierToCompound.put(id, new CompoundRecord(id, name, parentId));
+        });
+    }
+
+    private void loadFormulae(TabSeparatedFileReader tabSeparatedFileReader, Path chemicalDataFile) throws IOException {
+        tabSeparatedFileReader.forEachRow(chemicalDataFile, (columns, row) -> {
+            String compoundId = stripPrefix(columns.get(row, columns.indexOf("compound_id")));
+            String formula = getFormula(columns, row);
+            if (compoundId != null && formula != null) {
+                // The first formula listed for a compound is kept, as the web service reports a single formula
+                chEBIIdentifierToFormula.putIfAbsent(compoundId, formula);
+            }
+        });
+    }
+
+    private void loadMissingNames(TabSeparatedFileReader tabSeparatedFileReader, Path namesFile) throws IOException {
+        tabSeparatedFileReader.forEachRow(namesFile, (columns, row) -> {
+            CompoundRecord compound =
+                chEBIIdentifierToCompound.get(stripPrefix(columns.get(row, columns.indexOf("compound_id"))));
+            if (compound == null || compound.name != null) {
+                return;
+            }
+
+            String asciiName = columns.get(row, columns.indexOf("ascii_name"));
+            compound.name = asciiName != null ? asciiName : columns.get(row, columns.indexOf("name"));
+        });
+    }
+
+    private String getFormula(TabSeparatedFileReader.Columns columns, String[] row) {
+        // Current files have a formula column; legacy files have one row per TYPE with the value in CHEMICAL_DATA
+        int formulaColumnIndex = columns.indexOf("formula");
+        if (formulaColumnIndex >= 0) {
+            return columns.get(row, formulaColumnIndex);
+        }
+
+        String chemicalDataType = columns.get(row, columns.indexOf("type"));
+        return "FORMULA".equalsIgnoreCase(chemicalDataType) ?
+            columns.get(row, columns.indexOf("chemical_data")) :
+            null;
+    }
+
+    private static Path getFlatFile(Path flatFileDirectory, String fileBaseName, boolean required)
+        throws NoSuchFileException {
+
+        for (String extension : List.of(".tsv", ".tsv.gz")) {
+            Path flatFile = flatFileDirectory.resolve(fileBaseName + extension);
+            if (Files.isRegularFile(flatFile)) {
+                return flatFile;
+            }
+        }
+
+        if (required) {
+            throw new NoSuchFileException(flatFileDirectory.resolve(fileBaseName + ".tsv[.gz]").toString());
+        }
+        return null;
+    }
+
+    private static String stripPrefix(String chEBIIdentifier) {
+        return chEBIIdentifier != null ? chEBIIdentifier.replace("CHEBI:", "") : null;
+    }
+
+    private static class CompoundRecord {
+        private final String id;
+        private final String parentId;
+        private String name;
+
+        CompoundRecord(String id, String name, String parentId) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+        }
+    }
+}
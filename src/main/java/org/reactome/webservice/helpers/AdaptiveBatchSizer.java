@@ -0,0 +1,130 @@
+package org.reactome.webservice.helpers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+
+/**
+ * Chooses how many identifiers to send in each ChEBI request, adjusting the size from the outcome of every request
+ * attempt (additive increase, multiplicative decrease).  A full-sized batch answered within the target latency and
+ * response size grows the batch size by a fixed step; a slow or oversized response shrinks it by a quarter and a
+ * retryable status code (429, 408, 5xx) or a request that got no response halves it.  The size always stays within
+ * the configured bounds, and every change is logged.
+ *
+ * Batches larger than the current size were sent before it was last reduced, so their outcomes do not reduce it
+ * again for the same condition.  Likewise only a batch of exactly the current size can grow it, so the size grows
+ * at most one step per round of requests rather than once for every request in flight.
+ */
+public class AdaptiveBatchSizer implements RequestObserver {
+    private static final Logger logger = LogManager.getLogger(AdaptiveBatchSizer.class);
+
+    private static final double SLOW_RESPONSE_DECREASE_FACTOR = 0.75;
+    private static final double ERROR_DECREASE_FACTOR = 0.5;
+    private static final int INCREASE_STEP_DIVISOR = 10;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int increaseStep;
+    private final Duration targetLatency;
+    private final long maxResponseBytes;
+
+    private int batchSize;
+    private int smallestBatchSize;
+    private int largestBatchSize;
+    private int increaseCount;
+    private int decreaseCount;
+
+    /**
+     * @param initialBatchSize Batch size used for the first requests
+     * @param minBatchSize Smallest batch size the controller may shrink to
+     * @param maxBatchSize Largest batch size the controller may grow to
+     * @param targetLatency Responses slower than this shrink the batch size
+     * @param maxResponseBytes Responses larger than this shrink the batch size
+     */
+    public AdaptiveBatchSizer(
+        int initialBatchSize, int minBatchSize, int maxBatchSize, Duration targetLatency, long maxResponseBytes) {
+
+        if (minBatchSize < 1 || minBatchSize > initialBatchSize || initialBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Batch sizes must satisfy 1 <= min <= initial <= max: " +
+                minBatchSize + ", " + initialBatchSize + ", " + maxBatchSize);
+        }
+
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.increaseStep = Math.max(1, initialBatchSize / INCREASE_STEP_DIVISOR);
+        this.targetLatency = targetLatency;
+        this.maxResponseBytes = maxResponseBytes;
+
+        this.batchSize = initialBatchSize;
+        this.smallestBatchSize = initialBatchSize;
+        this.largestBatchSize = initialBatchSize;
+    }
+
+    /**
+     * @param batchSize Batch size to use for every request
+     * @return Sizer which never changes the batch size
+     */
+    public static AdaptiveBatchSizer fixed(int batchSize) {
+        return new AdaptiveBatchSizer(batchSize, batchSize, batchSize, Duration.ZERO, 0);
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public synchronized void onResponse(int identifierCount, int statusCode, Duration latency, long responseBytes) {
+        if (ChEBIAPIClient.isRetryableStatusCode(statusCode)) {
+            decrease(identifierCount, ERROR_DECREASE_FACTOR, "status code " + statusCode);
+        } else if (latency.compareTo(targetLatency) > 0) {
+            decrease(identifierCount, SLOW_RESPONSE_DECREASE_FACTOR, "response took " + latency.toMillis() + " ms");
+        } else if (responseBytes > maxResponseBytes) {
+            decrease(identifierCount, SLOW_RESPONSE_DECREASE_FACTOR, "response was " + responseBytes + " bytes");
+        } else if (statusCode == 200 && identifierCount == batchSize) {
+            increase(latency, responseBytes);
+        }
+    }
+
+    @Override
+    public synchronized void onFailure(int identifierCount, Duration latency, Throwable cause) {
+        decrease(
+            identifierCount, ERROR_DECREASE_FACTOR, "no response after " + latency.toMillis() + " ms (" + cause + ")"
+        );
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Current batch size: %d, Range used: %d-%d, Increases: %d, Decreases: %d",
+            batchSize, smallestBatchSize, largestBatchSize, increaseCount, decreaseCount);
+    }
+
+    private void increase(Duration latency, long responseBytes) {
+        int newBatchSize = Math.min(maxBatchSize, batchSize + increaseStep);
+        if (newBatchSize == batchSize) {
+            return;
+        }
+
+        logger.info("Increasing ChEBI batch size from {} to {} (response took {} ms, {} bytes)",
+            batchSize, newBatchSize, latency.toMillis(), responseBytes);
+        batchSize = newBatchSize;
+        largestBatchSize = Math.max(largestBatchSize, batchSize);
+        increaseCount++;
+    }
+
+    private void decrease(int identifierCount, double factor, String reason) {
+        if (identifierCount > batchSize) {
+            return;
+        }
+
+        int newBatchSize = Math.max(minBatchSize, (int) (batchSize * factor));
+        if (newBatchSize == batchSize) {
+            return;
+        }
+
+        logger.info("Decreasing ChEBI batch size from {} to {} ({})", batchSize, newBatchSize, reason);
+        batchSize = newBatchSize;
+        smallestBatchSize = Math.min(smallestBatchSize, batchSize);
+        decreaseCount++;
+    }
+}
@@ -4,35 +4,127 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.reactome.model.ChEBIEntity;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
 
-public class ChEBIAPIClient {
+/**
+ * Client for ChEBI's public compounds endpoint.  A single instance is meant to be shared for the whole run so
+ * that its HttpClient can keep connections to ChEBI alive between batches, and so that its RequestThrottle paces
+ * every batch together; close it once the run is finished.
+ */
+public class ChEBIAPIClient implements AutoCloseable {
     private static final String BASE_URL = "https://www.ebi.ac.uk/chebi/backend/api/public/compounds/";
 
     private static final int MAX_RETRIES = 3;
     private static final double BACKOFF_MULTIPLIER = 2.0;
     private static final long INITIAL_BACKOFF_MS = 1000;
 
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(120);
+
     private static final Logger logger = LogManager.getLogger(ChEBIAPIClient.class);
 
     private final HttpClient httpClient;
+    private final ExecutorService executorService;
+    private final Duration requestTimeout;
+    private final ConnectionStatistics connectionStatistics;
+    private final RequestThrottle requestThrottle;
 
     public ChEBIAPIClient() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, false);
+    }
+
+    /**
+     * Creates a client with its own connection pool and executor, both released by close().
+     *
+     * @param connectTimeout Maximum time to wait for a new connection to ChEBI to be established
+     * @param requestTimeout Maximum time to wait for a response to each request
+     * @param useHttp2 true to negotiate HTTP/2 so concurrent requests are multiplexed over one connection,
+     * false to use a pool of HTTP/1.1 keep-alive connections
+     */
+    public ChEBIAPIClient(Duration connectTimeout, Duration requestTimeout, boolean useHttp2) {
+        this(connectTimeout, requestTimeout, useHttp2, RequestThrottle.unlimited());
+    }
+
+    /**
+     * Creates a client with its own connection pool and executor, both released by close().
+     *
+     * @param connectTimeout Maximum time to wait for a new connection to ChEBI to be established
+     * @param requestTimeout Maximum time to wait for a response to each request
+     * @param useHttp2 true to negotiate HTTP/2 so concurrent requests are multiplexed over one connection,
+     * false to use a pool of HTTP/1.1 keep-alive connections
+     * @param requestThrottle Rate limit and circuit breaker applied to every request attempt, including retries
+     */
+    public ChEBIAPIClient(
+        Duration connectTimeout, Duration requestTimeout, boolean useHttp2, RequestThrottle requestThrottle) {
+
+        this.connectionStatistics = new ConnectionStatistics();
+        this.requestThrottle = requestThrottle;
+        this.executorService = Executors.newCachedThreadPool(getDaemonThreadFactory());
+        this.requestTimeout = requestTimeout;
         this.httpClient = HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
+            .version(useHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
             .followRedirects(HttpClient.Redirect.ALWAYS)
+            .connectTimeout(connectTimeout)
+            .sslContext(ConnectionCountingSSLContext.wrap(getDefaultSSLContext(), connectionStatistics))
+            .executor(executorService)
             .build();
     }
 
     // For testing
     ChEBIAPIClient(HttpClient httpClient) {
+        this(httpClient, RequestThrottle.unlimited());
+    }
+
+    // For testing
+    ChEBIAPIClient(HttpClient httpClient, RequestThrottle requestThrottle) {
         this.httpClient = httpClient;
+        this.executorService = null;
+        this.requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        this.connectionStatistics = new ConnectionStatistics();
+        this.requestThrottle = requestThrottle;
+    }
+
+    public ConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing ChEBI API client - {}; {}", connectionStatistics, requestThrottle);
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
     }
 
     public JSONObject fetchCompounds(Set<String> chEBIIdentifiers) throws IOException, InterruptedException {
@@ -54,37 +146,350 @@ public class ChEBIAPIClient {
                     throw e;
                 }
 
-                logger.warn("Attempt {} failed, retrying in {} ms", attemptCount, backoffTime, e);
-                Thread.sleep(backoffTime);
+                long retryDelay = getRetryDelay(e, backoffTime);
+                logger.warn("Attempt {} failed, retrying in {} ms", attemptCount, retryDelay, e);
+                Thread.sleep(retryDelay);
                 backoffTime = (long) (backoffTime * BACKOFF_MULTIPLIER);
             }
         }
     }
 
+    /**
+     * Non-blocking variant of fetchCompounds built on HttpClient.sendAsync.  The same retry policy applies, but
+     * backoff delays are scheduled rather than slept so the calling thread is free to keep other batches in flight.
+     *
+     * @param chEBIIdentifiers ChEBI identifiers to request in a single POST
+     * @return Future completing with the response JSON, or exceptionally with the final attempt's failure
+     */
+    public CompletableFuture<JSONObject> fetchCompoundsAsync(Set<String> chEBIIdentifiers) {
+        if (chEBIIdentifiers == null || chEBIIdentifiers.isEmpty()) {
+            throw new IllegalArgumentException("No identifiers to fetch from ChEBI");
+        }
+
+        return executeRequestAsync(
+            chEBIIdentifiers, HttpResponse.BodyHandlers.ofString(), this::getResponseJSON, RequestObserver.NONE,
+            1, INITIAL_BACKOFF_MS
+        );
+    }
+
+    /**
+     * Streaming variant of fetchCompoundsAsync.  The response body is decoded straight from the connection's
+     * input stream by the parser, so neither the body String nor a JSON tree of the whole response is built.
+     *
+     * @param chEBIIdentifiers ChEBI identifiers to request in a single POST
+     * @param chEBIEntityParser Parser used to decode the response stream
+     * @return Future completing with each requested identifier mapped to its entity (empty if it does not exist)
+     */
+    public CompletableFuture<Map<String, Optional<ChEBIEntity>>> fetchChEBIEntitiesAsync(
+        Set<String> chEBIIdentifiers, ChEBIEntityParser chEBIEntityParser) {
+
+        return fetchChEBIEntitiesAsync(chEBIIdentifiers, chEBIEntityParser, RequestObserver.NONE);
+    }
+
+    /**
+     * As fetchChEBIEntitiesAsync, additionally reporting the latency, response size and status code of every
+     * attempt (including retried ones) to the observer.
+     *
+     * @param chEBIIdentifiers ChEBI identifiers to request in a single POST
+     * @param chEBIEntityParser Parser used to decode the response stream
+     * @param requestObserver Receives the outcome of each request attempt
+     * @return Future completing with each requested identifier mapped to its entity (empty if it does not exist)
+     */
+    public CompletableFuture<Map<String, Optional<ChEBIEntity>>> fetchChEBIEntitiesAsync(
+        Set<String> chEBIIdentifiers, ChEBIEntityParser chEBIEntityParser, RequestObserver requestObserver) {
+
+        if (chEBIIdentifiers == null || chEBIIdentifiers.isEmpty()) {
+            throw new IllegalArgumentException("No identifiers to fetch from ChEBI");
+        }
+
+        return executeRequestAsync(
+            chEBIIdentifiers,
+            HttpResponse.BodyHandlers.ofInputStream(),
+            response -> getResponseChEBIEntities(response, chEBIEntityParser),
+            requestObserver,
+            1,
+            INITIAL_BACKOFF_MS
+        );
+    }
+
+    private <B, T> CompletableFuture<T> executeRequestAsync(
+        Set<String> chEBIIdentifiers, HttpResponse.BodyHandler<B> bodyHandler, ResponseReader<B, T> responseReader,
+        RequestObserver requestObserver, int attemptCount, long backoffTime) {
+
+        return requestThrottle.acquire(chEBIIdentifiers.size())
+            .thenCompose(ignored -> sendRequestAsync(chEBIIdentifiers, bodyHandler, responseReader, requestObserver))
+            .handle((result, throwable) -> {
+                Throwable cause = throwable != null ? unwrap(throwable) : null;
+                recordThrottleOutcome(cause);
+                if (cause == null) {
+                    return CompletableFuture.completedFuture(result);
+                }
+
+                if (!(cause instanceof IOException)) {
+                    return CompletableFuture.<T>failedFuture(cause);
+                }
+
+                if (attemptCount >= MAX_RETRIES) {
+                    logger.error("Failed to fetch compounds after {} attempts", MAX_RETRIES);
+                    return CompletableFuture.<T>failedFuture(cause);
+                }
+
+                long retryDelay = getRetryDelay(cause, backoffTime);
+                logger.warn("Attempt {} failed, retrying in {} ms", attemptCount, retryDelay, cause);
+                return CompletableFuture
+                    .supplyAsync(() -> null, CompletableFuture.delayedExecutor(retryDelay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> executeRequestAsync(
+                        chEBIIdentifiers, bodyHandler, responseReader, requestObserver,
+                        attemptCount + 1, (long) (backoffTime * BACKOFF_MULTIPLIER)
+                    ));
+            })
+            .thenCompose(future -> future);
+    }
+
+    private <B, T> CompletableFuture<T> sendRequestAsync(
+        Set<String> chEBIIdentifiers, HttpResponse.BodyHandler<B> bodyHandler, ResponseReader<B, T> responseReader,
+        RequestObserver requestObserver) {
+
+        connectionStatistics.recordRequest();
+        long requestStartTime = System.nanoTime();
+        AtomicLong responseBytes = new AtomicLong();
+        return httpClient.sendAsync(buildRequest(chEBIIdentifiers), countResponseBytes(bodyHandler, responseBytes))
+            .whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    requestObserver.onFailure(
+                        chEBIIdentifiers.size(), getElapsedTime(requestStartTime), unwrap(throwable)
+                    );
+                }
+            })
+            .thenApply(response -> {
+                try {
+                    T result = responseReader.read(response);
+                    requestObserver.onResponse(
+                        chEBIIdentifiers.size(), response.statusCode(), getElapsedTime(requestStartTime),
+                        responseBytes.get()
+                    );
+                    return result;
+                } catch (IOException e) {
+                    // A retryable status code is an answer from ChEBI; failing to read a 200 body is not
+                    if (response.statusCode() != 200) {
+                        requestObserver.onResponse(
+                            chEBIIdentifiers.size(), response.statusCode(), getElapsedTime(requestStartTime),
+                            responseBytes.get()
+                        );
+                    } else {
+                        requestObserver.onFailure(chEBIIdentifiers.size(), getElapsedTime(requestStartTime), e);
+                    }
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
     private JSONObject executeRequest(Set<String> chEBIIdentifiers) throws IOException, InterruptedException {
+        awaitThrottle(chEBIIdentifiers.size());
+        connectionStatistics.recordRequest();
+        try {
+            HttpResponse<String> response =
+                httpClient.send(buildRequest(chEBIIdentifiers), HttpResponse.BodyHandlers.ofString());
+
+            JSONObject responseJSON = getResponseJSON(response);
+            recordThrottleOutcome(null);
+            return responseJSON;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            recordThrottleOutcome(e);
+            throw e;
+        }
+    }
+
+    private void awaitThrottle(int identifierCount) throws InterruptedException {
+        try {
+            requestThrottle.acquire(identifierCount).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to acquire permission to send ChEBI request", e.getCause());
+        }
+    }
+
+    private void recordThrottleOutcome(Throwable failure) {
+        if (failure instanceof RetryableStatusCodeException) {
+            requestThrottle.recordFailure(((RetryableStatusCodeException) failure).getRetryAfter());
+        } else if (failure == null || failure instanceof RuntimeException) {
+            // Any other answer from ChEBI, even an error, shows it is reachable and not overloaded
+            requestThrottle.recordSuccess();
+        } else {
+            requestThrottle.recordFailure(null);
+        }
+    }
+
+    private static long getRetryDelay(Throwable failure, long backoffTime) {
+        if (failure instanceof RetryableStatusCodeException) {
+            Duration retryAfter = ((RetryableStatusCodeException) failure).getRetryAfter();
+            if (retryAfter != null) {
+                return Math.max(backoffTime, retryAfter.toMillis());
+            }
+        }
+        return backoffTime;
+    }
+
+    private HttpRequest buildRequest(Set<String> chEBIIdentifiers) {
         JSONObject payload = new JSONObject();
         payload.put("chebi_ids", new JSONArray(chEBIIdentifiers));
 
-        HttpRequest request = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
             .uri(URI.create(BASE_URL))
+            .timeout(requestTimeout)
             .header("Content-Type", "application/json")
             .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
             .build();
+    }
+
+    private JSONObject getResponseJSON(HttpResponse<String> response) throws IOException {
+        checkStatusCode(response);
+
+        return new JSONObject(response.body());
+    }
+
+    private Map<String, Optional<ChEBIEntity>> getResponseChEBIEntities(
+        HttpResponse<InputStream> response, ChEBIEntityParser chEBIEntityParser) throws IOException {
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        try (InputStream responseBody = response.body()) {
+            checkStatusCode(response);
 
+            Map<String, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+            chEBIEntityParser.parse(responseBody, chEBIEntities::put);
+            return chEBIEntities;
+        }
+    }
+
+    private void checkStatusCode(HttpResponse<?> response) throws IOException {
         if (isRetryableStatusCode(response.statusCode())) {
-            throw new IOException("Received retryable status code: " + response.statusCode());
+            throw new RetryableStatusCodeException(response.statusCode(), getRetryAfter(response));
         }
 
         if (response.statusCode() != 200) {
             throw new IllegalStateException("Unable to retrieve ChEBI entity/entities from RESTful API: " + response);
         }
+    }
 
-        return new JSONObject(response.body());
+    private static Duration getRetryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After").map(ChEBIAPIClient::parseRetryAfter).orElse(null);
+    }
+
+    /**
+     * @param retryAfter Retry-After header value, either a number of seconds or an HTTP date
+     * @return Time to wait before retrying, or null if the value cannot be parsed
+     */
+    static Duration parseRetryAfter(String retryAfter) {
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Instant retryTime =
+                    ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration retryDelay = Duration.between(Instant.now(), retryTime);
+                return retryDelay.isNegative() ? Duration.ZERO : retryDelay;
+            } catch (DateTimeParseException dateTimeParseException) {
+                logger.warn("Ignoring unparseable Retry-After header: {}", retryAfter);
+                return null;
+            }
+        }
+    }
+
+    private static <B> HttpResponse.BodyHandler<B> countResponseBytes(
+        HttpResponse.BodyHandler<B> bodyHandler, AtomicLong responseBytes) {
+
+        return responseInfo -> new ByteCountingBodySubscriber<>(bodyHandler.apply(responseInfo), responseBytes);
+    }
+
+    private static Duration getElapsedTime(long startTime) {
+        return Duration.ofNanos(System.nanoTime() - startTime);
+    }
+
+    private static SSLContext getDefaultSSLContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSL context available for ChEBI connections", e);
+        }
+    }
+
+    private static ThreadFactory getDaemonThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "chebi-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<B, T> {
+        T read(HttpResponse<B> response) throws IOException;
+    }
+
+    private static class RetryableStatusCodeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final Duration retryAfter;
+
+        RetryableStatusCodeException(int statusCode, Duration retryAfter) {
+            super("Received retryable status code: " + statusCode);
+            this.retryAfter = retryAfter;
+        }
+
+        Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * Passes the response body through to the wrapped subscriber, adding the size of each chunk received to a
+     * counter.  For streamed bodies the count is complete once the body has been read to the end.
+     */
+    private static class ByteCountingBodySubscriber<B> implements HttpResponse.BodySubscriber<B> {
+        private final HttpResponse.BodySubscriber<B> bodySubscriber;
+        private final AtomicLong responseBytes;
+
+        ByteCountingBodySubscriber(HttpResponse.BodySubscriber<B> bodySubscriber, AtomicLong responseBytes) {
+            this.bodySubscriber = bodySubscriber;
+            this.responseBytes = responseBytes;
+        }
+
+        @Override
+        public CompletionStage<B> getBody() {
+            return bodySubscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            bodySubscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> bodyChunks) {
+            for (ByteBuffer bodyChunk : bodyChunks) {
+                responseBytes.addAndGet(bodyChunk.remaining());
+            }
+            bodySubscriber.onNext(bodyChunks);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            bodySubscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            bodySubscriber.onComplete();
+        }
     }
 
-    private boolean isRetryableStatusCode(int statusCode) {
+    static boolean isRetryableStatusCode(int statusCode) {
         final int tooManyRequests = 429;
         final int requestTimeOut = 408;
         final int serverErrorLowerLimit = 500;
@@ -95,4 +500,4 @@ public class ChEBIAPIClient {
                statusCode == requestTimeOut ||
                (statusCode >= serverErrorLowerLimit && statusCode < serverErrorUpperLimit);
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,19 @@
 package org.reactome.webservice.helpers;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.json.JSONObject;
 import org.reactome.model.ChEBIEntity;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
 public class ChEBIEntityParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     public ChEBIEntity parse(JSONObject chEBIJSON) {
         String chebiID = chEBIJSON.getString("chebi_accession").replace("CHEBI:", "");
@@ -13,6 +23,103 @@ public class ChEBIEntityParser {
         return new ChEBIEntity(chebiID, name, formula);
     }
 
+    /**
+     * Decodes a /compounds response body token by token, handing each requested identifier and its entity (empty
+     * if ChEBI reports that it does not exist) to the consumer as soon as that compound has been read.  Only
+     * chebi_accession, ascii_name and chemical_data.formula are decoded; every other value is skipped without
+     * being materialised.
+     *
+     * @param responseBody Stream of the JSON object keyed by requested ChEBI identifier
+     * @param chEBIEntityConsumer Receives each requested identifier with its potential entity
+     * @throws IOException Thrown if the stream cannot be read or is not valid JSON
+     */
+    public void parse(InputStream responseBody, BiConsumer<String, Optional<ChEBIEntity>> chEBIEntityConsumer)
+        throws IOException {
+
+        try (JsonParser jsonParser = JSON_FACTORY.createParser(responseBody)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(jsonParser, "Expected ChEBI response to be a JSON object");
+            }
+
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                String chEBIIdentifier = jsonParser.currentName();
+                jsonParser.nextToken();
+                chEBIEntityConsumer.accept(chEBIIdentifier, parseCompound(chEBIIdentifier, jsonParser));
+            }
+        }
+    }
+
+    private Optional<ChEBIEntity> parseCompound(String chEBIIdentifier, JsonParser jsonParser) throws IOException {
+        if (jsonParser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(jsonParser, "Expected JSON object for ChEBI identifier " + chEBIIdentifier);
+        }
+
+        boolean exists = false;
+        ChEBIEntity chEBIEntity = null;
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.currentName();
+            JsonToken valueToken = jsonParser.nextToken();
+
+            if (fieldName.equals("exists")) {
+                exists = valueToken == JsonToken.VALUE_TRUE;
+            } else if (fieldName.equals("data") && valueToken == JsonToken.START_OBJECT) {
+                chEBIEntity = parseData(chEBIIdentifier, jsonParser);
+            } else {
+                jsonParser.skipChildren();
+            }
+        }
+
+        if (!exists) {
+            return Optional.empty();
+        }
+        if (chEBIEntity == null) {
+            throw new IllegalStateException("No data returned for existing ChEBI identifier " + chEBIIdentifier);
+        }
+        return Optional.of(chEBIEntity);
+    }
+
+    private ChEBIEntity parseData(String chEBIIdentifier, JsonParser jsonParser) throws IOException {
+        String chebiAccession = null;
+        String name = null;
+        String formula = "";
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.currentName();
+            JsonToken valueToken = jsonParser.nextToken();
+
+            if (fieldName.equals("chebi_accession")) {
+                chebiAccession = jsonParser.getValueAsString();
+            } else if (fieldName.equals("ascii_name")) {
+                name = jsonParser.getValueAsString();
+            } else if (fieldName.equals("chemical_data") && valueToken == JsonToken.START_OBJECT) {
+                formula = parseFormula(jsonParser);
+            } else {
+                jsonParser.skipChildren();
+            }
+        }
+
+        if (chebiAccession == null || name == null) {
+            throw new IllegalStateException(
+                "Missing chebi_accession or ascii_name in ChEBI data for identifier " + chEBIIdentifier
+            );
+        }
+        return new ChEBIEntity(chebiAccession.replace("CHEBI:", ""), name, formula);
+    }
+
+    private String parseFormula(JsonParser jsonParser) throws IOException {
+        String formula = "";
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.currentName();
+            JsonToken valueToken = jsonParser.nextToken();
+
+            if (fieldName.equals("formula") && valueToken == JsonToken.VALUE_STRING) {
+                formula = jsonParser.getText();
+            } else {
+                jsonParser.skipChildren();
+            }
+        }
+        return formula;
+    }
+
     private String getFormula(JSONObject chEBIJSON) {
         if (chEBIJSON.isNull("chemical_data") ||
                 chEBIJSON.getJSONObject("chemical_data").isNull("formula")) {
@@ -0,0 +1,86 @@
+package org.reactome.webservice.helpers;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+
+/**
+ * SSLContext delegating to another context while counting the SSLEngines it creates.  HttpClient creates one
+ * engine per TLS connection, so the count is the number of TLS handshakes the client has started.
+ */
+final class ConnectionCountingSSLContext extends SSLContext {
+
+    private ConnectionCountingSSLContext(SSLContext delegate, ConnectionStatistics connectionStatistics) {
+        super(new CountingSpi(delegate, connectionStatistics), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    static SSLContext wrap(SSLContext delegate, ConnectionStatistics connectionStatistics) {
+        return new ConnectionCountingSSLContext(delegate, connectionStatistics);
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final ConnectionStatistics connectionStatistics;
+
+        CountingSpi(SSLContext delegate, ConnectionStatistics connectionStatistics) {
+            this.delegate = delegate;
+            this.connectionStatistics = connectionStatistics;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom secureRandom)
+            throws KeyManagementException {
+            delegate.init(keyManagers, trustManagers, secureRandom);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            connectionStatistics.recordConnection();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            connectionStatistics.recordConnection();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
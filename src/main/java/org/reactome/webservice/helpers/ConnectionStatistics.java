@@ -0,0 +1,39 @@
+package org.reactome.webservice.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the requests sent by a ChEBIAPIClient and the TLS connections opened to serve them.  Every TLS
+ * connection opened by the underlying HttpClient creates exactly one SSLEngine, so any request sent beyond the
+ * number of connections opened was served over a reused (kept-alive or multiplexed) connection.
+ */
+public class ConnectionStatistics {
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+
+    void recordRequest() {
+        requestCount.incrementAndGet();
+    }
+
+    void recordConnection() {
+        connectionCount.incrementAndGet();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public long getReusedConnectionCount() {
+        return Math.max(0, getRequestCount() - getConnectionCount());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Requests: %d, Connections opened: %d, Requests on reused connections: %d",
+            getRequestCount(), getConnectionCount(), getReusedConnectionCount());
+    }
+}
@@ -0,0 +1,37 @@
+package org.reactome.webservice.helpers;
+
+import java.time.Duration;
+
+/**
+ * Receives the outcome of each individual ChEBI request attempt, including attempts that are later retried.
+ */
+public interface RequestObserver {
+    RequestObserver NONE = new RequestObserver() {
+        @Override
+        public void onResponse(int identifierCount, int statusCode, Duration latency, long responseBytes) {
+        }
+
+        @Override
+        public void onFailure(int identifierCount, Duration latency, Throwable cause) {
+        }
+    };
+
+    /**
+     * Called once a response has been received and its body read (or abandoned because of its status code).
+     *
+     * @param identifierCount Number of identifiers sent in the request
+     * @param statusCode HTTP status code of the response
+     * @param latency Time from sending the request until its body was read
+     * @param responseBytes Number of response body bytes received
+     */
+    void onResponse(int identifierCount, int statusCode, Duration latency, long responseBytes);
+
+    /**
+     * Called when no response was received, e.g. because the request timed out or the connection failed.
+     *
+     * @param identifierCount Number of identifiers sent in the request
+     * @param latency Time from sending the request until it failed
+     * @param cause Reason the request failed
+     */
+    void onFailure(int identifierCount, Duration latency, Throwable cause);
+}
@@ -0,0 +1,242 @@
+package org.reactome.webservice.helpers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side throttling shared by every request a ChEBIAPIClient sends, so that concurrent batches slow down
+ * together rather than each backing off on its own.  A request is released once all of the following allow it:
+ *
+ *  - Two token buckets, one refilled at the configured number of requests per second and one at the configured
+ *    number of identifiers per second, each holding up to one second's worth of tokens.  Tokens are reserved
+ *    ahead of time, so requests are spaced out at the sustainable rate instead of being released in bursts.
+ *  - A pause until the time given by the most recent Retry-After header.
+ *  - A circuit breaker which opens after a run of consecutive failed attempts (429/408/5xx or no response).  While
+ *    open nothing is sent; once the open period is over a single probe request is sent (half-open) and the circuit
+ *    closes if it succeeds or opens again if it fails.
+ *
+ * Waiting is done with scheduled futures rather than sleeping, so no thread is held while a request is delayed.
+ */
+public class RequestThrottle {
+    private static final Logger logger = LogManager.getLogger(RequestThrottle.class);
+
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket identifierBucket;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final LongSupplier nanoClock;
+
+    private CircuitState circuitState;
+    private int consecutiveFailureCount;
+    private long openUntil;
+    private long pausedUntil;
+    private CompletableFuture<Void> probeOutcome;
+
+    private long delayedRequestCount;
+    private long circuitOpenedCount;
+
+    /**
+     * @param requestsPerSecond Sustained request rate; zero or less for no limit
+     * @param identifiersPerSecond Sustained rate of identifiers requested; zero or less for no limit
+     * @param failureThreshold Consecutive failed attempts which open the circuit; zero or less to never open it
+     * @param openDuration Minimum time the circuit stays open before a probe request is sent
+     */
+    public RequestThrottle(
+        double requestsPerSecond, double identifiersPerSecond, int failureThreshold, Duration openDuration) {
+
+        this(requestsPerSecond, identifiersPerSecond, failureThreshold, openDuration, System::nanoTime);
+    }
+
+    RequestThrottle(
+        double requestsPerSecond, double identifiersPerSecond, int failureThreshold, Duration openDuration,
+        LongSupplier nanoClock) {
+
+        this.nanoClock = nanoClock;
+        this.requestBucket = new TokenBucket(requestsPerSecond, nanoClock.getAsLong());
+        this.identifierBucket = new TokenBucket(identifiersPerSecond, nanoClock.getAsLong());
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.circuitState = CircuitState.CLOSED;
+    }
+
+    /**
+     * @return Throttle which never delays a request, though it still honours Retry-After
+     */
+    public static RequestThrottle unlimited() {
+        return new RequestThrottle(0, 0, 0, Duration.ZERO);
+    }
+
+    /**
+     * Reserves permission to send one request for the given number of identifiers.
+     *
+     * @param identifierCount Number of identifiers in the request
+     * @return Future completing once the request may be sent
+     */
+    public CompletableFuture<Void> acquire(int identifierCount) {
+        long delay;
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            long blockedUntil = circuitState == CircuitState.OPEN ? Math.max(openUntil, pausedUntil) : pausedUntil;
+            if (blockedUntil - now > 0) {
+                delayedRequestCount++;
+                return delay(blockedUntil - now).thenCompose(ignored -> acquire(identifierCount));
+            }
+
+            if (circuitState == CircuitState.OPEN) {
+                logger.info("ChEBI circuit breaker half-open - sending a probe request");
+                circuitState = CircuitState.HALF_OPEN;
+            }
+            if (circuitState == CircuitState.HALF_OPEN) {
+                if (probeOutcome != null) {
+                    delayedRequestCount++;
+                    return probeOutcome.thenCompose(ignored -> acquire(identifierCount));
+                }
+                probeOutcome = new CompletableFuture<>();
+            }
+
+            delay = Math.max(requestBucket.reserve(1, now), identifierBucket.reserve(identifierCount, now));
+            if (delay > 0) {
+                delayedRequestCount++;
+            }
+        }
+        return delay > 0 ? delay(delay) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Records an attempt answered by ChEBI with a non-retryable status code, closing the circuit if it was probing.
+     */
+    public void recordSuccess() {
+        CompletableFuture<Void> completedProbe;
+        synchronized (this) {
+            consecutiveFailureCount = 0;
+            if (circuitState == CircuitState.HALF_OPEN) {
+                logger.info("ChEBI circuit breaker closed - probe request succeeded");
+                circuitState = CircuitState.CLOSED;
+            }
+            completedProbe = takeProbeOutcome();
+        }
+        completeProbe(completedProbe);
+    }
+
+    /**
+     * Records an attempt which got a retryable status code or no response at all.
+     *
+     * @param retryAfter Delay requested by the server's Retry-After header, or null if there was none
+     */
+    public void recordFailure(Duration retryAfter) {
+        CompletableFuture<Void> completedProbe;
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            Duration boundedRetryAfter = retryAfter != null ? min(retryAfter, MAX_RETRY_AFTER) : Duration.ZERO;
+            if (!boundedRetryAfter.isZero()) {
+                pausedUntil = latest(pausedUntil, now + boundedRetryAfter.toNanos());
+            }
+
+            consecutiveFailureCount++;
+            boolean tripped = circuitState == CircuitState.CLOSED &&
+                failureThreshold > 0 && consecutiveFailureCount >= failureThreshold;
+            if (tripped || circuitState == CircuitState.HALF_OPEN) {
+                Duration openPeriod = max(openDuration, boundedRetryAfter);
+                logger.warn("ChEBI circuit breaker open for {} ms after {} consecutive failed requests",
+                    openPeriod.toMillis(), consecutiveFailureCount);
+                circuitState = CircuitState.OPEN;
+                openUntil = now + openPeriod.toNanos();
+                circuitOpenedCount++;
+            }
+            completedProbe = takeProbeOutcome();
+        }
+        completeProbe(completedProbe);
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        return circuitState;
+    }
+
+    public synchronized long getDelayedRequestCount() {
+        return delayedRequestCount;
+    }
+
+    public synchronized long getCircuitOpenedCount() {
+        return circuitOpenedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Requests delayed: %d, Circuit opened: %d times, Circuit state: %s",
+            delayedRequestCount, circuitOpenedCount, circuitState);
+    }
+
+    private CompletableFuture<Void> takeProbeOutcome() {
+        CompletableFuture<Void> completedProbe = probeOutcome;
+        probeOutcome = null;
+        return completedProbe;
+    }
+
+    // Called outside the lock, as completing the probe releases the requests queued behind it
+    private static void completeProbe(CompletableFuture<Void> completedProbe) {
+        if (completedProbe != null) {
+            completedProbe.complete(null);
+        }
+    }
+
+    private static CompletableFuture<Void> delay(long delayNanos) {
+        return CompletableFuture.runAsync(
+            () -> {}, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS)
+        );
+    }
+
+    private static long latest(long time, long otherTime) {
+        return otherTime - time > 0 ? otherTime : time;
+    }
+
+    private static Duration min(Duration duration, Duration otherDuration) {
+        return duration.compareTo(otherDuration) <= 0 ? duration : otherDuration;
+    }
+
+    private static Duration max(Duration duration, Duration otherDuration) {
+        return duration.compareTo(otherDuration) >= 0 ? duration : otherDuration;
+    }
+
+    /**
+     * Token bucket which may be overdrawn: a reservation always succeeds, and the caller waits until the bucket
+     * would have refilled to cover it.
+     */
+    private static class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillTime;
+
+        TokenBucket(double tokensPerSecond, long now) {
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, tokensPerSecond);
+            this.tokens = capacity;
+            this.lastRefillTime = now;
+        }
+
+        /**
+         * @return Nanoseconds to wait before the reserved tokens are available
+         */
+        long reserve(int tokenCount, long now) {
+            if (tokensPerNano <= 0) {
+                return 0;
+            }
+
+            tokens = Math.min(capacity, tokens + (now - lastRefillTime) * tokensPerNano);
+            lastRefillTime = now;
+            tokens -= tokenCount;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.reactome.webservice.helpers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the rows of a tab-separated file with a header line in a single pass.  Uncompressed files are read through
+ * memory-mapped regions of the file; gzip-compressed files (".gz") are streamed through a GZIPInputStream.
+ */
+public class TabSeparatedFileReader {
+    private static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final int mappedRegionSize;
+
+    public TabSeparatedFileReader() {
+        this(DEFAULT_MAPPED_REGION_SIZE);
+    }
+
+    // For testing
+    TabSeparatedFileReader(int mappedRegionSize) {
+        this.mappedRegionSize = mappedRegionSize;
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(Columns columns, String[] row);
+    }
+
+    public void forEachRow(Path file, RowConsumer rowConsumer) throws IOException {
+        LineConsumer lineConsumer = new LineConsumer(rowConsumer);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            readCompressedLines(file, lineConsumer);
+        } else {
+            readMappedLines(file, lineConsumer);
+        }
+    }
+
+    private void readCompressedLines(Path file, LineConsumer lineConsumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        }
+    }
+
+    private void readMappedLines(Path file, LineConsumer lineConsumer) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            long regionStart = 0;
+            while (regionStart < fileSize) {
+                long regionSize = Math.min(mappedRegionSize, fileSize - regionStart);
+                MappedByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+                boolean lastRegion = regionStart + regionSize == fileSize;
+
+                int lineStart = 0;
+                for (int position = 0; position < region.limit(); position++) {
+                    if (region.get(position) == '\n') {
+                        lineConsumer.accept(decode(region, lineStart, position));
+                        lineStart = position + 1;
+                    }
+                }
+
+                if (lastRegion) {
+                    if (lineStart < region.limit()) {
+                        lineConsumer.accept(decode(region, lineStart, region.limit()));
+                    }
+                    break;
+                }
+                if (lineStart == 0) {
+                    throw new IOException("Line longer than " + mappedRegionSize + " bytes in " + file);
+                }
+                // Re-map from the start of the line cut off at the end of this region
+                regionStart += lineStart;
+            }
+        }
+    }
+
+    private static String decode(MappedByteBuffer region, int start, int end) {
+        if (end > start && region.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] lineBytes = new byte[end - start];
+        region.duplicate().position(start).get(lineBytes);
+        return new String(lineBytes, StandardCharsets.UTF_8);
+    }
+
+    private static class LineConsumer {
+        private final RowConsumer rowConsumer;
+        private Columns columns;
+
+        LineConsumer(RowConsumer rowConsumer) {
+            this.rowConsumer = rowConsumer;
+        }
+
+        void accept(String line) {
+            if (line.isEmpty()) {
+                return;
+            }
+
+            String[] values = line.split("\t", -1);
+            if (columns == null) {
+                columns = new Columns(values);
+            } else {
+                rowConsumer.accept(columns, values);
+            }
+        }
+    }
+
+    /**
+     * Column positions taken from a file's header line.  Lookups are case-insensitive so both the upper-case
+     * headers of ChEBI's legacy flat files and the lower-case headers of the current ones are accepted.
+     */
+    public static class Columns {
+        private final Map<String, Integer> columnNameToIndex;
+
+        Columns(String[] header) {
+            this.columnNameToIndex = new HashMap<>();
+            for (int index = 0; index < header.length; index++) {
+                columnNameToIndex.put(unquote(header[index]).toLowerCase(Locale.ROOT), index);
+            }
+        }
+
+        /**
+         * @return Index of the first candidate column present in the header, or -1 if none are present
+         */
+        public int indexOf(String... candidateColumnNames) {
+            for (String candidateColumnName : candidateColumnNames) {
+                Integer index = columnNameToIndex.get(candidateColumnName.toLowerCase(Locale.ROOT));
+                if (index != null) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return Value at the column index, or null if the column is absent or the value is empty or "null"
+         */
+        public String get(String[] row, int index) {
+            if (index < 0 || index >= row.length) {
+                return null;
+            }
+            String value = unquote(row[index]);
+            return value.isEmpty() || value.equalsIgnoreCase("null") ? null : value;
+        }
+
+        private static String unquote(String value) {
+            String trimmedValue = value.trim();
+            if (trimmedValue.length() >= 2 && trimmedValue.startsWith("\"") && trimmedValue.endsWith("\"")) {
+                return trimmedValue.substring(1, trimmedValue.length() - 1);
+            }
+            return trimmedValue;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.reactome;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChEBIIdIndexTest {
+
+    @Test
+    void add_ManyIdentifiers_KeepsDbIdsOfEachAcrossResizes() {
+        ChEBIIdIndex chEBIIdIndex = new ChEBIIdIndex();
+
+        for (int chEBIId = 0; chEBIId < 10_000; chEBIId++) {
+            chEBIIdIndex.add(chEBIId * 7, chEBIId);
+        }
+        chEBIIdIndex.add(70, 1_000_000L);
+        chEBIIdIndex.add(70, 1_000_000L);
+
+        assertEquals(10_000, chEBIIdIndex.size());
+        assertArrayEquals(new long[] {9_999L}, chEBIIdIndex.get(69_993));
+        assertArrayEquals(new long[] {10L, 1_000_000L}, chEBIIdIndex.get(70));
+        assertArrayEquals(new long[0], chEBIIdIndex.get(71));
+    }
+
+    @Test
+    void getDuplicates_IdentifiersWithSeveralDbIds_ReturnsThemInAscendingOrder() {
+        ChEBIIdIndex chEBIIdIndex = new ChEBIIdIndex();
+        chEBIIdIndex.add(16236, 4L);
+        chEBIIdIndex.add(15377, 1L);
+        chEBIIdIndex.add(15377, 2L);
+        chEBIIdIndex.add(17234, 3L);
+        chEBIIdIndex.add(16236, 5L);
+
+        assertArrayEquals(new int[] {15377, 16236}, chEBIIdIndex.getDuplicates());
+        assertArrayEquals(new long[] {4L, 5L}, chEBIIdIndex.get(16236));
+    }
+}
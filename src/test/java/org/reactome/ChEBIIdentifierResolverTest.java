@@ -0,0 +1,141 @@
+package org.reactome;
+
+import com.google.common.collect.ArrayListMultimap;
+import org.gk.model.GKInstance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactome.database.DBReader;
+import org.reactome.model.ChEBIEntity;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChEBIIdentifierResolverTest {
+
+    @Mock
+    private ChEBIIdentifierResolver.ChEBIEntityLookup mockLookup;
+
+    @Mock
+    private DBReader mockDbReader;
+
+    @Mock
+    private GKInstance mockGKInstance1;
+
+    @Mock
+    private GKInstance mockGKInstance2;
+
+    private ChEBIIdentifierResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new ChEBIIdentifierResolver(mockLookup, mockDbReader);
+    }
+
+    @Test
+    void resolve_NoReplacements_MakesNoLookups() throws Exception {
+        // Arrange
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result =
+            resolver.resolve(Map.of(mockGKInstance1, Optional.of(water)));
+
+        // Assert
+        assertEquals(Optional.of(water), result.get(mockGKInstance1));
+        assertTrue(resolver.getObsoleteToCurrentChEBIIdentifiers().isEmpty());
+        verifyNoInteractions(mockLookup, mockDbReader);
+    }
+
+    @Test
+    void resolve_ReplacementChain_CollapsesToCurrentIdentifierAndEntity() throws Exception {
+        // Arrange
+        ChEBIEntity replacement = new ChEBIEntity("2", "replacement", "C");
+        ChEBIEntity current = new ChEBIEntity("3", "current", "CH4");
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("1");
+        when(mockLookup.getChEBIEntities(Set.of("2"))).thenReturn(Map.of("2", Optional.of(current)));
+        when(mockLookup.getChEBIEntities(Set.of("3"))).thenReturn(Map.of("3", Optional.of(current)));
+        when(mockDbReader.getReferenceMoleculesWithChEBIIdentifiers(Set.of("3")))
+            .thenReturn(ArrayListMultimap.create());
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result =
+            resolver.resolve(Map.of(mockGKInstance1, Optional.of(replacement)));
+
+        // Assert
+        assertEquals(Optional.of(current), result.get(mockGKInstance1));
+        assertEquals("3", resolver.getCurrentChEBIIdentifier("1"));
+        assertEquals(Map.of("1", "3", "2", "3"), resolver.getObsoleteToCurrentChEBIIdentifiers());
+        verify(mockLookup, times(2)).getChEBIEntities(any());
+    }
+
+    @Test
+    void resolve_SharedReplacement_LooksUpEachIdentifierOnceAndPrefetchesInBulk() throws Exception {
+        // Arrange
+        ChEBIEntity current = new ChEBIEntity("3", "current", "CH4");
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("1");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("2");
+        when(mockLookup.getChEBIEntities(Set.of("3"))).thenReturn(Map.of("3", Optional.of(current)));
+
+        when(mockDbReader.getReferenceMoleculesWithChEBIIdentifiers(Set.of("3")))
+            .thenReturn(ArrayListMultimap.create());
+
+        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+        chEBIEntities.put(mockGKInstance1, Optional.of(current));
+        chEBIEntities.put(mockGKInstance2, Optional.of(current));
+
+        // Act
+        resolver.resolve(chEBIEntities);
+
+        // Assert
+        assertEquals("3", resolver.getCurrentChEBIIdentifier("1"));
+        assertEquals("3", resolver.getCurrentChEBIIdentifier("2"));
+        verify(mockLookup, times(1)).getChEBIEntities(any());
+        verify(mockDbReader, times(1)).getReferenceMoleculesWithChEBIIdentifiers(any());
+        verify(mockDbReader, never()).getReferenceMoleculesWithChEBIIdentifier(anyString());
+    }
+
+    @Test
+    void resolve_ReplacementAlsoRequestedDirectly_SkipsLookup() throws Exception {
+        // Arrange
+        ChEBIEntity current = new ChEBIEntity("2", "current", "C");
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("1");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("2");
+        when(mockDbReader.getReferenceMoleculesWithChEBIIdentifiers(Set.of("2")))
+            .thenReturn(ArrayListMultimap.create());
+
+        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+        chEBIEntities.put(mockGKInstance1, Optional.of(current));
+        chEBIEntities.put(mockGKInstance2, Optional.of(current));
+
+        // Act
+        resolver.resolve(chEBIEntities);
+
+        // Assert
+        assertEquals("2", resolver.getCurrentChEBIIdentifier("1"));
+        verifyNoInteractions(mockLookup);
+    }
+
+    @Test
+    void getCurrentChEBIIdentifier_CyclicReplacements_Terminates() throws Exception {
+        // Arrange
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("1");
+        when(mockLookup.getChEBIEntities(Set.of("2")))
+            .thenReturn(Map.of("2", Optional.of(new ChEBIEntity("1", "first", "C"))));
+
+        // Act
+        resolver.resolve(Map.of(mockGKInstance1, Optional.of(new ChEBIEntity("2", "second", "C"))));
+
+        // Assert
+        assertEquals("1", resolver.getCurrentChEBIIdentifier("1"));
+        assertEquals("1", resolver.getCurrentChEBIIdentifier("2"));
+    }
+}
@@ -0,0 +1,105 @@
+package org.reactome;
+
+import org.gk.model.GKInstance;
+import org.junit.jupiter.api.Test;
+import org.reactome.model.ChEBIEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChEBILookupPipelineTest {
+
+    @Test
+    void take_SeveralChunks_ReturnsChunksInOrderThenNull() throws Exception {
+        List<GKInstance> referenceMolecules = mockReferenceMolecules(5);
+
+        try (ChEBILookupPipeline pipeline =
+                 new ChEBILookupPipeline(referenceMolecules, 2, 1, ChEBILookupPipelineTest::lookUp)) {
+            pipeline.start();
+
+            assertEquals(referenceMolecules.subList(0, 2), new ArrayList<>(pipeline.take().keySet()));
+            assertEquals(referenceMolecules.subList(2, 4), new ArrayList<>(pipeline.take().keySet()));
+            assertEquals(referenceMolecules.subList(4, 5), new ArrayList<>(pipeline.take().keySet()));
+            assertNull(pipeline.take());
+            assertNull(pipeline.take());
+        }
+    }
+
+    @Test
+    void take_LookupFails_RethrowsFailureAfterEarlierChunks() throws Exception {
+        List<GKInstance> referenceMolecules = mockReferenceMolecules(4);
+        IOException failure = new IOException("ChEBI unavailable");
+
+        try (ChEBILookupPipeline pipeline = new ChEBILookupPipeline(referenceMolecules, 2, 2, chunk -> {
+            if (chunk.contains(referenceMolecules.get(2))) {
+                throw failure;
+            }
+            return lookUp(chunk);
+        })) {
+            pipeline.start();
+
+            assertEquals(referenceMolecules.subList(0, 2), new ArrayList<>(pipeline.take().keySet()));
+            assertSame(failure, assertThrows(IOException.class, pipeline::take));
+            assertNull(pipeline.take());
+        }
+    }
+
+    @Test
+    void start_ChunksNotTaken_LooksUpNoMoreThanQueueCapacityAhead() throws Exception {
+        List<GKInstance> referenceMolecules = mockReferenceMolecules(10);
+        AtomicInteger lookedUpChunkCount = new AtomicInteger();
+        CountDownLatch thirdLookupStarted = new CountDownLatch(1);
+        CountDownLatch fourthLookupStarted = new CountDownLatch(1);
+
+        try (ChEBILookupPipeline pipeline = new ChEBILookupPipeline(referenceMolecules, 1, 2, chunk -> {
+            int chunkCount = lookedUpChunkCount.incrementAndGet();
+            if (chunkCount == 3) {
+                thirdLookupStarted.countDown();
+            } else if (chunkCount == 4) {
+                fourthLookupStarted.countDown();
+            }
+            return lookUp(chunk);
+        })) {
+            pipeline.start();
+
+            // Two chunks fill the queue; the third is looked up but cannot be queued until one is taken
+            assertTrue(thirdLookupStarted.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(3, lookedUpChunkCount.get());
+
+            pipeline.take();
+            assertTrue(fourthLookupStarted.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(4, lookedUpChunkCount.get());
+        }
+    }
+
+    private static Map<GKInstance, Optional<ChEBIEntity>> lookUp(List<GKInstance> referenceMolecules) {
+        Map<GKInstance, Optional<ChEBIEntity>> chEBIEntities = new LinkedHashMap<>();
+        for (GKInstance referenceMolecule : referenceMolecules) {
+            String chEBIIdentifier = Utils.getReferenceMoleculeIdentifier(referenceMolecule);
+            chEBIEntities.put(referenceMolecule, Optional.of(new ChEBIEntity(chEBIIdentifier, "name", "formula")));
+        }
+        return chEBIEntities;
+    }
+
+    private static List<GKInstance> mockReferenceMolecules(int count) throws Exception {
+        List<GKInstance> referenceMolecules = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            GKInstance referenceMolecule = mock(GKInstance.class);
+            when(referenceMolecule.getAttributeValue("identifier")).thenReturn(String.valueOf(index));
+            referenceMolecules.add(referenceMolecule);
+        }
+        return referenceMolecules;
+    }
+}
@@ -0,0 +1,50 @@
+package org.reactome;
+
+import org.gk.model.GKInstance;
+import org.junit.jupiter.api.Test;
+import org.reactome.database.DBReader;
+import org.reactome.reports.CreatorCache;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DuplicateCheckerTest {
+
+    @Test
+    void getDuplicateIdentifierToReferenceMoleculeDbIds_SharedIdentifiers_ReturnsDuplicatesOnly() throws Exception {
+        DuplicateChecker duplicateChecker = new DuplicateChecker(mock(DBReader.class), new CreatorCache());
+
+        duplicateChecker.add(List.of(
+            mockReferenceMolecule(1L, "15377"),
+            mockReferenceMolecule(2L, "16236"),
+            mockReferenceMolecule(3L, "15377"),
+            mockReferenceMolecule(4L, "CHEBI:15377"),
+            mockReferenceMolecule(5L, "CHEBI:15377")
+        ));
+
+        assertEquals(
+            Map.of("15377", List.of(1L, 3L), "CHEBI:15377", List.of(4L, 5L)),
+            duplicateChecker.getDuplicateIdentifierToReferenceMoleculeDbIds()
+        );
+    }
+
+    @Test
+    void parseChEBIId_NonCanonicalIdentifiers_ReturnsMinusOne() {
+        assertEquals(15377, DuplicateChecker.parseChEBIId("15377"));
+        assertEquals(0, DuplicateChecker.parseChEBIId("0"));
+        assertEquals(-1, DuplicateChecker.parseChEBIId("015377"));
+        assertEquals(-1, DuplicateChecker.parseChEBIId("CHEBI:15377"));
+        assertEquals(-1, DuplicateChecker.parseChEBIId("1234567890"));
+        assertEquals(-1, DuplicateChecker.parseChEBIId(""));
+    }
+
+    private GKInstance mockReferenceMolecule(long dbId, String identifier) throws Exception {
+        GKInstance referenceMolecule = mock(GKInstance.class);
+        lenient().when(referenceMolecule.getDBID()).thenReturn(dbId);
+        lenient().when(referenceMolecule.getAttributeValue("identifier")).thenReturn(identifier);
+        return referenceMolecule;
+    }
+}
@@ -0,0 +1,89 @@
+package org.reactome;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactome.database.ChEBIMoleculeProjection;
+import org.reactome.model.ChEBIEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateFingerprintsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isUnchanged_SameEntityAndMoleculeAsSavedRun_ReturnsTrue() throws Exception {
+        Path fingerprintFile = tempDir.resolve("cache/chebi-fingerprints.json");
+        ChEBIMoleculeProjection water = getReferenceMolecule(1L, "15377", "H2O", "water");
+
+        UpdateFingerprints fingerprints = new UpdateFingerprints(fingerprintFile);
+        fingerprints.record(water, new ChEBIEntity("15377", "water", "H2O"));
+        fingerprints.save();
+
+        UpdateFingerprints reloadedFingerprints = new UpdateFingerprints(fingerprintFile);
+
+        assertTrue(reloadedFingerprints.isUnchanged(water, new ChEBIEntity("15377", "water", "H2O")));
+    }
+
+    @Test
+    void isUnchanged_EntityOrMoleculeChangedSinceSavedRun_ReturnsFalse() throws Exception {
+        Path fingerprintFile = tempDir.resolve("chebi-fingerprints.json");
+        ChEBIMoleculeProjection water = getReferenceMolecule(1L, "15377", "H2O", "water");
+
+        UpdateFingerprints fingerprints = new UpdateFingerprints(fingerprintFile);
+        fingerprints.record(water, new ChEBIEntity("15377", "water", "H2O"));
+        fingerprints.save();
+
+        UpdateFingerprints reloadedFingerprints = new UpdateFingerprints(fingerprintFile);
+        ChEBIMoleculeProjection editedWater = getReferenceMolecule(1L, "15377", "H2O", "oxidane");
+
+        assertFalse(reloadedFingerprints.isUnchanged(water, new ChEBIEntity("15377", "oxidane", "H2O")));
+        assertFalse(reloadedFingerprints.isUnchanged(editedWater, new ChEBIEntity("15377", "water", "H2O")));
+        assertFalse(reloadedFingerprints.isUnchanged(
+            getReferenceMolecule(2L, "15377", "H2O", "water"), new ChEBIEntity("15377", "water", "H2O")
+        ));
+    }
+
+    @Test
+    void isUnchanged_EntityRecordedSinceSavedRun_ComparesWithSavedRun() throws Exception {
+        Path fingerprintFile = tempDir.resolve("chebi-fingerprints.json");
+        ChEBIMoleculeProjection water = getReferenceMolecule(1L, "15377", "H2O", "water");
+        ChEBIMoleculeProjection duplicateWater = getReferenceMolecule(2L, "15377", "H2O", "water");
+
+        UpdateFingerprints fingerprints = new UpdateFingerprints(fingerprintFile);
+        fingerprints.record(water, new ChEBIEntity("15377", "water", "H2O"));
+        fingerprints.record(duplicateWater, new ChEBIEntity("15377", "water", "H2O"));
+        fingerprints.save();
+
+        UpdateFingerprints reloadedFingerprints = new UpdateFingerprints(fingerprintFile);
+        reloadedFingerprints.record(water, new ChEBIEntity("15377", "oxidane", "H2O"));
+
+        assertFalse(reloadedFingerprints.isUnchanged(duplicateWater, new ChEBIEntity("15377", "oxidane", "H2O")));
+
+        reloadedFingerprints.save();
+
+        assertTrue(new UpdateFingerprints(fingerprintFile)
+            .isUnchanged(duplicateWater, new ChEBIEntity("15377", "oxidane", "H2O")));
+    }
+
+    @Test
+    void isUnchanged_UnreadableFingerprintFile_ReturnsFalse() throws Exception {
+        Path fingerprintFile = tempDir.resolve("chebi-fingerprints.json");
+        Files.write(fingerprintFile, "{\"chebi\":{\"153".getBytes(StandardCharsets.UTF_8));
+        ChEBIMoleculeProjection water = getReferenceMolecule(1L, "15377", "H2O", "water");
+
+        UpdateFingerprints fingerprints = new UpdateFingerprints(fingerprintFile);
+
+        assertFalse(fingerprints.isUnchanged(water, new ChEBIEntity("15377", "water", "H2O")));
+    }
+
+    private ChEBIMoleculeProjection getReferenceMolecule(long dbId, String identifier, String formula, String name) {
+        return new ChEBIMoleculeProjection(dbId, identifier, List.of(name), formula, null);
+    }
+}
@@ -0,0 +1,73 @@
+package org.reactome.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangePlanTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_ChangesAppendedInBatches_ReturnsThemInOrder() throws IOException {
+        ChangePlan changePlan = new ChangePlan(tempDir.resolve("plans/chebi-change-plan.jsonl"));
+        ChangePlan.InstanceReference instanceEdit = new ChangePlan.InstanceReference(10L, "InstanceEdit");
+
+        changePlan.create();
+        changePlan.append(List.of(new ChangePlan.Change(
+            1L, "ReferenceMolecule", "name", Arrays.asList("oxidane", "water"), Collections.singletonList("water")
+        )));
+        changePlan.append(List.of(new ChangePlan.Change(
+            1L, "ReferenceMolecule", "modified",
+            Arrays.asList(instanceEdit, ChangePlan.InstanceReference.NEW_INSTANCE_EDIT),
+            Collections.singletonList(instanceEdit)
+        ), new ChangePlan.Change(
+            1L, "ReferenceMolecule", "_displayName", Collections.singletonList("oxidane [ChEBI:15377]"), null
+        )));
+
+        List<ChangePlan.Change> changes = changePlan.read();
+
+        assertEquals(3, changes.size());
+        assertEquals("name", changes.get(0).getAttributeName());
+        assertEquals(Arrays.asList("oxidane", "water"), changes.get(0).getValues());
+        assertEquals(Collections.singletonList("water"), changes.get(0).getPersistedValues());
+        assertEquals(Arrays.asList(instanceEdit, ChangePlan.InstanceReference.NEW_INSTANCE_EDIT),
+            changes.get(1).getValues());
+        assertTrue(((ChangePlan.InstanceReference) changes.get(1).getValues().get(1)).isNewInstanceEdit());
+        assertEquals("InstanceEdit", ((ChangePlan.InstanceReference) changes.get(1).getValues().get(0)).getClassName());
+        assertNull(changes.get(2).getPersistedValues());
+        assertEquals(1L, changes.get(2).getDbId());
+        assertEquals("ReferenceMolecule", changes.get(2).getClassName());
+    }
+
+    @Test
+    void create_EarlierPlan_IsReplaced() throws IOException {
+        ChangePlan changePlan = new ChangePlan(tempDir.resolve("chebi-change-plan.jsonl"));
+        changePlan.append(List.of(new ChangePlan.Change(
+            1L, "ReferenceMolecule", "formula", Collections.singletonList("H2O"), Collections.emptyList()
+        )));
+
+        changePlan.create();
+
+        assertTrue(changePlan.read().isEmpty());
+    }
+
+    @Test
+    void read_UnreadableLine_Throws() throws IOException {
+        Path planFile = tempDir.resolve("chebi-change-plan.jsonl");
+        Files.write(planFile, "{\"dbId\": 1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+
+        assertThrows(IOException.class, () -> new ChangePlan(planFile).read());
+    }
+}
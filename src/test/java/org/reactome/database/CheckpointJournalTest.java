@@ -0,0 +1,65 @@
+package org.reactome.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getLastCommittedDbId_NoJournal_ReturnsNull() throws IOException {
+        CheckpointJournal journal = new CheckpointJournal(tempDir.resolve("checkpoint.jsonl"));
+
+        assertNull(journal.getLastCommittedDbId());
+        assertNull(journal.getInstanceEditDbId());
+    }
+
+    @Test
+    void getLastCommittedDbId_CheckpointsRecordedInEarlierRun_ReturnsLastOne() throws IOException {
+        Path journalFile = tempDir.resolve("checkpoint/chebi-update.jsonl");
+
+        CheckpointJournal journal = new CheckpointJournal(journalFile);
+        journal.record(100L, null);
+        journal.record(200L, 9000L);
+
+        CheckpointJournal reloadedJournal = new CheckpointJournal(journalFile);
+
+        assertEquals(200L, reloadedJournal.getLastCommittedDbId());
+        assertEquals(9000L, reloadedJournal.getInstanceEditDbId());
+    }
+
+    @Test
+    void getLastCommittedDbId_PartiallyWrittenLastLine_ReturnsLastReadableCheckpoint() throws IOException {
+        Path journalFile = tempDir.resolve("checkpoint.jsonl");
+
+        new CheckpointJournal(journalFile).record(100L, 9000L);
+        Files.write(journalFile, "{\"lastCommitted".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CheckpointJournal reloadedJournal = new CheckpointJournal(journalFile);
+
+        assertEquals(100L, reloadedJournal.getLastCommittedDbId());
+        assertEquals(9000L, reloadedJournal.getInstanceEditDbId());
+    }
+
+    @Test
+    void delete_CompletedRun_NextRunStartsFromBeginning() throws IOException {
+        Path journalFile = tempDir.resolve("checkpoint.jsonl");
+
+        CheckpointJournal journal = new CheckpointJournal(journalFile);
+        journal.record(100L, 9000L);
+        journal.delete();
+
+        assertFalse(Files.exists(journalFile));
+        assertNull(new CheckpointJournal(journalFile).getLastCommittedDbId());
+    }
+}
@@ -1,9 +1,12 @@
 package org.reactome.database;
 
+import com.google.common.collect.ListMultimap;
 import org.gk.model.GKInstance;
 import org.gk.model.ReactomeJavaConstants;
 import org.gk.persistence.MySQLAdaptor;
 import org.gk.schema.Schema;
+import org.gk.schema.SchemaAttribute;
+import org.gk.schema.SchemaClass;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,16 +16,23 @@ import org.reactome.reports.ReferenceMoleculeFormulaChangeReporter;
 import org.reactome.reports.ReferenceMoleculeNameChangeReporter;
 import org.reactome.reports.SimpleEntityNameChangeReporter;
 
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -78,6 +88,30 @@ public class DBInteractorTest {
         verify(mockDbAdaptor).commit();
     }
 
+    @Test
+    void testReleaseInstanceCache() throws Exception {
+        // Execute
+        dbInteractor.releaseInstanceCache();
+        dbInteractor.releaseInstanceCache();
+
+        // Verify
+        verify(mockDbAdaptor, times(2)).refresh();
+        assertEquals(2, dbInteractor.getInstanceCacheReleaseCount());
+    }
+
+    @Test
+    void testReleaseInstanceCache_PendingWrites() throws Exception {
+        // Setup
+        dbInteractor.getUnitOfWork().registerDirty(mockRefMol, ReactomeJavaConstants.name);
+
+        // Execute
+        assertThrows(IllegalStateException.class, () -> dbInteractor.releaseInstanceCache());
+
+        // Verify
+        verify(mockDbAdaptor, never()).refresh();
+        assertEquals(0, dbInteractor.getInstanceCacheReleaseCount());
+    }
+
     @Test
     void testGetAllChEBIReferenceMoleculeInstances() throws Exception {
         // Setup
@@ -112,6 +146,63 @@ public class DBInteractorTest {
         );
     }
 
+    @Test
+    void testGetAllChEBIReferenceMoleculeDbIds() throws Exception {
+        // Setup
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        SchemaClass mockReferenceEntityClass = mock(SchemaClass.class);
+        SchemaAttribute mockReferenceDatabaseAttribute = mock(SchemaAttribute.class);
+        ResultSet mockResultSet = mock(ResultSet.class);
+
+        when(mockDbAdaptor.getSchema()).thenReturn(mockSchema);
+        when(mockSchema.getClassByName(ReactomeJavaConstants.ReferenceMolecule))
+            .thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.referenceDatabase))
+            .thenReturn(mockReferenceDatabaseAttribute);
+        when(mockReferenceDatabaseAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+        when(mockDbAdaptor.fetchInstanceByAttribute(
+            ReactomeJavaConstants.ReferenceDatabase, ReactomeJavaConstants.name, "=", "ChEBI"
+        )).thenReturn(Collections.singletonList(mockChEBIReferenceDatabase));
+        when(mockChEBIReferenceDatabase.getDBID()).thenReturn(99L);
+
+        when(mockDbAdaptor.executeQuery(anyString(), anyList())).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getLong(1)).thenReturn(1L, 2L);
+
+        // Execute
+        List<Long> result = dbInteractor.getAllChEBIReferenceMoleculeDbIds();
+
+        // Verify
+        assertEquals(Arrays.asList(1L, 2L), result);
+        verify(mockDbAdaptor).executeQuery(
+            contains("JOIN ReferenceEntity r ON r.DB_ID = m.DB_ID WHERE r.referenceDatabase = ? ORDER BY m.DB_ID"),
+            eq(List.of(99L))
+        );
+        verify(mockDbAdaptor, never()).fetchInstanceByAttribute(
+            eq(ReactomeJavaConstants.ReferenceMolecule), anyString(), anyString(), any()
+        );
+    }
+
+    @Test
+    void testGetReferenceMolecules() throws Exception {
+        // Setup
+        GKInstance mockRefMol2 = mock(GKInstance.class);
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        when(mockRefMol2.getDBID()).thenReturn(2L);
+        when(mockDbAdaptor.fetchInstanceByAttribute(anyString(), anyString(), anyString(), any()))
+            .thenReturn(new HashSet<>(Arrays.asList(mockRefMol2, mockRefMol)));
+
+        // Execute
+        List<GKInstance> result = dbInteractor.getReferenceMolecules(Arrays.asList(1L, 2L));
+
+        // Verify
+        assertEquals(Arrays.asList(mockRefMol, mockRefMol2), result);
+        verify(mockDbAdaptor).fetchInstanceByAttribute(
+            ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.DB_ID, "=", Arrays.asList(1L, 2L)
+        );
+    }
+
     @Test
     void testUpdateReferenceMoleculeName() throws Exception {
         // Setup
@@ -130,7 +221,7 @@ public class DBInteractorTest {
         // Verify
         assertTrue(result);
         verify(mockRefMol).setAttributeValue(eq("name"), eq(expectedNames));
-        verify(mockDbAdaptor).updateInstanceAttribute(eq(mockRefMol), eq("name"));
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockRefMol, "name"));
     }
 
     @Test
@@ -145,7 +236,7 @@ public class DBInteractorTest {
         // Verify
         assertTrue(result);
         verify(mockRefMol).setAttributeValue(eq("formula"), eq(newFormula));
-        verify(mockDbAdaptor).updateInstanceAttribute(eq(mockRefMol), eq("formula"));
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockRefMol, "formula"));
     }
 
     @Test
@@ -154,6 +245,7 @@ public class DBInteractorTest {
         String chEBIId = "CHEBI:12345";
         GKInstance mockRefMol = mock(GKInstance.class);
         List<GKInstance> expectedInstances = Collections.singletonList(mockRefMol);
+        when(mockRefMol.getAttributeValue(ReactomeJavaConstants.identifier)).thenReturn(chEBIId);
         
         when(mockDbAdaptor.fetchInstanceByAttribute(
             anyString(),
@@ -163,17 +255,210 @@ public class DBInteractorTest {
         )).thenReturn(expectedInstances);
 
         // Execute
+        dbInteractor.getReferenceMoleculesWithChEBIIdentifier(chEBIId);
         List<GKInstance> result = dbInteractor.getReferenceMoleculesWithChEBIIdentifier(chEBIId);
 
         // Verify
         assertEquals(expectedInstances, result);
-        verify(mockDbAdaptor).fetchInstanceByAttribute(
+        verify(mockDbAdaptor, times(1)).fetchInstanceByAttribute(
             eq("ReferenceMolecule"),
             eq("identifier"),
             eq("="),
             eq(chEBIId)
         );
     }
+
+    @Test
+    void testGetReferenceMoleculesWithChEBIIdentifiers() throws Exception {
+        // Setup
+        GKInstance mockRefMol1 = mock(GKInstance.class);
+        GKInstance mockRefMol2 = mock(GKInstance.class);
+        when(mockRefMol1.getAttributeValue(ReactomeJavaConstants.identifier)).thenReturn("1");
+        when(mockRefMol2.getAttributeValue(ReactomeJavaConstants.identifier)).thenReturn("2");
+        List<String> chEBIIds = Arrays.asList("1", "2", "3");
+
+        when(mockDbAdaptor.fetchInstanceByAttribute(
+            anyString(),
+            anyString(),
+            anyString(),
+            any()
+        )).thenReturn(Arrays.asList(mockRefMol1, mockRefMol2));
+
+        // Execute
+        ListMultimap<String, GKInstance> result = dbInteractor.getReferenceMoleculesWithChEBIIdentifiers(chEBIIds);
+
+        // Verify
+        assertEquals(Collections.singletonList(mockRefMol1), result.get("1"));
+        assertEquals(Collections.singletonList(mockRefMol2), result.get("2"));
+        assertTrue(result.get("3").isEmpty());
+        verify(mockDbAdaptor, times(1)).fetchInstanceByAttribute(
+            eq("ReferenceMolecule"),
+            eq("identifier"),
+            eq("="),
+            eq(chEBIIds)
+        );
+    }
+
+    @Test
+    void testIndexReferenceMoleculeIdentifiers() throws Exception {
+        // Setup
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        SchemaClass mockReferenceEntityClass = mock(SchemaClass.class);
+        SchemaAttribute mockIdentifierAttribute = mock(SchemaAttribute.class);
+        ResultSet mockResultSet = mock(ResultSet.class);
+        GKInstance mockRefMol2 = mock(GKInstance.class);
+
+        when(mockDbAdaptor.getSchema()).thenReturn(mockSchema);
+        when(mockSchema.getClassByName(ReactomeJavaConstants.ReferenceMolecule))
+            .thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.identifier))
+            .thenReturn(mockIdentifierAttribute);
+        when(mockIdentifierAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+
+        when(mockDbAdaptor.executeQuery(anyString(), anyList())).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getLong(1)).thenReturn(1L, 2L);
+        when(mockResultSet.getString(2)).thenReturn("15377", "15377");
+        when(mockResultSet.getString(3)).thenReturn(ReactomeJavaConstants.ReferenceMolecule);
+        when(mockResultSet.getString(4)).thenReturn("water [ChEBI:15377]");
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.ReferenceMolecule, 1L)).thenReturn(mockRefMol);
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.ReferenceMolecule, 2L)).thenReturn(mockRefMol2);
+
+        // Execute
+        dbInteractor.indexReferenceMoleculeIdentifiers();
+        List<GKInstance> result = dbInteractor.getReferenceMoleculesWithChEBIIdentifier("15377");
+        ListMultimap<String, GKInstance> results =
+            dbInteractor.getReferenceMoleculesWithChEBIIdentifiers(Arrays.asList("15377", "16236"));
+
+        // Verify
+        assertEquals(Arrays.asList(mockRefMol, mockRefMol2), result);
+        assertEquals(Arrays.asList(mockRefMol, mockRefMol2), results.get("15377"));
+        assertTrue(results.get("16236").isEmpty());
+        verify(mockDbAdaptor).executeQuery(
+            contains("FROM ReferenceMolecule m JOIN ReferenceEntity i ON i.DB_ID = m.DB_ID"), eq(List.of())
+        );
+        verify(mockDbAdaptor, never()).fetchInstanceByAttribute(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void testIndexReferenceMoleculeIdentifiers_FetchesOnlyLookedUpInstances() throws Exception {
+        // Setup
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        SchemaClass mockReferenceEntityClass = mock(SchemaClass.class);
+        SchemaAttribute mockIdentifierAttribute = mock(SchemaAttribute.class);
+        ResultSet mockResultSet = mock(ResultSet.class);
+
+        when(mockDbAdaptor.getSchema()).thenReturn(mockSchema);
+        when(mockSchema.getClassByName(ReactomeJavaConstants.ReferenceMolecule))
+            .thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.identifier))
+            .thenReturn(mockIdentifierAttribute);
+        when(mockIdentifierAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+
+        when(mockDbAdaptor.executeQuery(anyString(), anyList())).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getLong(1)).thenReturn(1L, 2L);
+        when(mockResultSet.getString(2)).thenReturn("15377", "16236");
+        when(mockResultSet.getString(3)).thenReturn(ReactomeJavaConstants.ReferenceMolecule);
+        when(mockResultSet.getString(4)).thenReturn("water [ChEBI:15377]", "ethanol [ChEBI:16236]");
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.ReferenceMolecule, 1L)).thenReturn(mockRefMol);
+
+        // Execute
+        dbInteractor.indexReferenceMoleculeIdentifiers();
+        verify(mockDbAdaptor, never()).getInstance(anyString(), anyLong());
+        List<GKInstance> result = dbInteractor.getReferenceMoleculesWithChEBIIdentifier("15377");
+
+        // Verify
+        assertEquals(Collections.singletonList(mockRefMol), result);
+        verify(mockRefMol).setDisplayName("water [ChEBI:15377]");
+        verify(mockDbAdaptor).getInstance(ReactomeJavaConstants.ReferenceMolecule, 1L);
+        verify(mockDbAdaptor, never()).getInstance(ReactomeJavaConstants.ReferenceMolecule, 2L);
+    }
+
+    @Test
+    void testLoadReferenceMoleculeProjections() throws Exception {
+        // Setup
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        stubReferenceMoleculeQueries(Arrays.asList("water", "oxidane"), "H2O", 10L);
+
+        // Execute
+        dbInteractor.loadReferenceMoleculeProjections(Collections.singletonList(mockRefMol));
+        ChEBIMoleculeProjection result = dbInteractor.getChEBIMoleculeProjection(mockRefMol);
+
+        // Verify
+        assertEquals("15377", result.getIdentifier());
+        assertEquals(Arrays.asList("water", "oxidane"), result.getNames());
+        assertEquals("H2O", result.getFormula());
+        assertEquals(10L, result.getCreatedInstanceEditDbId());
+        verify(mockDbAdaptor).loadInstanceAttributeValues(
+            eq(Collections.singletonList(mockRefMol)), aryEq(new String[] {ReactomeJavaConstants.identifier})
+        );
+        verify(mockDbAdaptor).executeQuery(
+            contains("LEFT JOIN ReferenceEntity i ON i.DB_ID = d.DB_ID LEFT JOIN ReferenceMolecule f"), eq(List.of(1L))
+        );
+        verify(mockRefMol, never()).getAttributeValue(anyString());
+        verify(mockRefMol, never()).getAttributeValuesList(anyString());
+        assertFalse(dbInteractor.isLoadedForDecision(mockRefMol));
+    }
+
+    @Test
+    void testLoadReportedInstanceCreators() throws Exception {
+        // Setup
+        SchemaClass mockInstanceEditClass = mock(SchemaClass.class);
+        SchemaAttribute mockAuthorAttribute = mock(SchemaAttribute.class);
+
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        stubReferenceMoleculeQueries(Collections.singletonList("water"), "H2O", 10L);
+        stubReferrerQueries(Collections.singletonList("water"));
+        dbInteractor.loadReferenceMoleculeProjections(Collections.singletonList(mockRefMol));
+        dbInteractor.loadReferenceMoleculeReferrers(Collections.singletonList(mockRefMol));
+
+        when(mockSchema.getClassByName(ReactomeJavaConstants.InstanceEdit)).thenReturn(mockInstanceEditClass);
+        when(mockInstanceEditClass.getAttribute(ReactomeJavaConstants.author)).thenReturn(mockAuthorAttribute);
+        when(mockInstanceEditClass.getName()).thenReturn(ReactomeJavaConstants.InstanceEdit);
+        when(mockAuthorAttribute.getOrigin()).thenReturn(mockInstanceEditClass);
+        when(mockAuthorAttribute.isMultiple()).thenReturn(true);
+
+        ResultSet mockAuthorResultSet =
+            mockResultSet(new Object[] {10L, PERSON_ID, ReactomeJavaConstants.Person, "Curator, A"});
+        when(mockDbAdaptor.executeQuery(
+            contains("FROM InstanceEdit_2_author a JOIN DatabaseObject d ON d.DB_ID = a.author"), eq(List.of(10L, 11L))
+        )).thenReturn(mockAuthorResultSet);
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.Person, PERSON_ID)).thenReturn(mockPersonInstance);
+
+        // Execute
+        dbInteractor.loadReportedInstanceCreators(Collections.singletonList(mockRefMol));
+
+        // Verify
+        assertEquals(mockPersonInstance, dbInteractor.getReferenceMoleculeCreator(mockRefMol));
+        assertTrue(dbInteractor.getCreatorCache().isCreatorCached(11L));
+        assertNull(dbInteractor.getCreatorCache().getCachedCreator(11L));
+        verify(mockPersonInstance).setDisplayName("Curator, A");
+        verify(mockRefMol, never()).getAttributeValue(ReactomeJavaConstants.created);
+    }
+
+    @Test
+    void testLoadReferenceMoleculeReferrers() throws Exception {
+        // Setup
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        stubReferenceMoleculeQueries(Collections.singletonList("water"), "H2O", 10L);
+        stubReferrerQueries(Arrays.asList("water", "H2O"));
+        dbInteractor.loadReferenceMoleculeProjections(Collections.singletonList(mockRefMol));
+
+        // Execute
+        dbInteractor.loadReferenceMoleculeReferrers(Collections.singletonList(mockRefMol));
+        List<Long> result = dbInteractor.getReferenceMoleculeReferrerDbIds(mockRefMol);
+
+        // Verify
+        assertEquals(Collections.singletonList(2L), result);
+        assertTrue(dbInteractor.isLoadedForDecision(mockRefMol));
+        verify(mockDbAdaptor).executeQuery(contains("FROM SimpleEntity r JOIN DatabaseObject d"), eq(List.of(1L)));
+        verify(mockDbAdaptor).executeQuery(contains("FROM PhysicalEntity_2_name n"), eq(List.of(2L)));
+        verify(mockDbAdaptor, never()).getInstance(anyString(), anyLong());
+        verify(mockRefMol, never()).getReferers(anyString());
+    }
 //
 //    @Test
 //    void testUpdateSimpleEntityReferrersNames() throws Exception {
@@ -205,7 +490,7 @@ public class DBInteractorTest {
 
         // Verify
         assertFalse(result);
-        verify(mockDbAdaptor, never()).updateInstanceAttribute(any(GKInstance.class), any(String.class));
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
     }
 
     @Test
@@ -226,7 +511,7 @@ public class DBInteractorTest {
         assertEquals("Simple entity has no names", exception.getMessage());
 
         // Verify no updates were made
-        verify(mockDbAdaptor, never()).updateInstanceAttribute(any(GKInstance.class), any(String.class));
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
     }
 
     @Test
@@ -251,7 +536,7 @@ public class DBInteractorTest {
         assertEquals("Reference molecule has no names", exception.getMessage());
 
         // Verify no updates were made
-        verify(mockDbAdaptor, never()).updateInstanceAttribute(any(GKInstance.class), any(String.class));
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
     }
 
 
@@ -281,7 +566,7 @@ public class DBInteractorTest {
         // Verify
         assertTrue(result);
         verify(mockSimpleEntity).setAttributeValue(eq(ReactomeJavaConstants.name), any(List.class));
-        verify(mockDbAdaptor).updateInstanceAttribute(mockSimpleEntity, ReactomeJavaConstants.name);
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockSimpleEntity, ReactomeJavaConstants.name));
     }
 
     @Test
@@ -312,7 +597,7 @@ public class DBInteractorTest {
         // Verify
         assertTrue(result);
         verify(mockSimpleEntity).setAttributeValue(eq(ReactomeJavaConstants.name), any(List.class));
-        verify(mockDbAdaptor).updateInstanceAttribute(mockSimpleEntity, ReactomeJavaConstants.name);
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockSimpleEntity, ReactomeJavaConstants.name));
     }
 
     @Test
@@ -334,10 +619,223 @@ public class DBInteractorTest {
 
         // Verify
         assertFalse(result);
-        verify(mockDbAdaptor, never()).updateInstanceAttribute(any(GKInstance.class), any(String.class));
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
     }
 
 
+    @Test
+    void testDecideReferenceMoleculeChanges() throws Exception {
+        // Setup
+        when(mockRefMol.getReferers(ReactomeJavaConstants.referenceEntity))
+            .thenReturn(Collections.singletonList(mockSimpleEntity));
+        when(mockSimpleEntity.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(Arrays.asList("Water (curated)", "Other")));
+        when(mockRefMol.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(Collections.singletonList("Old Water")));
+        when(mockRefMol.getAttributeValue(ReactomeJavaConstants.formula)).thenReturn("H2O");
+
+        // Execute
+        ReferenceMoleculeChanges changes = dbInteractor.decideReferenceMoleculeChanges(mockRefMol, "Water", "H2O");
+
+        // Verify
+        assertTrue(changes.isReferenceMoleculeChanged());
+        assertEquals(Arrays.asList("Water", "Old Water"), changes.getUpdatedNames());
+        assertNull(changes.getUpdatedFormula());
+        assertEquals(1, changes.getSimpleEntityNameChanges().size());
+        assertEquals(
+            Arrays.asList("Water (curated)", "Water", "Old Water", "Other"),
+            changes.getSimpleEntityNameChanges().get(0).getUpdatedNames()
+        );
+        verify(mockRefMol, never()).setAttributeValue(anyString(), any());
+        verify(mockSimpleEntity, never()).setAttributeValue(anyString(), any());
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
+    }
+
+    @Test
+    void testApplyReferenceMoleculeChanges() throws Exception {
+        // Setup
+        when(mockRefMol.getReferers(ReactomeJavaConstants.referenceEntity))
+            .thenReturn(Collections.singletonList(mockSimpleEntity));
+        when(mockSimpleEntity.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(Arrays.asList("Water (curated)", "Other")));
+        when(mockRefMol.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(Collections.singletonList("Water")));
+        when(mockRefMol.getAttributeValue(ReactomeJavaConstants.formula)).thenReturn("H2O");
+        DBInteractor spyDbInteractor = spy(dbInteractor);
+        doReturn(mock(GKInstance.class)).when(spyDbInteractor).getInstanceEdit();
+
+        ReferenceMoleculeChanges changes = spyDbInteractor.decideReferenceMoleculeChanges(mockRefMol, "Water", "H2O");
+
+        // Execute
+        boolean result = spyDbInteractor.applyReferenceMoleculeChanges(changes);
+
+        // Verify
+        assertFalse(result);
+        verify(mockSimpleEntity).setAttributeValue(
+            ReactomeJavaConstants.name, Arrays.asList("Water (curated)", "Water", "Other")
+        );
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockSimpleEntity, ReactomeJavaConstants.name));
+        verify(mockRefMol, never()).setAttributeValue(anyString(), any());
+    }
+
+    @Test
+    void testApplyReferenceMoleculeChanges_StaleDecision() throws Exception {
+        // Setup
+        when(mockRefMol.getReferers(ReactomeJavaConstants.referenceEntity))
+            .thenReturn(Collections.singletonList(mockSimpleEntity));
+        List<String> decidedNames = Arrays.asList("Water (curated)", "Other");
+        when(mockSimpleEntity.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(decidedNames))
+            // Names as changed by another reference molecule's changes applied after this decision was made
+            .thenReturn(new ArrayList<>(Arrays.asList("Water (curated)", "Water", "Other")));
+        when(mockRefMol.getAttributeValuesList(ReactomeJavaConstants.name))
+            .thenReturn(new ArrayList<>(Collections.singletonList("Water")));
+        when(mockRefMol.getAttributeValue(ReactomeJavaConstants.formula)).thenReturn("H2O");
+
+        ReferenceMoleculeChanges changes = dbInteractor.decideReferenceMoleculeChanges(mockRefMol, "Water", "H2O");
+
+        // Execute
+        boolean result = dbInteractor.applyReferenceMoleculeChanges(changes);
+
+        // Verify
+        assertFalse(result);
+        assertEquals(1, changes.getSimpleEntityNameChanges().size());
+        verify(mockSimpleEntity, never()).setAttributeValue(anyString(), any());
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
+    }
+
+    @Test
+    void testApplyReferenceMoleculeChanges_LoadedProjections() throws Exception {
+        // Setup
+        SchemaClass mockSimpleEntityInstanceClass = mock(SchemaClass.class);
+        SchemaAttribute mockModifiedAttribute = mock(SchemaAttribute.class);
+
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        stubReferenceMoleculeQueries(Collections.singletonList("Water"), "H2O", 10L);
+        stubReferrerQueries(Arrays.asList("Water (curated)", "Other"));
+        dbInteractor.loadReferenceMoleculeProjections(Collections.singletonList(mockRefMol));
+        dbInteractor.loadReferenceMoleculeReferrers(Collections.singletonList(mockRefMol));
+
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.SimpleEntity, 2L)).thenReturn(mockSimpleEntity);
+        when(mockSimpleEntity.getSchemClass()).thenReturn(mockSimpleEntityInstanceClass);
+        when(mockSimpleEntityInstanceClass.getAttribute(ReactomeJavaConstants.modified)).thenReturn(mockModifiedAttribute);
+        DBInteractor spyDbInteractor = spy(dbInteractor);
+        doReturn(mock(GKInstance.class)).when(spyDbInteractor).getInstanceEdit();
+
+        // Execute
+        ReferenceMoleculeChanges changes = spyDbInteractor.decideReferenceMoleculeChanges(mockRefMol, "Water", "H2O");
+        spyDbInteractor.loadInstancesToWrite(Collections.singletonList(changes));
+        boolean result = spyDbInteractor.applyReferenceMoleculeChanges(changes);
+
+        // Verify
+        assertFalse(result);
+        verify(mockDbAdaptor).loadInstanceAttributeValues(
+            eq(Collections.singletonList(mockSimpleEntity)),
+            aryEq(new String[] {ReactomeJavaConstants.name, ReactomeJavaConstants.modified})
+        );
+        verify(mockSimpleEntity).setAttributeValue(
+            ReactomeJavaConstants.name, Arrays.asList("Water (curated)", "Water", "Other")
+        );
+        verify(mockSimpleEntity, atLeastOnce()).setDisplayName("water [cytosol]");
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockSimpleEntity, ReactomeJavaConstants.name));
+        assertTrue(
+            spyDbInteractor.decideReferenceMoleculeChanges(mockRefMol, "Water", "H2O")
+                .getSimpleEntityNameChanges().isEmpty()
+        );
+        verify(mockRefMol, never()).getAttributeValuesList(anyString());
+        verify(mockRefMol, never()).getReferers(anyString());
+    }
+
+    @Test
+    void testIsLoadedForDecision_ReferrersNotIndexed() throws Exception {
+        // Execute
+        boolean result = dbInteractor.isLoadedForDecision(mockRefMol);
+
+        // Verify
+        assertFalse(result);
+        verify(mockRefMol, never()).getAttributeValuesList(anyString());
+    }
+
+    @Test
+    void testTakePlannedChanges() throws Exception {
+        // Setup
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        when(mockRefMol.getAttributeValue(ReactomeJavaConstants.formula)).thenReturn("H2O");
+        when(mockRefMol.getAttributeValuesList(ReactomeJavaConstants.formula)).thenReturn(List.of("H2O2"));
+        when(mockRefMol.getDBID()).thenReturn(1L);
+        when(mockRefMol.getSchemClass()).thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceMolecule);
+        dbInteractor.updateReferenceMoleculeFormula(mockRefMol, "H2O2");
+
+        // Execute
+        List<ChangePlan.Change> changes = dbInteractor.takePlannedChanges();
+
+        // Verify
+        assertEquals(1, changes.size());
+        assertEquals(1L, changes.get(0).getDbId());
+        assertEquals(ReactomeJavaConstants.ReferenceMolecule, changes.get(0).getClassName());
+        assertEquals(ReactomeJavaConstants.formula, changes.get(0).getAttributeName());
+        assertEquals(List.of("H2O2"), changes.get(0).getValues());
+        assertEquals(List.of("H2O"), changes.get(0).getPersistedValues());
+        assertEquals(0, dbInteractor.getUnitOfWork().getDirtyInstanceCount());
+        verify(mockDbAdaptor, never()).getConnection();
+    }
+
+    @Test
+    void testApplyChangePlan() throws Exception {
+        // Setup
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        SchemaAttribute mockFormulaAttribute = mock(SchemaAttribute.class);
+        GKInstance mockChangedRefMol = mock(GKInstance.class);
+
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.ReferenceMolecule, 1L)).thenReturn(mockRefMol);
+        when(mockDbAdaptor.getInstance(ReactomeJavaConstants.ReferenceMolecule, 2L)).thenReturn(mockChangedRefMol);
+        when(mockRefMol.getAttributeValuesList(ReactomeJavaConstants.formula)).thenReturn(List.of("H2O"));
+        when(mockRefMol.getSchemClass()).thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.formula)).thenReturn(mockFormulaAttribute);
+        when(mockFormulaAttribute.isMultiple()).thenReturn(false);
+        // Edited by a curator after the plan was made
+        when(mockChangedRefMol.getAttributeValuesList(ReactomeJavaConstants.formula)).thenReturn(List.of("HO"));
+
+        List<ChangePlan.Change> changes = Arrays.asList(
+            new ChangePlan.Change(1L, ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.formula,
+                List.of("H2O2"), List.of("H2O")),
+            new ChangePlan.Change(2L, ReactomeJavaConstants.ReferenceMolecule, ReactomeJavaConstants.formula,
+                List.of("CH4"), List.of("C"))
+        );
+
+        // Execute
+        int skippedInstanceCount = dbInteractor.applyChangePlan(changes);
+
+        // Verify
+        assertEquals(1, skippedInstanceCount);
+        verify(mockDbAdaptor).loadInstanceAttributeValues(
+            eq(Arrays.asList(mockRefMol, mockChangedRefMol)), aryEq(new String[] {ReactomeJavaConstants.formula})
+        );
+        verify(mockRefMol).setAttributeValue(ReactomeJavaConstants.formula, "H2O2");
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockRefMol, ReactomeJavaConstants.formula));
+        verify(mockChangedRefMol, never()).setAttributeValue(anyString(), any());
+        assertFalse(dbInteractor.getUnitOfWork().isDirty(mockChangedRefMol, ReactomeJavaConstants.formula));
+    }
+
+    @Test
+    void testUseInstanceEdit() throws Exception {
+        // Setup
+        SchemaClass mockInstanceEditClass = mock(SchemaClass.class);
+        when(mockDbAdaptor.fetchInstance(9000L)).thenReturn(mockInstanceEdit);
+        when(mockInstanceEdit.getSchemClass()).thenReturn(mockInstanceEditClass);
+        when(mockInstanceEditClass.isa(ReactomeJavaConstants.InstanceEdit)).thenReturn(true);
+        when(mockInstanceEdit.getDBID()).thenReturn(9000L);
+
+        // Execute
+        dbInteractor.useInstanceEdit(9000L);
+
+        // Verify
+        assertEquals(mockInstanceEdit, dbInteractor.getInstanceEdit());
+        assertEquals(9000L, dbInteractor.getInstanceEditDbId());
+        verify(mockDbAdaptor, never()).getSchema();
+    }
+
     @Test
     void testUpdateModifiedInstanceEdits() throws Exception {
         // Setup
@@ -361,10 +859,97 @@ public class DBInteractorTest {
                 eq(ReactomeJavaConstants.modified),
                 same(mockInstanceEdit)
         );
-        verify(mockDbAdaptor).updateInstanceAttribute(
-                mockInstance,
-                ReactomeJavaConstants.modified
+        assertTrue(dbInteractor.getUnitOfWork().isDirty(mockInstance, ReactomeJavaConstants.modified));
+    }
+
+    /**
+     * Stubs the queries loadReferenceMoleculeProjections makes for mockRefMol (DB_ID 1, identifier 15377).
+     */
+    private void stubReferenceMoleculeQueries(List<String> names, String formula, Long createdInstanceEditDbId)
+        throws Exception {
+
+        SchemaClass mockReferenceMoleculeClass = mock(SchemaClass.class);
+        SchemaClass mockReferenceEntityClass = mock(SchemaClass.class);
+        SchemaAttribute mockIdentifierAttribute = mock(SchemaAttribute.class);
+        SchemaAttribute mockFormulaAttribute = mock(SchemaAttribute.class);
+        SchemaAttribute mockNameAttribute = mock(SchemaAttribute.class);
+
+        when(mockDbAdaptor.getSchema()).thenReturn(mockSchema);
+        when(mockSchema.getClassByName(ReactomeJavaConstants.ReferenceMolecule)).thenReturn(mockReferenceMoleculeClass);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.identifier))
+            .thenReturn(mockIdentifierAttribute);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.formula)).thenReturn(mockFormulaAttribute);
+        when(mockReferenceMoleculeClass.isValidAttribute(ReactomeJavaConstants.name)).thenReturn(true);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.name)).thenReturn(mockNameAttribute);
+        when(mockReferenceMoleculeClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceMolecule);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+        when(mockIdentifierAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockFormulaAttribute.getOrigin()).thenReturn(mockReferenceMoleculeClass);
+        when(mockNameAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockNameAttribute.isMultiple()).thenReturn(true);
+
+        ResultSet mockMoleculeResultSet = mockResultSet(new Object[] {1L, "15377", formula, createdInstanceEditDbId});
+        ResultSet mockNameResultSet = mockResultSet(
+            names.stream().map(name -> new Object[] {1L, name}).toArray(Object[][]::new)
+        );
+        when(mockDbAdaptor.executeQuery(contains("FROM DatabaseObject d LEFT JOIN"), eq(List.of(1L))))
+            .thenReturn(mockMoleculeResultSet);
+        when(mockDbAdaptor.executeQuery(contains("FROM ReferenceEntity_2_name n"), eq(List.of(1L))))
+            .thenReturn(mockNameResultSet);
+    }
+
+    /**
+     * Stubs the queries loadReferenceMoleculeReferrers makes for mockRefMol, which is referred to by one
+     * SimpleEntity (DB_ID 2, created by InstanceEdit 11).
+     */
+    private void stubReferrerQueries(List<String> names) throws Exception {
+        SchemaClass mockSimpleEntityClass = mock(SchemaClass.class);
+        SchemaClass mockPhysicalEntityClass = mock(SchemaClass.class);
+        SchemaAttribute mockReferenceEntityAttribute = mock(SchemaAttribute.class);
+        SchemaAttribute mockNameAttribute = mock(SchemaAttribute.class);
+
+        when(mockSchema.getClasses()).thenReturn(Collections.singletonList(mockSimpleEntityClass));
+        when(mockSchema.getClassByName(ReactomeJavaConstants.SimpleEntity)).thenReturn(mockSimpleEntityClass);
+        when(mockSimpleEntityClass.isValidAttribute(ReactomeJavaConstants.referenceEntity)).thenReturn(true);
+        when(mockSimpleEntityClass.getAttribute(ReactomeJavaConstants.referenceEntity))
+            .thenReturn(mockReferenceEntityAttribute);
+        when(mockSimpleEntityClass.isValidAttribute(ReactomeJavaConstants.name)).thenReturn(true);
+        when(mockSimpleEntityClass.getAttribute(ReactomeJavaConstants.name)).thenReturn(mockNameAttribute);
+        when(mockSimpleEntityClass.getName()).thenReturn(ReactomeJavaConstants.SimpleEntity);
+        when(mockPhysicalEntityClass.getName()).thenReturn(ReactomeJavaConstants.PhysicalEntity);
+        when(mockReferenceEntityAttribute.getOrigin()).thenReturn(mockSimpleEntityClass);
+        when(mockNameAttribute.getOrigin()).thenReturn(mockPhysicalEntityClass);
+        when(mockNameAttribute.isMultiple()).thenReturn(true);
+
+        ResultSet mockReferrerResultSet = mockResultSet(
+            new Object[] {2L, 1L, ReactomeJavaConstants.SimpleEntity, "water [cytosol]", 11L}
+        );
+        ResultSet mockNameResultSet = mockResultSet(
+            names.stream().map(name -> new Object[] {2L, name}).toArray(Object[][]::new)
         );
+        when(mockDbAdaptor.executeQuery(contains("FROM SimpleEntity r JOIN DatabaseObject d"), eq(List.of(1L))))
+            .thenReturn(mockReferrerResultSet);
+        when(mockDbAdaptor.executeQuery(contains("FROM PhysicalEntity_2_name n"), eq(List.of(2L))))
+            .thenReturn(mockNameResultSet);
     }
 
+    /**
+     * @return Result set returning the rows, whose values are read by column index from 1
+     */
+    private ResultSet mockResultSet(Object[]... rows) throws Exception {
+        ResultSet mockResultSet = mock(ResultSet.class);
+        int[] rowIndex = {-1};
+        Object[] lastValue = {null};
+        lenient().when(mockResultSet.next()).thenAnswer(invocation -> ++rowIndex[0] < rows.length);
+        lenient().when(mockResultSet.getLong(anyInt())).thenAnswer(invocation -> {
+            lastValue[0] = rows[rowIndex[0]][invocation.<Integer>getArgument(0) - 1];
+            return lastValue[0] != null ? ((Number) lastValue[0]).longValue() : 0L;
+        });
+        lenient().when(mockResultSet.getString(anyInt())).thenAnswer(invocation -> {
+            lastValue[0] = rows[rowIndex[0]][invocation.<Integer>getArgument(0) - 1];
+            return lastValue[0];
+        });
+        lenient().when(mockResultSet.wasNull()).thenAnswer(invocation -> lastValue[0] == null);
+        return mockResultSet;
+    }
 }
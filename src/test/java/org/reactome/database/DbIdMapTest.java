@@ -0,0 +1,56 @@
+package org.reactome.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbIdMapTest {
+
+    @Test
+    void get_ManySequentialDbIds_ReturnsValuePutForEach() {
+        DbIdMap<String> map = new DbIdMap<>();
+        for (long dbId = 1; dbId <= 10000; dbId++) {
+            map.put(dbId, "value" + dbId);
+        }
+
+        assertEquals(10000, map.size());
+        for (long dbId = 1; dbId <= 10000; dbId++) {
+            assertEquals("value" + dbId, map.get(dbId));
+        }
+        assertNull(map.get(10001L));
+        assertFalse(map.containsKey(0L));
+    }
+
+    @Test
+    void put_ExistingDbId_ReplacesValue() {
+        DbIdMap<String> map = new DbIdMap<>();
+        map.put(5L, "old");
+        map.put(5L, "new");
+
+        assertEquals(1, map.size());
+        assertEquals("new", map.get(5L));
+    }
+
+    @Test
+    void put_NonPositiveDbIdOrNullValue_Throws() {
+        DbIdMap<String> map = new DbIdMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0L, "value"));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1L, null));
+    }
+
+    @Test
+    void clear_ManyDbIds_RemovesAllAndAcceptsNewValues() {
+        DbIdMap<String> map = new DbIdMap<>();
+        for (long dbId = 1; dbId <= 100; dbId++) {
+            map.put(dbId, "value" + dbId);
+        }
+
+        map.clear();
+        map.put(7L, "new");
+
+        assertEquals(1, map.size());
+        assertNull(map.get(1L));
+        assertEquals("new", map.get(7L));
+    }
+}
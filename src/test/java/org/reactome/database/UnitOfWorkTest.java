@@ -0,0 +1,231 @@
+package org.reactome.database;
+
+import org.gk.model.GKInstance;
+import org.gk.model.ReactomeJavaConstants;
+import org.gk.persistence.MySQLAdaptor;
+import org.gk.schema.SchemaAttribute;
+import org.gk.schema.SchemaClass;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UnitOfWorkTest {
+
+    @Mock
+    private MySQLAdaptor mockDbAdaptor;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockStatement;
+
+    @Mock
+    private SchemaClass mockReferenceMoleculeClass;
+
+    @Mock
+    private SchemaClass mockReferenceEntityClass;
+
+    @Mock
+    private SchemaAttribute mockFormulaAttribute;
+
+    @Mock
+    private SchemaAttribute mockNameAttribute;
+
+    @Mock
+    private GKInstance mockRefMol1;
+
+    @Mock
+    private GKInstance mockRefMol2;
+
+    private UnitOfWork unitOfWork;
+
+    @BeforeEach
+    void setUp() {
+        unitOfWork = new UnitOfWork(mockDbAdaptor);
+    }
+
+    @Test
+    void testFlushNothingDirty() throws Exception {
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        verifyNoInteractions(mockDbAdaptor);
+    }
+
+    @Test
+    void testFlushBatchesIdenticalStatements() throws Exception {
+        // Setup
+        when(mockReferenceMoleculeClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceMolecule);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+        when(mockFormulaAttribute.getName()).thenReturn(ReactomeJavaConstants.formula);
+        when(mockFormulaAttribute.getOrigin()).thenReturn(mockReferenceMoleculeClass);
+        when(mockNameAttribute.getName()).thenReturn(ReactomeJavaConstants.name);
+        when(mockNameAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockNameAttribute.isMultiple()).thenReturn(true);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.formula)).thenReturn(mockFormulaAttribute);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.name)).thenReturn(mockNameAttribute);
+
+        for (GKInstance mockRefMol : Arrays.asList(mockRefMol1, mockRefMol2)) {
+            when(mockRefMol.getSchemClass()).thenReturn(mockReferenceMoleculeClass);
+            when(mockRefMol.getAttributeValue(mockFormulaAttribute)).thenReturn("H2O");
+            when(mockRefMol.getAttributeValuesList(mockNameAttribute)).thenReturn(Arrays.asList("water", "oxidane"));
+        }
+        when(mockRefMol1.getDBID()).thenReturn(1L);
+        when(mockRefMol2.getDBID()).thenReturn(2L);
+        when(mockDbAdaptor.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
+
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name);
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.formula);
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name);
+        unitOfWork.registerDirty(mockRefMol2, ReactomeJavaConstants.formula);
+        unitOfWork.registerDirty(mockRefMol2, ReactomeJavaConstants.name);
+
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        verify(mockConnection).prepareStatement("DELETE FROM ReferenceEntity_2_name WHERE DB_ID=?");
+        verify(mockConnection).prepareStatement("INSERT INTO ReferenceEntity_2_name SET DB_ID=?, name_rank=?, name=?");
+        verify(mockConnection).prepareStatement("UPDATE ReferenceMolecule SET formula=? WHERE DB_ID=?");
+        verify(mockStatement, times(8)).addBatch();
+        verify(mockStatement, times(3)).executeBatch();
+        verify(mockDbAdaptor, never()).updateInstanceAttribute(any(GKInstance.class), anyString());
+        assertEquals(0, unitOfWork.getDirtyInstanceCount());
+    }
+
+    @Test
+    void testFlushStoresNewInstanceValues() throws Exception {
+        // Setup
+        SchemaAttribute mockModifiedAttribute = mock(SchemaAttribute.class);
+        SchemaClass mockInstanceEditClass = mock(SchemaClass.class);
+        GKInstance mockInstanceEdit = mock(GKInstance.class);
+
+        when(mockRefMol1.getSchemClass()).thenReturn(mockReferenceMoleculeClass);
+        when(mockRefMol1.getDBID()).thenReturn(1L);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.modified))
+            .thenReturn(mockModifiedAttribute);
+        when(mockReferenceMoleculeClass.getName()).thenReturn(ReactomeJavaConstants.DatabaseObject);
+        when(mockModifiedAttribute.getName()).thenReturn(ReactomeJavaConstants.modified);
+        when(mockModifiedAttribute.getOrigin()).thenReturn(mockReferenceMoleculeClass);
+        when(mockModifiedAttribute.isMultiple()).thenReturn(true);
+        when(mockModifiedAttribute.isInstanceTypeAttribute()).thenReturn(true);
+        when(mockRefMol1.getAttributeValuesList(mockModifiedAttribute)).thenReturn(Arrays.asList(mockInstanceEdit));
+        when(mockInstanceEdit.getDBID()).thenReturn(null, 3L);
+        when(mockInstanceEdit.getSchemClass()).thenReturn(mockInstanceEditClass);
+        when(mockInstanceEditClass.getName()).thenReturn(ReactomeJavaConstants.InstanceEdit);
+        when(mockDbAdaptor.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
+
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.modified);
+
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        verify(mockDbAdaptor).storeInstance(mockInstanceEdit);
+        verify(mockConnection).prepareStatement(
+            "INSERT INTO DatabaseObject_2_modified SET DB_ID=?, modified_rank=?, modified=?, modified_class=?"
+        );
+        verify(mockStatement).setObject(3, 3L);
+        verify(mockStatement).setObject(4, ReactomeJavaConstants.InstanceEdit);
+    }
+
+    @Test
+    void testFlushAppendedValueInsertsOnlyNewRow() throws Exception {
+        // Setup
+        mockNameAttribute(Arrays.asList("water", "oxidane"));
+
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name, List.of("water"));
+
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        verify(mockConnection).prepareStatement("INSERT INTO ReferenceEntity_2_name SET DB_ID=?, name_rank=?, name=?");
+        verify(mockConnection, times(1)).prepareStatement(anyString());
+        verify(mockStatement).setObject(2, 1);
+        verify(mockStatement).setObject(3, "oxidane");
+        verify(mockStatement, times(1)).addBatch();
+    }
+
+    @Test
+    void testFlushPrependedValueShiftsRanks() throws Exception {
+        // Setup
+        mockNameAttribute(Arrays.asList("oxidane", "water", "dihydrogen oxide"));
+
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name, List.of("water", "dihydrogen oxide"));
+
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        InOrder inOrder = inOrder(mockConnection);
+        inOrder.verify(mockConnection).prepareStatement(
+            "UPDATE ReferenceEntity_2_name SET name_rank=name_rank+? WHERE DB_ID=? AND name_rank>=?"
+        );
+        inOrder.verify(mockConnection).prepareStatement(
+            "INSERT INTO ReferenceEntity_2_name SET DB_ID=?, name_rank=?, name=?"
+        );
+        verify(mockConnection, times(2)).prepareStatement(anyString());
+        verify(mockStatement).setObject(3, "oxidane");
+        verify(mockStatement, times(2)).addBatch();
+    }
+
+    @Test
+    void testFlushChangedMiddleValuesRewritesOnlyChangedRanks() throws Exception {
+        // Setup
+        mockNameAttribute(Arrays.asList("water", "oxidane", "aqua", "H2O"));
+
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name, List.of("water", "hydrogen oxide", "H2O"));
+        // A second registration must not replace the persisted values
+        unitOfWork.registerDirty(mockRefMol1, ReactomeJavaConstants.name, List.of("water", "H2O"));
+
+        // Execute
+        unitOfWork.flush();
+
+        // Verify
+        InOrder inOrder = inOrder(mockConnection);
+        inOrder.verify(mockConnection).prepareStatement(
+            "DELETE FROM ReferenceEntity_2_name WHERE DB_ID=? AND name_rank>=? AND name_rank<?"
+        );
+        inOrder.verify(mockConnection).prepareStatement(
+            "UPDATE ReferenceEntity_2_name SET name_rank=name_rank+? WHERE DB_ID=? AND name_rank>=?"
+        );
+        inOrder.verify(mockConnection).prepareStatement(
+            "INSERT INTO ReferenceEntity_2_name SET DB_ID=?, name_rank=?, name=?"
+        );
+        verify(mockStatement).setObject(3, "oxidane");
+        verify(mockStatement).setObject(3, "aqua");
+        verify(mockStatement, times(4)).addBatch();
+    }
+
+    private void mockNameAttribute(List<String> names) throws Exception {
+        when(mockRefMol1.getSchemClass()).thenReturn(mockReferenceMoleculeClass);
+        when(mockRefMol1.getDBID()).thenReturn(1L);
+        when(mockRefMol1.getAttributeValuesList(mockNameAttribute)).thenReturn(names);
+        when(mockReferenceMoleculeClass.getAttribute(ReactomeJavaConstants.name)).thenReturn(mockNameAttribute);
+        when(mockReferenceEntityClass.getName()).thenReturn(ReactomeJavaConstants.ReferenceEntity);
+        when(mockNameAttribute.getName()).thenReturn(ReactomeJavaConstants.name);
+        when(mockNameAttribute.getOrigin()).thenReturn(mockReferenceEntityClass);
+        when(mockNameAttribute.isMultiple()).thenReturn(true);
+        when(mockDbAdaptor.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockStatement);
+    }
+}
@@ -0,0 +1,86 @@
+package org.reactome.reports;
+
+import org.gk.model.GKInstance;
+import org.gk.model.ReactomeJavaConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CreatorCacheTest {
+
+    @Mock
+    private GKInstance mockInstance;
+
+    @Mock
+    private GKInstance mockOtherInstance;
+
+    @Mock
+    private GKInstance mockInstanceEdit;
+
+    @Mock
+    private GKInstance mockCreator;
+
+    private CreatorCache creatorCache;
+
+    @BeforeEach
+    void setUp() {
+        creatorCache = new CreatorCache();
+    }
+
+    @Test
+    void getCreator_SharedInstanceEdit_ReadsAuthorOnce() throws Exception {
+        // Arrange
+        when(mockInstance.getAttributeValue(ReactomeJavaConstants.created)).thenReturn(mockInstanceEdit);
+        when(mockOtherInstance.getAttributeValue(ReactomeJavaConstants.created)).thenReturn(mockInstanceEdit);
+        when(mockInstanceEdit.getDBID()).thenReturn(1L);
+        when(mockInstanceEdit.getAttributeValue(ReactomeJavaConstants.author)).thenReturn(mockCreator);
+
+        // Act
+        GKInstance creator = creatorCache.getCreator(mockInstance);
+        GKInstance otherCreator = creatorCache.getCreator(mockOtherInstance);
+
+        // Assert
+        assertEquals(mockCreator, creator);
+        assertEquals(mockCreator, otherCreator);
+        verify(mockInstanceEdit, times(1)).getAttributeValue(ReactomeJavaConstants.author);
+    }
+
+    @Test
+    void getCreator_CachedCreator_SkipsAuthorRead() throws Exception {
+        // Arrange
+        when(mockInstance.getAttributeValue(ReactomeJavaConstants.created)).thenReturn(mockInstanceEdit);
+        when(mockInstanceEdit.getDBID()).thenReturn(1L);
+        creatorCache.cacheCreator(1L, null);
+
+        // Act
+        GKInstance creator = creatorCache.getCreator(mockInstance);
+
+        // Assert
+        assertNull(creator);
+        assertEquals("AUTHOR UNKNOWN", creatorCache.getCreatorName(creator));
+        verify(mockInstanceEdit, never()).getAttributeValue(ReactomeJavaConstants.author);
+    }
+
+    @Test
+    void getCachedCreator_CachedAndUncachedInstanceEdits_ReturnsRecordedCreators() {
+        // Arrange
+        creatorCache.cacheCreator(1L, mockCreator);
+        creatorCache.cacheCreator(2L, null);
+
+        // Act
+        GKInstance creator = creatorCache.getCachedCreator(1L);
+        GKInstance missingCreator = creatorCache.getCachedCreator(2L);
+        GKInstance uncachedCreator = creatorCache.getCachedCreator(3L);
+
+        // Assert
+        assertEquals(mockCreator, creator);
+        assertNull(missingCreator);
+        assertNull(uncachedCreator);
+    }
+}
@@ -0,0 +1,81 @@
+package org.reactome.webservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactome.model.ChEBIEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChEBIEntityCacheTest {
+
+    private static final Instant FETCH_TIME = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getFreshEntries_EntriesPutInEarlierRun_ReturnsThemIncludingNonExistentResults() throws IOException {
+        Path cacheFile = tempDir.resolve("chebi-entities.jsonl");
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+
+        try (ChEBIEntityCache cache = new ChEBIEntityCache(cacheFile, Duration.ofHours(24), clockAt(FETCH_TIME))) {
+            cache.put(Map.of("15377", Optional.of(water), "99999999", Optional.empty()));
+        }
+
+        ChEBIEntityCache reloadedCache =
+            new ChEBIEntityCache(cacheFile, Duration.ofHours(24), clockAt(FETCH_TIME.plusSeconds(60)));
+        Map<String, Optional<ChEBIEntity>> freshEntries =
+            reloadedCache.getFreshEntries(List.of("15377", "99999999", "15378"));
+
+        assertEquals(2, freshEntries.size());
+        assertEquals("water", freshEntries.get("15377").get().getName());
+        assertEquals("H2O", freshEntries.get("15377").get().getFormula());
+        assertFalse(freshEntries.get("99999999").isPresent());
+        assertEquals(2, reloadedCache.getHitCount());
+        assertEquals(1, reloadedCache.getMissCount());
+    }
+
+    @Test
+    void getFreshEntries_EntryOlderThanTimeToLive_IsCountedAsExpired() throws IOException {
+        Path cacheFile = tempDir.resolve("chebi-entities.jsonl");
+
+        try (ChEBIEntityCache cache = new ChEBIEntityCache(cacheFile, Duration.ofHours(1), clockAt(FETCH_TIME))) {
+            cache.put(Map.of("15377", Optional.of(new ChEBIEntity("15377", "water", "H2O"))));
+        }
+
+        ChEBIEntityCache reloadedCache =
+            new ChEBIEntityCache(cacheFile, Duration.ofHours(1), clockAt(FETCH_TIME.plus(Duration.ofHours(2))));
+
+        assertTrue(reloadedCache.getFreshEntries(List.of("15377")).isEmpty());
+        assertEquals(1, reloadedCache.getExpiredCount());
+        assertEquals(0.0, reloadedCache.getHitRate());
+    }
+
+    @Test
+    void load_PartiallyWrittenLastLine_IsSkipped() throws IOException {
+        Path cacheFile = tempDir.resolve("chebi-entities.jsonl");
+        try (ChEBIEntityCache cache = new ChEBIEntityCache(cacheFile, Duration.ofHours(24), clockAt(FETCH_TIME))) {
+            cache.put(Map.of("15377", Optional.of(new ChEBIEntity("15377", "water", "H2O"))));
+        }
+        Files.writeString(cacheFile, Files.readString(cacheFile) + "{\"id\": \"153");
+
+        ChEBIEntityCache reloadedCache = new ChEBIEntityCache(cacheFile, Duration.ofHours(24), clockAt(FETCH_TIME));
+
+        assertEquals(1, reloadedCache.getFreshEntries(List.of("15377")).size());
+    }
+
+    private Clock clockAt(Instant instant) {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+}
@@ -7,15 +7,21 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactome.webservice.helpers.AdaptiveBatchSizer;
 import org.reactome.webservice.helpers.ChEBIAPIClient;
 import org.reactome.webservice.helpers.ChEBIEntityParser;
+import org.reactome.webservice.helpers.RequestObserver;
 import org.reactome.model.ChEBIEntity;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -154,7 +160,7 @@ class ChEBIEntityRetrieverTest {
     }
 
     @Test
-    void getChEBIEntities_DuplicateIdentifiers_ThrowsIllegalStateException() throws Exception {
+    void getChEBIEntities_DuplicateIdentifiers_FetchesOnceAndMapsEntityToBoth() throws Exception {
         // Arrange
         String chEBIId = "15377";
 
@@ -162,8 +168,24 @@ class ChEBIEntityRetrieverTest {
         when(mockGKInstance1.getAttributeValue("identifier")).thenReturn(chEBIId);
         when(mockGKInstance2.getAttributeValue("identifier")).thenReturn(chEBIId);
 
-        // Act & Assert
-        assertThrows(IllegalStateException.class, () -> retriever.getChEBIEntities(instances));
+        JSONObject responseJson = new JSONObject()
+            .put(chEBIId, new JSONObject()
+            .put("exists", true)
+            .put("data", new JSONObject().put("chebiId", chEBIId)));
+
+        ChEBIEntity expectedEntity = new ChEBIEntity(chEBIId, "water", "H2O");
+
+        when(mockApiClient.fetchCompounds(Set.of(chEBIId))).thenReturn(responseJson);
+        when(mockParser.parse(any())).thenReturn(expectedEntity);
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result = retriever.getChEBIEntities(instances);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(expectedEntity, result.get(mockGKInstance1).get());
+        assertEquals(expectedEntity, result.get(mockGKInstance2).get());
+        verify(mockApiClient, times(1)).fetchCompounds(any());
     }
 
     @Test
@@ -217,4 +239,261 @@ class ChEBIEntityRetrieverTest {
         assertTrue(result.get(mockGKInstance1).isPresent());
         assertFalse(result.get(mockGKInstance2).isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getChEBIEntitiesConcurrently_MultipleBatches_MergesAllBatchResults() throws Exception {
+        // Arrange
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("99999");
+
+        ChEBIEntity expectedEntity = new ChEBIEntity("15377", "water", "H2O");
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15377")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15377", Optional.of(expectedEntity))));
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("99999")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("99999", Optional.empty())));
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result = retriever.getChEBIEntities(instances, 1, 2);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(expectedEntity, result.get(mockGKInstance1).get());
+        assertFalse(result.get(mockGKInstance2).isPresent());
+        verify(mockApiClient, times(2)).fetchChEBIEntitiesAsync(any(), any(), any());
+    }
+
+    @Test
+    void getChEBIEntitiesConcurrently_BatchFails_PropagatesIOException() throws Exception {
+        // Arrange
+        List<GKInstance> instances = List.of(mockGKInstance1);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any()))
+            .thenReturn(CompletableFuture.failedFuture(new IOException("Network error")));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> retriever.getChEBIEntities(instances, 500, 4));
+    }
+
+    @Test
+    void getChEBIEntitiesConcurrently_IdentifierMissingFromResponse_ThrowsIllegalStateException() throws Exception {
+        // Arrange
+        List<GKInstance> instances = List.of(mockGKInstance1);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of()));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> retriever.getChEBIEntities(instances, 500, 4));
+    }
+
+    @Test
+    void getChEBIEntitiesConcurrently_FreshCacheEntries_OnlyFetchesUncachedIdentifiers() throws Exception {
+        // Arrange
+        ChEBIEntityCache mockCache = mock(ChEBIEntityCache.class);
+        retriever = new ChEBIEntityRetriever(mockApiClient, mockParser, mockCache);
+
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+
+        ChEBIEntity cachedEntity = new ChEBIEntity("15377", "water", "H2O");
+        ChEBIEntity fetchedEntity = new ChEBIEntity("15378", "hydron", "H");
+        when(mockCache.getFreshEntries(any())).thenReturn(Map.of("15377", Optional.of(cachedEntity)));
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15378")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15378", Optional.of(fetchedEntity))));
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result = retriever.getChEBIEntities(instances, 500, 4);
+
+        // Assert
+        assertEquals(cachedEntity, result.get(mockGKInstance1).get());
+        assertEquals(fetchedEntity, result.get(mockGKInstance2).get());
+        verify(mockApiClient, times(1)).fetchChEBIEntitiesAsync(any(), any(), any());
+        verify(mockCache).put(Map.of("15378", Optional.of(fetchedEntity)));
+    }
+
+    @Test
+    void getChEBIEntitiesAdaptively_RetryableStatusObserved_ShrinksLaterBatches() throws Exception {
+        // Arrange
+        GKInstance mockGKInstance3 = mock(GKInstance.class);
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2, mockGKInstance3);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+        when(mockGKInstance3.getAttributeValue("identifier")).thenReturn("15379");
+
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15377", "15378")), any(), any()))
+            .thenAnswer(invocation -> {
+                RequestObserver requestObserver = invocation.getArgument(2);
+                requestObserver.onResponse(2, 429, Duration.ofMillis(50), 0);
+                return CompletableFuture.completedFuture(Map.of("15377", Optional.empty(), "15378", Optional.empty()));
+            });
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15379")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15379", Optional.empty())));
+
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(2, 1, 4, Duration.ofSeconds(10), 1_000_000);
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result = retriever.getChEBIEntities(instances, batchSizer, 1);
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals(1, batchSizer.getBatchSize());
+        verify(mockApiClient, times(2)).fetchChEBIEntitiesAsync(any(), any(), eq(batchSizer));
+    }
+
+    @Test
+    void getChEBIEntitiesWithRecovery_PoisonedIdentifier_IsIsolatedAndOthersSucceed() throws Exception {
+        // Arrange
+        GKInstance mockGKInstance3 = mock(GKInstance.class);
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2, mockGKInstance3);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+        when(mockGKInstance3.getAttributeValue("identifier")).thenReturn("99999");
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+        ChEBIEntity hydron = new ChEBIEntity("15378", "hydron", "H");
+
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any())).thenAnswer(invocation -> {
+            Set<String> chEBIIdentifiers = invocation.getArgument(0);
+            if (chEBIIdentifiers.contains("99999")) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Bad request for 99999"));
+            }
+            Map<String, Optional<ChEBIEntity>> response = new HashMap<>();
+            chEBIIdentifiers.forEach(id -> response.put(id, Optional.of(id.equals("15377") ? water : hydron)));
+            return CompletableFuture.completedFuture(response);
+        });
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result =
+            retriever.getChEBIEntities(instances, AdaptiveBatchSizer.fixed(3), 1, 10);
+
+        // Assert
+        assertEquals(water, result.get(mockGKInstance1).get());
+        assertEquals(hydron, result.get(mockGKInstance2).get());
+        assertFalse(result.get(mockGKInstance3).isPresent());
+        assertEquals(Map.of(mockGKInstance3, "Bad request for 99999"), retriever.getFailedLookups());
+    }
+
+    @Test
+    void getChEBIEntitiesByIdentifier_PoisonedIdentifier_IsReportedAsFailedIdentifierLookup() throws Exception {
+        // Arrange
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any())).thenAnswer(invocation -> {
+            Set<String> chEBIIdentifiers = invocation.getArgument(0);
+            if (chEBIIdentifiers.contains("99999")) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Bad request for 99999"));
+            }
+            return CompletableFuture.completedFuture(Map.of("15377", Optional.of(water)));
+        });
+
+        // Act
+        Map<String, Optional<ChEBIEntity>> result = retriever.getChEBIEntitiesByIdentifier(
+            List.of("15377", "99999"), AdaptiveBatchSizer.fixed(2), 1, 10
+        );
+
+        // Assert
+        assertEquals(water, result.get("15377").get());
+        assertFalse(result.get("99999").isPresent());
+        assertEquals(Map.of("99999", "Bad request for 99999"), retriever.getFailedIdentifierLookups());
+        assertTrue(retriever.getFailedLookups().isEmpty());
+    }
+
+    @Test
+    void getChEBIEntitiesWithRecovery_SplitBatch_SendsSecondHalfOnlyOnceFirstHalfCompletes() throws Exception {
+        // Arrange
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+        CompletableFuture<Map<String, Optional<ChEBIEntity>>> firstHalfResponse = new CompletableFuture<>();
+        List<Set<String>> requests = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> firstHalfDoneAtSecondHalf = Collections.synchronizedList(new ArrayList<>());
+
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any())).thenAnswer(invocation -> {
+            Set<String> chEBIIdentifiers = invocation.getArgument(0);
+            requests.add(chEBIIdentifiers);
+            if (chEBIIdentifiers.size() > 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Bad request"));
+            }
+            if (chEBIIdentifiers.contains("15377")) {
+                CompletableFuture.runAsync(
+                    () -> firstHalfResponse.complete(Map.of("15377", Optional.empty())),
+                    CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)
+                );
+                return firstHalfResponse;
+            }
+            firstHalfDoneAtSecondHalf.add(firstHalfResponse.isDone());
+            return CompletableFuture.completedFuture(Map.of("15378", Optional.empty()));
+        });
+
+        // Act
+        retriever.getChEBIEntities(instances, AdaptiveBatchSizer.fixed(2), 1, 10);
+
+        // Assert
+        assertEquals(List.of(Set.of("15377", "15378"), Set.of("15377"), Set.of("15378")), requests);
+        assertEquals(List.of(true), firstHalfDoneAtSecondHalf);
+    }
+
+    @Test
+    void getChEBIEntitiesWithRecovery_MoreFailuresThanAllowed_PropagatesException() throws Exception {
+        // Arrange
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+        when(mockApiClient.fetchChEBIEntitiesAsync(any(), any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.failedFuture(new IOException("Service unavailable")));
+
+        // Act & Assert
+        assertThrows(IOException.class,
+            () -> retriever.getChEBIEntities(instances, AdaptiveBatchSizer.fixed(2), 1, 1));
+    }
+
+    @Test
+    void getChEBIEntitiesConcurrently_DuplicateIdentifiersAcrossBatches_FetchesEachIdentifierOnce() throws Exception {
+        // Arrange
+        GKInstance mockGKInstance3 = mock(GKInstance.class);
+        List<GKInstance> instances = List.of(mockGKInstance1, mockGKInstance2, mockGKInstance3);
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15378");
+        when(mockGKInstance3.getAttributeValue("identifier")).thenReturn("15377");
+
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15377")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15377", Optional.of(water))));
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15378")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15378", Optional.empty())));
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> result = retriever.getChEBIEntities(instances, 1, 2);
+
+        // Assert
+        assertEquals(List.of(mockGKInstance1, mockGKInstance2, mockGKInstance3), new ArrayList<>(result.keySet()));
+        assertEquals(water, result.get(mockGKInstance1).get());
+        assertEquals(water, result.get(mockGKInstance3).get());
+        assertFalse(result.get(mockGKInstance2).isPresent());
+        verify(mockApiClient, times(2)).fetchChEBIEntitiesAsync(any(), any(), any());
+    }
+
+    @Test
+    void getChEBIEntitiesConcurrently_IdentifierInEarlierCall_FetchesItOnlyOnce() throws Exception {
+        // Arrange
+        when(mockGKInstance1.getAttributeValue("identifier")).thenReturn("15377");
+        when(mockGKInstance2.getAttributeValue("identifier")).thenReturn("15377");
+        ChEBIEntity water = new ChEBIEntity("15377", "water", "H2O");
+        when(mockApiClient.fetchChEBIEntitiesAsync(eq(Set.of("15377")), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("15377", Optional.of(water))));
+
+        // Act
+        Map<GKInstance, Optional<ChEBIEntity>> firstResult = retriever.getChEBIEntities(List.of(mockGKInstance1), 1, 1);
+        Map<GKInstance, Optional<ChEBIEntity>> secondResult =
+            retriever.getChEBIEntities(List.of(mockGKInstance2), 1, 1);
+        Map<String, Optional<ChEBIEntity>> identifierResult = retriever.getChEBIEntitiesByIdentifier(
+            List.of("15377"), AdaptiveBatchSizer.fixed(1), 1, 0
+        );
+
+        // Assert
+        assertEquals(water, firstResult.get(mockGKInstance1).get());
+        assertEquals(water, secondResult.get(mockGKInstance2).get());
+        assertEquals(Map.of("15377", Optional.of(water)), identifierResult);
+        verify(mockApiClient, times(1)).fetchChEBIEntitiesAsync(any(), any(), any());
+    }
+}
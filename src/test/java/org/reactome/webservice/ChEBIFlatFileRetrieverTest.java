@@ -0,0 +1,117 @@
+package org.reactome.webservice;
+
+import org.gk.model.GKInstance;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactome.model.ChEBIEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChEBIFlatFileRetrieverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getChEBIEntity_LegacyFlatFiles_ReturnsNameAndFormula() throws IOException {
+        writeLegacyFlatFiles();
+
+        ChEBIFlatFileRetriever retriever = new ChEBIFlatFileRetriever(tempDir);
+
+        ChEBIEntity water = retriever.getChEBIEntity("15377").get();
+        assertEquals("15377", water.getChEBIId());
+        assertEquals("water", water.getName());
+        assertEquals("H2O", water.getFormula());
+    }
+
+    @Test
+    void getChEBIEntity_SecondaryIdentifier_ResolvesToPrimaryCompound() throws IOException {
+        writeLegacyFlatFiles();
+
+        ChEBIFlatFileRetriever retriever = new ChEBIFlatFileRetriever(tempDir);
+
+        ChEBIEntity water = retriever.getChEBIEntity("42857").get();
+        assertEquals("15377", water.getChEBIId());
+        assertEquals("water", water.getName());
+    }
+
+    @Test
+    void getChEBIEntity_CompoundWithoutNameInCompoundsFile_TakesNameFromNamesFile() throws IOException {
+        writeLegacyFlatFiles();
+
+        ChEBIFlatFileRetriever retriever = new ChEBIFlatFileRetriever(tempDir);
+
+        ChEBIEntity hydron = retriever.getChEBIEntity("15378").get();
+        assertEquals("hydron", hydron.getName());
+        assertEquals("", hydron.getFormula());
+    }
+
+    @Test
+    void getChEBIEntities_UnknownIdentifier_ReturnsEmptyOptional() throws Exception {
+        writeLegacyFlatFiles();
+        GKInstance referenceMolecule = mock(GKInstance.class);
+        when(referenceMolecule.getAttributeValue("identifier")).thenReturn("99999999");
+
+        Map<GKInstance, Optional<ChEBIEntity>> result =
+            new ChEBIFlatFileRetriever(tempDir).getChEBIEntities(List.of(referenceMolecule));
+
+        assertFalse(result.get(referenceMolecule).isPresent());
+    }
+
+    @Test
+    void getChEBIEntity_CurrentFlatFileLayout_ReturnsAsciiNameAndFormula() throws IOException {
+        Files.writeString(tempDir.resolve("compounds.tsv"),
+            "id\tname\tstatus_id\tparent_id\tchebi_accession\tascii_name\n" +
+            "15377\twater\t1\t\tCHEBI:15377\twater\n" +
+            "17234\t\u03b1-D-glucose\t1\t\tCHEBI:17925\talpha-D-glucose\n");
+        Files.writeString(tempDir.resolve("chemical_data.tsv"),
+            "id\tcompound_id\tformula\tcharge\n" +
+            "1\t15377\tH2O\t0\n" +
+            "2\t17234\tC6H12O6\t0\n");
+
+        ChEBIFlatFileRetriever retriever = new ChEBIFlatFileRetriever(tempDir);
+
+        ChEBIEntity glucose = retriever.getChEBIEntity("17234").get();
+        assertEquals("alpha-D-glucose", glucose.getName());
+        assertEquals("C6H12O6", glucose.getFormula());
+    }
+
+    @Test
+    void constructor_MissingCompoundsFile_ThrowsNoSuchFileException() {
+        assertThrows(NoSuchFileException.class, () -> new ChEBIFlatFileRetriever(tempDir));
+    }
+
+    private void writeLegacyFlatFiles() throws IOException {
+        Files.writeString(tempDir.resolve("compounds.tsv"),
+            "ID\tSTATUS\tCHEBI_ACCESSION\tSOURCE\tPARENT_ID\tNAME\tDEFINITION\tMODIFIED_ON\tCREATED_BY\tSTAR\r\n" +
+            "15377\tC\tCHEBI:15377\tKEGG COMPOUND\tnull\twater\tAn oxygen hydride\t2019-01-01\tCHEBI\t3\r\n" +
+            "42857\tC\tCHEBI:42857\tChEBI\t15377\tnull\tnull\t2019-01-01\tCHEBI\t3\r\n" +
+            "15378\tC\tCHEBI:15378\tChEBI\tnull\tnull\tnull\t2019-01-01\tCHEBI\t3\r\n");
+        writeGzipped(tempDir.resolve("chemical_data.tsv.gz"),
+            "ID\tCOMPOUND_ID\tSOURCE\tTYPE\tCHEMICAL_DATA\n" +
+            "1\t15377\tChEBI\tMASS\t18.01530\n" +
+            "2\t15377\tChEBI\tFORMULA\tH2O\n");
+        Files.writeString(tempDir.resolve("names.tsv"),
+            "ID\tCOMPOUND_ID\tTYPE\tSOURCE\tNAME\tADAPTED\tLANGUAGE\n" +
+            "1\t15378\tNAME\tChEBI\thydron\tF\ten\n");
+    }
+
+    private void writeGzipped(Path file, String content) throws IOException {
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.reactome.webservice.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBatchSizerTest {
+
+    private static final Duration TARGET_LATENCY = Duration.ofSeconds(10);
+    private static final long MAX_RESPONSE_BYTES = 1_000_000;
+
+    @Test
+    void onResponse_FastSmallResponse_IncreasesBatchSizeByStep() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        batchSizer.onResponse(100, 200, Duration.ofSeconds(1), 50_000);
+
+        assertEquals(110, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void onResponse_RetryableStatusCode_HalvesBatchSize() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        batchSizer.onResponse(100, 503, Duration.ofSeconds(1), 0);
+
+        assertEquals(50, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void onResponse_SlowOrLargeResponse_ShrinksBatchSizeByQuarter() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        batchSizer.onResponse(100, 200, Duration.ofSeconds(30), 50_000);
+        assertEquals(75, batchSizer.getBatchSize());
+
+        batchSizer.onResponse(75, 200, Duration.ofSeconds(1), 5_000_000);
+        assertEquals(56, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void onFailure_NoResponse_HalvesBatchSize() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        batchSizer.onFailure(100, Duration.ofSeconds(120), new HttpTimeoutException("request timed out"));
+
+        assertEquals(50, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void onResponse_OutcomeOfBatchSentBeforeShrinking_IsIgnored() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        batchSizer.onResponse(100, 429, Duration.ofSeconds(1), 0);
+        batchSizer.onFailure(100, Duration.ofSeconds(1), new IOException("connection reset"));
+        batchSizer.onResponse(100, 200, Duration.ofSeconds(1), 0);
+
+        assertEquals(50, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void batchSize_RepeatedSignals_StaysWithinBounds() {
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 40, 120, TARGET_LATENCY, MAX_RESPONSE_BYTES);
+
+        for (int i = 0; i < 10; i++) {
+            batchSizer.onResponse(batchSizer.getBatchSize(), 200, Duration.ofSeconds(1), 0);
+        }
+        assertEquals(120, batchSizer.getBatchSize());
+
+        for (int i = 0; i < 10; i++) {
+            batchSizer.onResponse(batchSizer.getBatchSize(), 500, Duration.ofSeconds(1), 0);
+        }
+        assertEquals(40, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void fixed_AnySignal_NeverChangesBatchSize() {
+        AdaptiveBatchSizer batchSizer = AdaptiveBatchSizer.fixed(500);
+
+        batchSizer.onResponse(500, 200, Duration.ofMillis(1), 0);
+        batchSizer.onResponse(500, 429, Duration.ofMillis(1), 0);
+
+        assertEquals(500, batchSizer.getBatchSize());
+    }
+
+    @Test
+    void constructor_InitialSizeOutsideBounds_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new AdaptiveBatchSizer(5, 10, 1000, TARGET_LATENCY, MAX_RESPONSE_BYTES));
+    }
+}
@@ -6,14 +6,28 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactome.model.ChEBIEntity;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.net.ssl.SSLContext;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +44,7 @@ class ChEBIAPIClientTest {
     @BeforeEach
     void setUp() {
         client = new ChEBIAPIClient(httpClient);
+        lenient().when(httpResponse.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
     }
 
     @Test
@@ -128,4 +143,161 @@ class ChEBIAPIClientTest {
                 client.fetchCompounds(null)
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void fetchCompoundsAsync_SuccessfulRequest() {
+        // Arrange
+        String successResponse = "{\"15377\": {\"exists\": true}}";
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn(successResponse);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        // Act
+        JSONObject result = client.fetchCompoundsAsync(Set.of("15377")).join();
+
+        // Assert
+        assertTrue(result.has("15377"));
+        verify(httpClient, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    void fetchCompoundsAsync_RetryOnServerError() {
+        // Arrange
+        String successResponse = "{\"compounds\": []}";
+        when(httpResponse.statusCode())
+            .thenReturn(503)  // First attempt fails
+            .thenReturn(200); // Second attempt succeeds
+        when(httpResponse.body()).thenReturn(successResponse);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        // Act
+        JSONObject result = client.fetchCompoundsAsync(Set.of("15377")).join();
+
+        // Assert
+        assertNotNull(result);
+        verify(httpClient, times(2)).sendAsync(any(), any());
+    }
+
+    @Test
+    void fetchCompoundsAsync_NonRetryableClientError() {
+        // Arrange
+        when(httpResponse.statusCode()).thenReturn(400);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        // Act & Assert
+        CompletionException exception = assertThrows(CompletionException.class, () ->
+            client.fetchCompoundsAsync(Set.of("15377")).join()
+        );
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        verify(httpClient, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    void fetchCompounds_RecordsEachAttemptInConnectionStatistics() throws IOException, InterruptedException {
+        // Arrange
+        when(httpResponse.statusCode())
+            .thenReturn(500)
+            .thenReturn(200);
+        when(httpResponse.body()).thenReturn("{}");
+        when(httpClient.send(any(), any())).thenReturn(httpResponse);
+
+        // Act
+        client.fetchCompounds(Set.of("15377"));
+
+        // Assert
+        assertEquals(2, client.getConnectionStatistics().getRequestCount());
+    }
+
+    @Test
+    void connectionCountingSSLContext_CountsEachEngineAsAConnection() throws Exception {
+        // Arrange
+        ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+        SSLContext sslContext = ConnectionCountingSSLContext.wrap(SSLContext.getDefault(), connectionStatistics);
+        connectionStatistics.recordRequest();
+        connectionStatistics.recordRequest();
+        connectionStatistics.recordRequest();
+
+        // Act
+        sslContext.createSSLEngine("www.ebi.ac.uk", 443);
+
+        // Assert
+        assertEquals(1, connectionStatistics.getConnectionCount());
+        assertEquals(2, connectionStatistics.getReusedConnectionCount());
+    }
+
+    @Test
+    void fetchChEBIEntitiesAsync_StreamsResponseThroughParser() {
+        // Arrange
+        String successResponse = "{\"15377\": {\"exists\": true, \"data\": " +
+            "{\"chebi_accession\": \"CHEBI:15377\", \"ascii_name\": \"water\"}}}";
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body())
+            .thenReturn(new ByteArrayInputStream(successResponse.getBytes(StandardCharsets.UTF_8)));
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        // Act
+        Map<String, Optional<ChEBIEntity>> result =
+            client.fetchChEBIEntitiesAsync(Set.of("15377"), new ChEBIEntityParser()).join();
+
+        // Assert
+        assertEquals("water", result.get("15377").get().getName());
+    }
+
+    @Test
+    void fetchChEBIEntitiesAsync_ReportsEachAttemptToRequestObserver() {
+        // Arrange
+        RequestObserver requestObserver = mock(RequestObserver.class);
+        HttpResponse<Object> unavailableResponse = mock(HttpResponse.class);
+        when(unavailableResponse.statusCode()).thenReturn(503);
+        when(unavailableResponse.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body())
+            .thenReturn(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        when(httpClient.sendAsync(any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(unavailableResponse)) // First attempt fails
+            .thenReturn(CompletableFuture.completedFuture(httpResponse));       // Second attempt succeeds
+
+        // Act
+        client.fetchChEBIEntitiesAsync(Set.of("15377", "15378"), new ChEBIEntityParser(), requestObserver).join();
+
+        // Assert
+        verify(requestObserver).onResponse(eq(2), eq(503), any(), anyLong());
+        verify(requestObserver).onResponse(eq(2), eq(200), any(), anyLong());
+        verify(requestObserver, never()).onFailure(anyInt(), any(), any());
+    }
+
+    @Test
+    void fetchChEBIEntitiesAsync_RetryAfterHeader_OpensCircuitForAtLeastThatLong() {
+        // Arrange
+        RequestThrottle requestThrottle = new RequestThrottle(0, 0, 1, Duration.ZERO);
+        client = new ChEBIAPIClient(httpClient, requestThrottle);
+        HttpResponse<Object> tooManyRequestsResponse = mock(HttpResponse.class);
+        when(tooManyRequestsResponse.statusCode()).thenReturn(429);
+        when(tooManyRequestsResponse.headers())
+            .thenReturn(HttpHeaders.of(Map.of("Retry-After", List.of("1")), (name, value) -> true));
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body())
+            .thenReturn(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        when(httpClient.sendAsync(any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(tooManyRequestsResponse))
+            .thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        // Act
+        long startTime = System.nanoTime();
+        client.fetchChEBIEntitiesAsync(Set.of("15377"), new ChEBIEntityParser()).join();
+        Duration elapsedTime = Duration.ofNanos(System.nanoTime() - startTime);
+
+        // Assert
+        assertTrue(elapsedTime.compareTo(Duration.ofSeconds(1)) >= 0);
+        assertEquals(1, requestThrottle.getCircuitOpenedCount());
+        assertEquals(RequestThrottle.CircuitState.CLOSED, requestThrottle.getCircuitState());
+        verify(httpClient, times(2)).sendAsync(any(), any());
+    }
+
+    @Test
+    void parseRetryAfter_SecondsOrHttpDate_ReturnsDelay() {
+        assertEquals(Duration.ofSeconds(120), ChEBIAPIClient.parseRetryAfter("120"));
+        assertEquals(Duration.ZERO, ChEBIAPIClient.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertNull(ChEBIAPIClient.parseRetryAfter("soon"));
+    }
+}
@@ -6,7 +6,15 @@ import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
 import org.reactome.model.ChEBIEntity;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ChEBIEntityParserTest {
 
@@ -64,4 +72,58 @@ public class ChEBIEntityParserTest {
         assertEquals("15377", entity.getChEBIId());
         assertEquals("water", entity.getName());
     }
+
+    @Test
+    void parseStream_ExistingAndNonExistingCompounds_EmitsEachRequestedIdentifier() throws IOException {
+        String response = "{" +
+            "\"15377\": {\"exists\": true, \"data\": {" +
+                "\"id\": 15377, \"names\": {\"SYNONYM\": [{\"name\": \"H2O\"}]}, " +
+                "\"chebi_accession\": \"CHEBI:15377\", \"ascii_name\": \"water\", " +
+                "\"chemical_data\": {\"formula\": \"H2O\", \"mass\": \"18.015\"}}}, " +
+            "\"99999999\": {\"exists\": false, \"data\": null}" +
+            "}";
+
+        Map<String, Optional<ChEBIEntity>> entities = new LinkedHashMap<>();
+        chEBIEntityParser.parse(toStream(response), entities::put);
+
+        assertEquals(2, entities.size());
+        ChEBIEntity water = entities.get("15377").get();
+        assertEquals("15377", water.getChEBIId());
+        assertEquals("water", water.getName());
+        assertEquals("H2O", water.getFormula());
+        assertFalse(entities.get("99999999").isPresent());
+    }
+
+    @Test
+    void parseStream_NullChemicalData_ReturnsEmptyFormulaString() throws IOException {
+        String response = "{\"15377\": {\"data\": {\"chebi_accession\": \"CHEBI:15377\", " +
+            "\"ascii_name\": \"water\", \"chemical_data\": null}, \"exists\": true}}";
+
+        Map<String, Optional<ChEBIEntity>> entities = new LinkedHashMap<>();
+        chEBIEntityParser.parse(toStream(response), entities::put);
+
+        assertEquals("", entities.get("15377").get().getFormula());
+    }
+
+    @Test
+    void parseStream_ExistingCompoundWithoutData_ThrowsIllegalStateException() {
+        String response = "{\"15377\": {\"exists\": true}}";
+
+        assertThrows(IllegalStateException.class, () ->
+            chEBIEntityParser.parse(toStream(response), (identifier, entity) -> { })
+        );
+    }
+
+    @Test
+    void parseStream_TruncatedResponse_ThrowsIOException() {
+        String response = "{\"15377\": {\"exists\": true, \"data\": {\"chebi_acc";
+
+        assertThrows(IOException.class, () ->
+            chEBIEntityParser.parse(toStream(response), (identifier, entity) -> { })
+        );
+    }
+
+    private InputStream toStream(String response) {
+        return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,88 @@
+package org.reactome.webservice.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestThrottleTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void acquire_RequestsBeyondRateLimit_AreDelayed() {
+        RequestThrottle requestThrottle = new RequestThrottle(2, 0, 0, Duration.ZERO, nanoTime::get);
+
+        assertTrue(requestThrottle.acquire(1).isDone());
+        assertTrue(requestThrottle.acquire(1).isDone());
+        assertFalse(requestThrottle.acquire(1).isDone());
+        assertEquals(1, requestThrottle.getDelayedRequestCount());
+
+        advance(Duration.ofSeconds(1));
+        assertTrue(requestThrottle.acquire(1).isDone());
+    }
+
+    @Test
+    void acquire_IdentifiersBeyondRateLimit_AreDelayed() {
+        RequestThrottle requestThrottle = new RequestThrottle(0, 100, 0, Duration.ZERO, nanoTime::get);
+
+        assertTrue(requestThrottle.acquire(100).isDone());
+        assertFalse(requestThrottle.acquire(50).isDone());
+    }
+
+    @Test
+    void recordFailure_ConsecutiveFailuresReachThreshold_OpensCircuitThenProbesHalfOpen() {
+        RequestThrottle requestThrottle = new RequestThrottle(0, 0, 2, Duration.ofSeconds(30), nanoTime::get);
+
+        requestThrottle.recordFailure(null);
+        assertEquals(RequestThrottle.CircuitState.CLOSED, requestThrottle.getCircuitState());
+        requestThrottle.recordFailure(null);
+        assertEquals(RequestThrottle.CircuitState.OPEN, requestThrottle.getCircuitState());
+        assertFalse(requestThrottle.acquire(1).isDone());
+
+        advance(Duration.ofSeconds(31));
+        CompletableFuture<Void> probe = requestThrottle.acquire(1);
+        CompletableFuture<Void> queuedRequest = requestThrottle.acquire(1);
+        assertTrue(probe.isDone());
+        assertFalse(queuedRequest.isDone());
+        assertEquals(RequestThrottle.CircuitState.HALF_OPEN, requestThrottle.getCircuitState());
+
+        requestThrottle.recordSuccess();
+        assertTrue(queuedRequest.isDone());
+        assertEquals(RequestThrottle.CircuitState.CLOSED, requestThrottle.getCircuitState());
+    }
+
+    @Test
+    void recordFailure_ProbeFails_ReopensCircuit() {
+        RequestThrottle requestThrottle = new RequestThrottle(0, 0, 1, Duration.ofSeconds(30), nanoTime::get);
+
+        requestThrottle.recordFailure(null);
+        advance(Duration.ofSeconds(31));
+        assertTrue(requestThrottle.acquire(1).isDone());
+
+        requestThrottle.recordFailure(null);
+
+        assertEquals(RequestThrottle.CircuitState.OPEN, requestThrottle.getCircuitState());
+        assertEquals(2, requestThrottle.getCircuitOpenedCount());
+        assertFalse(requestThrottle.acquire(1).isDone());
+    }
+
+    @Test
+    void recordFailure_RetryAfter_PausesRequestsEvenWithoutLimits() {
+        RequestThrottle requestThrottle = new RequestThrottle(0, 0, 0, Duration.ZERO, nanoTime::get);
+
+        requestThrottle.recordFailure(Duration.ofSeconds(10));
+        assertFalse(requestThrottle.acquire(1).isDone());
+
+        advance(Duration.ofSeconds(11));
+        assertTrue(requestThrottle.acquire(1).isDone());
+        assertEquals(RequestThrottle.CircuitState.CLOSED, requestThrottle.getCircuitState());
+    }
+
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,55 @@
+package org.reactome.webservice.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TabSeparatedFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void forEachRow_LinesSpanningMappedRegions_ReadsEveryRowWhole() throws IOException {
+        Path file = tempDir.resolve("compounds.tsv");
+        Files.writeString(file,
+            "ID\tNAME\n" +
+            "15377\twater\n" +
+            "16236\tethanol\n" +
+            "17925\talpha-D-glucose");
+
+        List<String> names = new ArrayList<>();
+        new TabSeparatedFileReader(24).forEachRow(file, (columns, row) ->
+            names.add(columns.get(row, columns.indexOf("name")))
+        );
+
+        assertEquals(List.of("water", "ethanol", "alpha-D-glucose"), names);
+    }
+
+    @Test
+    void forEachRow_LineLongerThanMappedRegion_ThrowsIOException() throws IOException {
+        Path file = tempDir.resolve("compounds.tsv");
+        Files.writeString(file, "ID\tNAME\n15377\ta name longer than the mapped region\n");
+
+        assertThrows(IOException.class, () ->
+            new TabSeparatedFileReader(16).forEachRow(file, (columns, row) -> { })
+        );
+    }
+
+    @Test
+    void columns_NullAndQuotedValues_AreNormalised() {
+        TabSeparatedFileReader.Columns columns = new TabSeparatedFileReader.Columns(new String[] {"\"ID\"", "NAME"});
+
+        assertEquals(0, columns.indexOf("id"));
+        assertEquals(-1, columns.indexOf("formula"));
+        assertNull(columns.get(new String[] {"15377", "null"}, 1));
+        assertEquals("water", columns.get(new String[] {"15377", "\"water\""}, 1));
+    }
+}